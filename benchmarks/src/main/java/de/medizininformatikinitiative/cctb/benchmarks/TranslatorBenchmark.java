@@ -0,0 +1,142 @@
+package de.medizininformatikinitiative.cctb.benchmarks;
+
+import de.medizininformatikinitiative.cctb.Translator;
+import de.medizininformatikinitiative.cctb.model.Mapping;
+import de.medizininformatikinitiative.cctb.model.MappingContext;
+import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
+import de.medizininformatikinitiative.cctb.model.MappingTreeModuleRoot;
+import de.medizininformatikinitiative.cctb.model.cql.Container;
+import de.medizininformatikinitiative.cctb.model.cql.DefaultExpression;
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
+import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipFile;
+
+import static java.util.Map.entry;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Benchmarks the three phases of a translation: parsing the Structured Query JSON, translating the
+ * {@link StructuredQuery} into a CQL {@link Container} and printing that container.
+ * <p>
+ * The mapping is read from the {@code mapping.zip} downloaded by the {@code cql} module, relative to the working
+ * directory, so the benchmarks have to run from the root of the repository. Its location can be overridden by the
+ * system property {@code cctb.mapping}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TranslatorBenchmark {
+
+    private static final String RESOURCE_PREFIX = "/de/medizininformatikinitiative/cctb/";
+    private static final String DEFAULT_MAPPING_PATH = "cql/target/mapping.zip";
+
+    private static final Map<String, String> CODE_SYSTEM_ALIASES = Map.ofEntries(
+            entry("http://fhir.de/CodeSystem/bfarm/icd-10-gm", "icd10"),
+            entry("http://loinc.org", "loinc"),
+            entry("https://fhir.bbmri.de/CodeSystem/SampleMaterialType", "sample"),
+            entry("http://fhir.de/CodeSystem/bfarm/atc", "atc"),
+            entry("http://snomed.info/sct", "snomed"),
+            entry("http://terminology.hl7.org/CodeSystem/condition-ver-status", "cvs"),
+            entry("http://hl7.org/fhir/administrative-gender", "gender"),
+            entry("urn:iso:std:iso:3166", "iso3166"),
+            entry("http://terminology.hl7.org/CodeSystem/consentcategorycodes", "consent"),
+            entry("http://fhir.de/CodeSystem/bfarm/ops", "ops"),
+            entry("http://terminology.hl7.org/CodeSystem/v3-ActCode", "v3ActCode"),
+            entry("http://fhir.de/CodeSystem/Kontaktebene", "Kontaktebene"));
+
+    @Param({
+            "large-query-worst-case-with-time-constraints.json",
+            "test-large-query-more-crit-time-rest-1.json",
+            "example-all-crits-time.json"
+    })
+    public String query;
+
+    private ObjectMapper mapper;
+    private Translator translator;
+    private String json;
+    private StructuredQuery structuredQuery;
+    private Container<DefaultExpression> container;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper();
+        translator = createTranslator(mapper);
+        json = slurp(RESOURCE_PREFIX + query);
+        structuredQuery = mapper.readValue(json, StructuredQuery.class);
+        container = translator.toCql(structuredQuery);
+    }
+
+    @Benchmark
+    public StructuredQuery parse() {
+        return mapper.readValue(json, StructuredQuery.class);
+    }
+
+    @Benchmark
+    public Container<DefaultExpression> translate() {
+        return translator.toCql(structuredQuery);
+    }
+
+    @Benchmark
+    public String print() {
+        return container.print();
+    }
+
+    @Benchmark
+    public String endToEnd() {
+        return translator.toCql(mapper.readValue(json, StructuredQuery.class)).print();
+    }
+
+    private static Translator createTranslator(ObjectMapper mapper) throws IOException {
+        try (var zipFile = new ZipFile(mappingPath())) {
+            Map<ContextualTermCode, Mapping> mappings;
+            try (var in = zipFile.getInputStream(zipFile.getEntry("mapping/cql/mapping_cql.json"))) {
+                mappings = Arrays.stream(mapper.readValue(in, Mapping[].class))
+                        .collect(Collectors.toMap(Mapping::key, Function.identity(), (a, b) -> a));
+            }
+            MappingTreeBase conceptTree;
+            try (var in = zipFile.getInputStream(zipFile.getEntry("mapping/mapping_tree.json"))) {
+                conceptTree = new MappingTreeBase(Arrays.stream(mapper.readValue(in, MappingTreeModuleRoot[].class))
+                        .toList());
+            }
+            return Translator.of(MappingContext.of(mappings, conceptTree, CODE_SYSTEM_ALIASES));
+        }
+    }
+
+    private static String mappingPath() {
+        return System.getProperty("cctb.mapping", DEFAULT_MAPPING_PATH);
+    }
+
+    private static String slurp(String name) {
+        try (InputStream in = TranslatorBenchmark.class.getResourceAsStream(name)) {
+            return new String(requireNonNull(in, "missing resource " + name).readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import de.medizininformatikinitiative.cctb.Translator;
+import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuery;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+@Command(
+        name = "batch",
+        mixinStandardHelpOptions = true,
+        description = "Translates many CCDL queries to CQL in one run"
+)
+public class BatchCommand implements Callable<Integer> {
+
+    private static final ObjectMapper JSON_UTIL = new ObjectMapper();
+
+    @Spec
+    private CommandSpec spec;
+
+    @Parameters(
+            index = "0",
+            paramLabel = "<INPUT>",
+            description = "Directory of CCDL query files (*.json) or JSON-lines file with one query per line. " +
+                    "Reads JSON lines from STDIN if '-'"
+    )
+    private String input;
+
+    @Parameters(
+            index = "1",
+            paramLabel = "<OUTPUT_DIR>",
+            description = "Directory to write one CQL file per query to. Created if missing"
+    )
+    private Path outputDir;
+
+    @Option(
+            names = {"--threads"},
+            description = "Number of queries translated concurrently (default: number of processors)"
+    )
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Mixin
+    private MappingOptions mappingOptions;
+
+    /**
+     * A single query of the batch.
+     *
+     * @param name  the name of the query, used for the output file and in the error report
+     * @param query reads the query, called on a worker thread
+     */
+    private record Item(String name, Callable<byte[]> query) {
+    }
+
+    /**
+     * The result of translating one query. Errors of single queries don't abort the batch.
+     */
+    private record Outcome(String name, Optional<String> error) {
+    }
+
+    @Override
+    public Integer call() {
+        mappingOptions.validate();
+        if (threads < 1) {
+            throw new ParameterException(spec.commandLine(), "Option '--threads' must be positive");
+        }
+        List<Outcome> outcomes;
+        try {
+            Files.createDirectories(outputDir);
+            var translator = Translator.of(mappingOptions.readMappingContext());
+            outcomes = translateAll(translator);
+        } catch (Exception exc) {
+            System.err.printf("Batch translation failed: %s", exc.getMessage());
+            return 1;
+        }
+
+        var failed = 0;
+        for (var outcome : outcomes) {
+            if (outcome.error().isPresent()) {
+                System.err.printf("%s: %s%n", outcome.name(), outcome.error().get());
+                failed++;
+            }
+        }
+        System.out.printf("Translated %d of %d queries%n", outcomes.size() - failed, outcomes.size());
+        return failed == 0 ? 0 : 1;
+    }
+
+    private List<Outcome> translateAll(Translator translator) throws IOException, InterruptedException {
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var inputPath = Path.of(input);
+            if ("-".equals(input)) {
+                return translateLines(translator, executor,
+                        new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+            } else if (Files.isDirectory(inputPath)) {
+                return translateDirectory(translator, executor, inputPath);
+            } else {
+                try (var reader = Files.newBufferedReader(inputPath, StandardCharsets.UTF_8)) {
+                    return translateLines(translator, executor, reader);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Outcome> translateDirectory(Translator translator, ExecutorService executor, Path dir)
+            throws IOException, InterruptedException {
+        List<Path> files;
+        try (var stream = Files.list(dir)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(".json")).sorted().toList();
+        }
+        var submitter = new Submitter(translator, executor);
+        for (var file : files) {
+            var fileName = file.getFileName().toString();
+            submitter.submit(new Item(fileName.substring(0, fileName.length() - ".json".length()),
+                    () -> Files.readAllBytes(file)));
+        }
+        return submitter.outcomes();
+    }
+
+    private List<Outcome> translateLines(Translator translator, ExecutorService executor, BufferedReader reader)
+            throws IOException, InterruptedException {
+        var submitter = new Submitter(translator, executor);
+        var lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.isBlank()) {
+                var query = line.getBytes(StandardCharsets.UTF_8);
+                submitter.submit(new Item("line-" + lineNumber, () -> query));
+            }
+        }
+        return submitter.outcomes();
+    }
+
+    /**
+     * Submits items to the executor, keeping at most twice as many items in flight as there are threads, so that long
+     * JSON-lines streams aren't read into memory at once.
+     */
+    private class Submitter {
+
+        private final Translator translator;
+        private final ExecutorService executor;
+        private final Semaphore inFlight = new Semaphore(2 * threads);
+        private final List<Future<Outcome>> futures = new ArrayList<>();
+
+        private Submitter(Translator translator, ExecutorService executor) {
+            this.translator = translator;
+            this.executor = executor;
+        }
+
+        private void submit(Item item) throws InterruptedException {
+            inFlight.acquire();
+            futures.add(executor.submit(() -> {
+                try {
+                    return translate(translator, item);
+                } finally {
+                    inFlight.release();
+                }
+            }));
+        }
+
+        private List<Outcome> outcomes() throws InterruptedException {
+            var outcomes = new ArrayList<Outcome>(futures.size());
+            for (var future : futures) {
+                try {
+                    outcomes.add(future.get());
+                } catch (ExecutionException exc) {
+                    throw new IllegalStateException(exc.getCause());
+                }
+            }
+            return outcomes;
+        }
+    }
+
+    /**
+     * Translates {@code item} into its output file, which is created atomically so existing files are never
+     * overwritten, and removed again if the translation fails.
+     */
+    private Outcome translate(Translator translator, Item item) {
+        var outputFile = outputDir.resolve(item.name() + ".cql");
+        BufferedWriter writer;
+        try {
+            writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW);
+        } catch (FileAlreadyExistsException exc) {
+            return new Outcome(item.name(), Optional.of("Output file already exists"));
+        } catch (IOException exc) {
+            return new Outcome(item.name(), Optional.of(exc.getMessage()));
+        }
+        try (writer) {
+            var structuredQuery = JSON_UTIL.readValue(item.query().call(), StructuredQuery.class);
+            translator.toCql(structuredQuery).print(writer);
+            return new Outcome(item.name(), Optional.empty());
+        } catch (JacksonException exc) {
+            deletePartial(outputFile);
+            return new Outcome(item.name(), Optional.of(exc.getOriginalMessage()));
+        } catch (Exception exc) {
+            deletePartial(outputFile);
+            return new Outcome(item.name(), Optional.of(exc.getMessage()));
+        }
+    }
+
+    private static void deletePartial(Path outputFile) {
+        try {
+            Files.deleteIfExists(outputFile);
+        } catch (IOException ignored) {
+            // the failure of the translation is reported anyway
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import de.medizininformatikinitiative.cctb.model.MappingSnapshot;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Parameters;
+import picocli.CommandLine.Spec;
+
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+@Command(
+        name = "compile",
+        mixinStandardHelpOptions = true,
+        description = "Compiles the mapping files into a snapshot for fast startup"
+)
+public class CompileCommand implements Callable<Integer> {
+
+    @Spec
+    private CommandSpec spec;
+
+    @Parameters(
+            index = "0",
+            paramLabel = "<OUTPUT_FILE>",
+            description = "Path to the snapshot file to write"
+    )
+    private Path outputFile;
+
+    @Mixin
+    private MappingOptions mappingOptions;
+
+    @Override
+    public Integer call() {
+        if (mappingOptions.hasSnapshot()) {
+            throw new ParameterException(spec.commandLine(), "Option '--snapshot' can't be compiled");
+        }
+        mappingOptions.validate();
+        try {
+            if (Files.exists(outputFile)) {
+                throw new FileAlreadyExistsException("Output file already exists");
+            }
+
+            var mappings = mappingOptions.readMapping();
+            MappingSnapshot.write(outputFile, mappings.values(), mappingOptions.readConceptTree(),
+                    mappingOptions.readCodeSystemAliases());
+            System.out.printf("Compiled %d mappings into %s%n", mappings.size(), outputFile);
+            return 0;
+        } catch (Exception exc) {
+            System.err.printf("Compilation failed: %s", exc.getMessage());
+            return 1;
+        }
+    }
+}
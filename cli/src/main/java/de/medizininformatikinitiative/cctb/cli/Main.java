@@ -7,7 +7,7 @@ import picocli.CommandLine.Command;
         name = "cctb-cli",
         description = "Clinical Cohort Toolbox command line interface",
         mixinStandardHelpOptions = true,
-        subcommands = { TranslateCommand.class }
+        subcommands = { TranslateCommand.class, BatchCommand.class, ServeCommand.class, CompileCommand.class }
 )
 public class Main implements Runnable {
 
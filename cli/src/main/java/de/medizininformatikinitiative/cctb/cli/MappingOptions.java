@@ -0,0 +1,141 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import de.medizininformatikinitiative.cctb.model.Mapping;
+import de.medizininformatikinitiative.cctb.model.MappingContext;
+import de.medizininformatikinitiative.cctb.model.MappingSnapshot;
+import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
+import de.medizininformatikinitiative.cctb.model.MappingTreeModuleRoot;
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+import tools.jackson.core.type.TypeReference;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The options of all commands that need a {@link MappingContext}.
+ * <p>
+ * The mapping context is either read from the mapping, concept tree and code system aliases JSON files or from a
+ * snapshot compiled from them by the {@code compile} command. The mappings of a snapshot can be decoded lazily on
+ * first use, which keeps startup time and memory proportional to the mappings the translated queries need.
+ */
+public class MappingOptions {
+
+    private static final ObjectMapper JSON_UTIL = new ObjectMapper();
+    private static final TypeReference<HashMap<String, String>> TYPE_REF = new TypeReference<>() {};
+
+    @Spec(Spec.Target.MIXEE)
+    private CommandSpec spec;
+
+    @Option(
+            names = {"-m", "--mapping"},
+            description = "Path to mapping file"
+    )
+    private File mappingFile;
+
+    @Option(
+            names = {"-ct", "--concept-tree"},
+            description = "Path to concept tree file"
+    )
+    private File conceptTreeFile;
+
+    @Option(
+            names = {"-csa", "--code-system-alias"},
+            description = "(Optional) path to code system aliases file"
+    )
+    private Optional<File> codeSystemAliasesFile = Optional.empty();
+
+    @Option(
+            names = {"-s", "--snapshot"},
+            description = "Path to mapping snapshot file, replaces the mapping, concept tree and code system aliases files"
+    )
+    private Optional<File> snapshotFile = Optional.empty();
+
+    @Option(
+            names = {"--lazy"},
+            description = "Decode the mappings of the snapshot on first use instead of reading all of them at startup"
+    )
+    private boolean lazy;
+
+    /**
+     * Checks that either a snapshot or the mapping and concept tree files are given and that {@code --lazy} is only
+     * used with a snapshot.
+     *
+     * @throws ParameterException if the options are missing or conflicting
+     */
+    public void validate() {
+        if (snapshotFile.isPresent()) {
+            if (mappingFile != null || conceptTreeFile != null || codeSystemAliasesFile.isPresent()) {
+                throw new ParameterException(spec.commandLine(), "Option '--snapshot' can't be combined with " +
+                        "'--mapping', '--concept-tree' or '--code-system-alias'");
+            }
+            return;
+        }
+        if (lazy) {
+            throw new ParameterException(spec.commandLine(), "Option '--lazy' requires '--snapshot'");
+        }
+        var missing = new ArrayList<String>();
+        if (mappingFile == null) {
+            missing.add("'--mapping=<mappingFile>'");
+        }
+        if (conceptTreeFile == null) {
+            missing.add("'--concept-tree=<conceptTreeFile>'");
+        }
+        if (!missing.isEmpty()) {
+            throw new ParameterException(spec.commandLine(), "Missing required option%s: %s"
+                    .formatted(missing.size() == 1 ? "" : "s", String.join(", ", missing)));
+        }
+    }
+
+    /**
+     * Reads the snapshot or the mapping, concept tree and code system aliases files into a {@link MappingContext}.
+     *
+     * @return the mapping context
+     */
+    public MappingContext readMappingContext() {
+        if (snapshotFile.isPresent()) {
+            try {
+                var file = snapshotFile.get().toPath();
+                return lazy ? MappingSnapshot.open(file, MappingSnapshot.DEFAULT_CACHE_SIZE) : MappingSnapshot.read(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e.getMessage(), e);
+            }
+        }
+        // Use dedicated parsing methods due to `picoli`s handling of Map<K, V>-typed options and parameters
+        return MappingContext.of(
+                readMapping(),
+                readConceptTree(),
+                readCodeSystemAliases()
+        );
+    }
+
+    boolean hasSnapshot() {
+        return snapshotFile.isPresent();
+    }
+
+    Map<ContextualTermCode, Mapping> readMapping() {
+        return Stream.of(JSON_UTIL.readValue(mappingFile, Mapping[].class))
+                .collect(Collectors.toMap(Mapping::key, Function.identity(), (a, b) -> a));
+    }
+
+    MappingTreeBase readConceptTree() {
+        return new MappingTreeBase(Arrays.stream(JSON_UTIL.readValue(conceptTreeFile, MappingTreeModuleRoot[].class)).toList());
+    }
+
+    Map<String, String> readCodeSystemAliases() {
+        return codeSystemAliasesFile.map(v -> JSON_UTIL.readValue(v, TYPE_REF)).orElseGet(HashMap::new);
+    }
+}
@@ -0,0 +1,88 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import de.medizininformatikinitiative.cctb.ReloadableMappingContext;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
+import picocli.CommandLine.Model.CommandSpec;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+@Command(
+        name = "serve",
+        mixinStandardHelpOptions = true,
+        description = "Serves translations of CCDL queries over HTTP"
+)
+public class ServeCommand implements Callable<Integer> {
+
+    @Spec
+    private CommandSpec spec;
+
+    @Option(
+            names = {"--host"},
+            description = "Host to bind to (default: ${DEFAULT-VALUE})",
+            defaultValue = "127.0.0.1"
+    )
+    private String host;
+
+    @Option(
+            names = {"-p", "--port"},
+            description = "Port to listen on (default: ${DEFAULT-VALUE})",
+            defaultValue = "8080"
+    )
+    private int port;
+
+    @Option(
+            names = {"--threads"},
+            description = "Number of requests handled concurrently (default: number of processors)"
+    )
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(
+            names = {"--cache-size"},
+            description = "Maximum number of translations to cache, disabled if zero (default: ${DEFAULT-VALUE})",
+            defaultValue = "0"
+    )
+    private int cacheSize;
+
+    @Option(
+            names = {"--cache-max-age"},
+            description = "Maximum age of cached translations as ISO-8601 duration (default: ${DEFAULT-VALUE})",
+            defaultValue = "PT1H"
+    )
+    private Duration cacheMaxAge;
+
+    @Mixin
+    private MappingOptions mappingOptions;
+
+    @Override
+    public Integer call() {
+        mappingOptions.validate();
+        if (threads < 1) {
+            throw new ParameterException(spec.commandLine(), "Option '--threads' must be positive");
+        }
+        try {
+            var start = System.nanoTime();
+            var mappingContext = ReloadableMappingContext.load(mappingOptions::readMappingContext);
+            var server = TranslationServer.start(new InetSocketAddress(host, port), mappingContext, cacheSize,
+                    cacheMaxAge, threads);
+            var stopped = new CountDownLatch(1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.close();
+                stopped.countDown();
+            }));
+            System.out.printf("Loaded mapping in %d ms, listening on http://%s:%d/cql%n",
+                    (System.nanoTime() - start) / 1_000_000, host, server.address().getPort());
+            stopped.await();
+            return 0;
+        } catch (Exception exc) {
+            System.err.printf("Serving failed: %s", exc.getMessage());
+            return 1;
+        }
+    }
+}
@@ -1,31 +1,25 @@
 package de.medizininformatikinitiative.cctb.cli;
 
 import de.medizininformatikinitiative.cctb.Translator;
-import de.medizininformatikinitiative.cctb.model.Mapping;
-import de.medizininformatikinitiative.cctb.model.MappingContext;
-import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
-import de.medizininformatikinitiative.cctb.model.MappingTreeModuleRoot;
-import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
+import de.medizininformatikinitiative.cctb.model.cql.Container;
 import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuery;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
-import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.file.FileAlreadyExistsException;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.file.Files;
 import java.util.Optional;
 import java.util.concurrent.Callable;
-import java.util.function.Function;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ForkJoinPool;
 
 @Command(
         name = "translate",
@@ -35,10 +29,9 @@ import java.util.stream.Stream;
 public class TranslateCommand implements Callable<Integer> {
 
     private static final ObjectMapper JSON_UTIL = new ObjectMapper();
-    private static final TypeReference<HashMap<String, String>> TYPE_REF = new TypeReference<>() {};
 
     public enum TargetLanguage {
-        CQL
+        CQL, ELM
     }
 
     @Parameters(
@@ -65,38 +58,53 @@ public class TranslateCommand implements Callable<Integer> {
     private Optional<File> outputFile = Optional.empty();
 
     @Option(
-            names = {"-m", "--mapping"},
-            description = "Path to mapping file",
-            required = true
+            names = {"--parallel"},
+            description = "Translates the criteria of the query concurrently"
     )
-    private File mappingFile;
+    private boolean parallel;
 
     @Option(
-            names = {"-ct", "--concept-tree"},
-            description = "Path to concept tree file",
-            required = true
+            names = {"--share-subexpressions"},
+            description = "Defines retrieves and queries used more than once only once"
     )
-    private File conceptTreeFile;
+    private boolean shareSubexpressions;
 
     @Option(
-            names = {"-csa", "--code-system-alias"},
-            description = "(Optional) path to code system aliases file"
+            names = {"--code-lists"},
+            description = "Retrieves the expanded codes of a criterion at once where their queries are the same"
     )
-    private Optional<File> codeSystemAliasesFile = Optional.empty();
+    private boolean codeLists;
+
+    @Option(
+            names = {"--prune-criteria"},
+            description = "Drops criteria whose expanded concept is covered by another criterion of the same group"
+    )
+    private boolean pruneCriteria;
+
+    @Option(
+            names = {"--simplify"},
+            description = "Removes duplicate and constant operands and definitions only aliasing another one"
+    )
+    private boolean simplify;
+
+    @Option(
+            names = {"--intern-expressions"},
+            description = "Shares structurally equal parts of the translated expressions"
+    )
+    private boolean internExpressions;
+
+    @Mixin
+    private MappingOptions mappingOptions;
 
     @Override
     public Integer call() {
+        mappingOptions.validate();
         try {
             if (outputFile.map(File::exists).orElse(false)) {
                 throw new FileAlreadyExistsException("Output file already exists");
             }
 
-            // Use dedicated parsing methods due to `picoli`s handling of Map<K, V>-typed options and parameters
-            var mappingContext = MappingContext.of(
-                    readMapping(),
-                    readConceptTree(),
-                    readCodeSystemAliases()
-            );
+            var mappingContext = mappingOptions.readMappingContext();
             var structuredQuery = inputFile.map(v -> JSON_UTIL.readValue(v, StructuredQuery.class))
                     .orElseGet(() -> {
                         try {
@@ -106,9 +114,26 @@ public class TranslateCommand implements Callable<Integer> {
                         }
                     });
 
-            var result = switch (language) {
-                case CQL -> Translator.of(mappingContext).toCql(structuredQuery).print();
-            };
+            if (pruneCriteria) {
+                structuredQuery = mappingContext.conceptTree().map(structuredQuery::normalize).orElse(structuredQuery);
+            }
+
+            var translator = parallel
+                    ? Translator.of(mappingContext, ForkJoinPool.commonPool())
+                    : Translator.of(mappingContext);
+            var result = translator.toCql(structuredQuery);
+            if (internExpressions) {
+                result = result.internExpressions();
+            }
+            if (codeLists) {
+                result = result.collapseCodeLists();
+            }
+            if (simplify) {
+                result = result.simplify();
+            }
+            if (shareSubexpressions) {
+                result = result.shareCommonSubexpressions();
+            }
 
             writeResult(result);
             return 0;
@@ -118,26 +143,26 @@ public class TranslateCommand implements Callable<Integer> {
         }
     }
 
-    private void writeResult(String result) throws IOException {
+    private void writeResult(Container<?> result) throws IOException {
         if (outputFile.isEmpty()) {
-            System.out.print(result);
+            var writer = new BufferedWriter(new OutputStreamWriter(System.out));
+            write(result, writer);
+            writer.flush();
         } else {
             try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile.get()))) {
-                writer.write(result);
+                write(result, writer);
+            } catch (Throwable exc) {
+                // don't leave a truncated file behind that blocks the next run
+                Files.deleteIfExists(outputFile.get().toPath());
+                throw exc;
             }
         }
     }
 
-    private Map<ContextualTermCode, Mapping> readMapping() {
-        return Stream.of(JSON_UTIL.readValue(mappingFile, Mapping[].class))
-                .collect(Collectors.toMap(Mapping::key, Function.identity(), (a, b) -> a));
-    }
-
-    private MappingTreeBase readConceptTree() {
-        return new MappingTreeBase(Arrays.stream(JSON_UTIL.readValue(conceptTreeFile, MappingTreeModuleRoot[].class)).toList());
-    }
-
-    private Map<String, String> readCodeSystemAliases() {
-        return codeSystemAliasesFile.map(v -> JSON_UTIL.readValue(v, TYPE_REF)).orElseGet(HashMap::new);
+    private void write(Container<?> result, Writer writer) {
+        switch (language) {
+            case CQL -> result.print(writer);
+            case ELM -> result.printElm(writer);
+        }
     }
 }
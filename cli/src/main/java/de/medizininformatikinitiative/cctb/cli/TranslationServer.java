@@ -0,0 +1,237 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.medizininformatikinitiative.cctb.ReloadableMappingContext;
+import de.medizininformatikinitiative.cctb.TranslationCache;
+import de.medizininformatikinitiative.cctb.Translator;
+import de.medizininformatikinitiative.cctb.model.MappingContext;
+import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuery;
+import de.medizininformatikinitiative.cctb.model.structured_query.TranslationException;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An HTTP server translating Structured Queries with one {@link Translator}.
+ * <p>
+ * {@code POST /cql} takes a Structured Query as JSON and returns the CQL library. Requests are handled concurrently
+ * by a fixed pool of threads.
+ * <ul>
+ *     <li>{@code 200} with the CQL library as {@code text/cql}</li>
+ *     <li>{@code 400} if the request body isn't a valid Structured Query</li>
+ *     <li>{@code 422} if the Structured Query can't be translated</li>
+ *     <li>{@code 500} if the translation failed unexpectedly</li>
+ *     <li>{@code 405} for other methods than {@code POST}</li>
+ * </ul>
+ * {@code GET /health} returns {@code 200} as long as the server runs.
+ * <p>
+ * If the server is started with a {@link TranslationCache}, repeated queries are answered from the cache.
+ * <p>
+ * If the server is started with a {@link ReloadableMappingContext}, {@code POST /reload} reloads the mapping context
+ * without interrupting translations. Requests in flight finish with the old mapping context, while later requests use
+ * a new translator and an empty cache.
+ * <ul>
+ *     <li>{@code 200} after the new mapping context was swapped in</li>
+ *     <li>{@code 500} if the reload failed, in which case the old mapping context is kept</li>
+ *     <li>{@code 405} for other methods than {@code POST}</li>
+ * </ul>
+ */
+public final class TranslationServer implements AutoCloseable {
+
+    private static final ObjectMapper JSON_UTIL = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile Backend backend;
+
+    /**
+     * The translator and optional cache used for a request.
+     */
+    private record Backend(Translator translator, TranslationCache cache) {
+    }
+
+    private TranslationServer(HttpServer server, ExecutorService executor, Backend backend) {
+        this.server = server;
+        this.executor = executor;
+        this.backend = backend;
+    }
+
+    /**
+     * Starts a server listening on {@code address}.
+     *
+     * @param address    the address to bind to, a port of zero selects a free port
+     * @param translator the translator to use for all requests
+     * @param threads    the number of requests handled concurrently
+     * @return the started server
+     * @throws IOException if the server can't bind to {@code address}
+     */
+    public static TranslationServer start(InetSocketAddress address, Translator translator, int threads)
+            throws IOException {
+        return start(address, new Backend(requireNonNull(translator), null), threads);
+    }
+
+    /**
+     * Starts a server listening on {@code address} that answers repeated queries from {@code cache}.
+     *
+     * @param address the address to bind to, a port of zero selects a free port
+     * @param cache   the cache in front of the translator to use for all requests
+     * @param threads the number of requests handled concurrently
+     * @return the started server
+     * @throws IOException if the server can't bind to {@code address}
+     */
+    public static TranslationServer start(InetSocketAddress address, TranslationCache cache, int threads)
+            throws IOException {
+        return start(address, new Backend(null, requireNonNull(cache)), threads);
+    }
+
+    /**
+     * Starts a server listening on {@code address} that translates with the current mapping context of
+     * {@code mappingContext} and reloads it on {@code POST /reload}.
+     *
+     * @param address        the address to bind to, a port of zero selects a free port
+     * @param mappingContext the reloadable mapping context to translate with
+     * @param cacheSize      the maximum number of translations to cache, no cache is used if zero
+     * @param cacheMaxAge    the maximum age of cached translations
+     * @param threads        the number of requests handled concurrently
+     * @return the started server
+     * @throws IOException if the server can't bind to {@code address}
+     */
+    public static TranslationServer start(InetSocketAddress address, ReloadableMappingContext mappingContext,
+                                          int cacheSize, Duration cacheMaxAge, int threads) throws IOException {
+        var translationServer = start(address, backend(mappingContext.get(), cacheSize, cacheMaxAge), threads);
+        mappingContext.addListener(context -> translationServer.backend = backend(context, cacheSize, cacheMaxAge));
+        translationServer.server.createContext("/reload", exchange -> handleReload(exchange, mappingContext));
+        return translationServer;
+    }
+
+    private static Backend backend(MappingContext mappingContext, int cacheSize, Duration cacheMaxAge) {
+        var translator = Translator.of(mappingContext);
+        return cacheSize > 0
+                ? new Backend(null, TranslationCache.of(translator, cacheSize, cacheMaxAge))
+                : new Backend(translator, null);
+    }
+
+    private static TranslationServer start(InetSocketAddress address, Backend backend, int threads)
+            throws IOException {
+        var server = HttpServer.create(address, 0);
+        var executor = Executors.newFixedThreadPool(threads, daemonThreadFactory());
+        var translationServer = new TranslationServer(server, executor, backend);
+        server.createContext("/cql", translationServer::handleTranslation);
+        server.createContext("/health", translationServer::handleHealth);
+        server.setExecutor(executor);
+        server.start();
+        return translationServer;
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "translation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Returns the address the server listens on.
+     *
+     * @return the address the server listens on
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private void handleTranslation(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Method not allowed");
+                return;
+            }
+
+            var backend = this.backend;
+            String cql;
+            try {
+                var structuredQuery = JSON_UTIL.readValue(exchange.getRequestBody(), StructuredQuery.class);
+                // the library is printed before the status is sent, so failures never produce a truncated 200
+                cql = backend.cache == null
+                        ? backend.translator.toCql(structuredQuery).print()
+                        : backend.cache.toCql(structuredQuery);
+            } catch (JacksonException exc) {
+                sendText(exchange, 400, "Invalid Structured Query: " + exc.getOriginalMessage());
+                return;
+            } catch (TranslationException exc) {
+                sendText(exchange, 422, "Translation failed: " + exc.getMessage());
+                return;
+            } catch (RuntimeException exc) {
+                sendText(exchange, 500, "Internal error: " + exc.getMessage());
+                return;
+            }
+
+            var body = cql.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/cql; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            sendText(exchange, 200, "OK");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void handleReload(HttpExchange exchange, ReloadableMappingContext mappingContext)
+            throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Method not allowed");
+                return;
+            }
+
+            var start = System.nanoTime();
+            try {
+                mappingContext.reload().join();
+            } catch (CompletionException exc) {
+                sendText(exchange, 500, "Reload failed: " + exc.getCause().getMessage());
+                return;
+            }
+            sendText(exchange, 200, "Reloaded mapping in %d ms".formatted((System.nanoTime() - start) / 1_000_000));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        var body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Stops the server, waiting at most one second for requests in flight.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+    }
+}
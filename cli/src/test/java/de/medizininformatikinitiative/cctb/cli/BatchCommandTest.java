@@ -0,0 +1,177 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static de.medizininformatikinitiative.cctb.cli.Util.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchCommandTest {
+
+    private static final String EXPECTED_CQL = """
+            library Retrieve version '1.0.0'
+            using FHIR version '4.0.0'
+            include FHIRHelpers version '4.0.0'
+
+            codesystem codeSystem1: 'http://fhir.de/CodeSystem/bfarm/icd-10-gm'
+
+            context Patient
+
+            define Criterion:
+              exists [Condition: Code 'C71.1' from codeSystem1]
+
+            define InInitialPopulation:
+              Criterion
+            """;
+
+    private final InputStream originalIn = System.in;
+    private final PrintStream originalOut = System.out;
+    private final PrintStream originalErr = System.err;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @TempDir
+    private Path tempDir;
+
+    @BeforeEach
+    void redirectStreams() {
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restoreStreams() {
+        System.setIn(originalIn);
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    private String stdout() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String stderr() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String singleLine(String json) {
+        return json.replaceAll("\\s*\\n\\s*", "");
+    }
+
+    @Test
+    void translatesAllQueriesOfDirectory() throws Exception {
+        var inputDir = Files.createDirectory(tempDir.resolve("in"));
+        var outputDir = tempDir.resolve("out");
+        Files.writeString(inputDir.resolve("a.json"), slurp("structured-query.json"));
+        Files.writeString(inputDir.resolve("b.json"), slurp("structured-query.json"));
+        Files.writeString(inputDir.resolve("notes.txt"), "ignored");
+
+        var exitCode = execute("batch",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                inputDir.toString(), outputDir.toString());
+
+        assertThat(exitCode).isZero();
+        assertThat(stdout()).isEqualTo("Translated 2 of 2 queries\n");
+        assertThat(stderr()).isEmpty();
+        assertThat(Files.readString(outputDir.resolve("a.cql"))).isEqualTo(EXPECTED_CQL);
+        assertThat(Files.readString(outputDir.resolve("b.cql"))).isEqualTo(EXPECTED_CQL);
+        assertThat(outputDir.resolve("notes.cql")).doesNotExist();
+    }
+
+    @Test
+    void translatesAllLinesOfJsonLinesFile() throws Exception {
+        var inputFile = tempDir.resolve("queries.jsonl");
+        var query = singleLine(slurp("structured-query.json"));
+        Files.writeString(inputFile, query + "\n\n" + query + "\n");
+        var outputDir = tempDir.resolve("out");
+
+        var exitCode = execute("batch",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                inputFile.toString(), outputDir.toString());
+
+        assertThat(exitCode).isZero();
+        assertThat(stdout()).isEqualTo("Translated 2 of 2 queries\n");
+        assertThat(Files.readString(outputDir.resolve("line-1.cql"))).isEqualTo(EXPECTED_CQL);
+        assertThat(Files.readString(outputDir.resolve("line-3.cql"))).isEqualTo(EXPECTED_CQL);
+    }
+
+    @Test
+    void readsJsonLinesFromStdIn() throws Exception {
+        System.setIn(new ByteArrayInputStream(singleLine(slurp("structured-query.json"))
+                .getBytes(StandardCharsets.UTF_8)));
+        var outputDir = tempDir.resolve("out");
+
+        var exitCode = execute("batch",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                "-", outputDir.toString());
+
+        assertThat(exitCode).isZero();
+        assertThat(Files.readString(outputDir.resolve("line-1.cql"))).isEqualTo(EXPECTED_CQL);
+    }
+
+    @Test
+    void reportsFailedQueriesWithoutAbortingTheBatch() throws Exception {
+        var inputFile = tempDir.resolve("queries.jsonl");
+        var unknownCriterion = """
+                {"inclusionCriteria": [[{"context": {"system": "fdpg.mii.cds", "code": "Diagnose", "display": "Diagnose"}, \
+                "termCodes": [{"system": "foo", "code": "bar", "display": ""}]}]]}""";
+        Files.writeString(inputFile, "{\n" + unknownCriterion + "\n" + singleLine(slurp("structured-query.json")));
+        var outputDir = tempDir.resolve("out");
+
+        var exitCode = execute("batch", "--threads", "2",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                inputFile.toString(), outputDir.toString());
+
+        assertThat(exitCode).isEqualTo(1);
+        assertThat(stdout()).isEqualTo("Translated 1 of 3 queries\n");
+        assertThat(stderr().lines()).hasSize(2)
+                .satisfiesExactly(
+                        line -> assertThat(line).startsWith("line-1: "),
+                        line -> assertThat(line).startsWith("line-2: Failed to expand the concept"));
+        assertThat(outputDir.resolve("line-1.cql")).doesNotExist();
+        assertThat(outputDir.resolve("line-2.cql")).doesNotExist();
+        assertThat(Files.readString(outputDir.resolve("line-3.cql"))).isEqualTo(EXPECTED_CQL);
+    }
+
+    @Test
+    void rejectsNonPositiveThreads() throws Exception {
+        var exitCode = execute("batch", "--threads", "0",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                tempDir.toString(), tempDir.resolve("out").toString());
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(stderr()).contains("Option '--threads' must be positive");
+    }
+
+    @Test
+    void doesNotOverwriteExistingOutputFiles() throws Exception {
+        var inputDir = Files.createDirectory(tempDir.resolve("in"));
+        var outputDir = Files.createDirectory(tempDir.resolve("out"));
+        Files.writeString(inputDir.resolve("a.json"), slurp("structured-query.json"));
+        Files.writeString(outputDir.resolve("a.cql"), "existing content");
+
+        var exitCode = execute("batch",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                inputDir.toString(), outputDir.toString());
+
+        assertThat(exitCode).isEqualTo(1);
+        assertThat(stderr()).isEqualTo("a: Output file already exists\n");
+        assertThat(Files.readString(outputDir.resolve("a.cql"))).isEqualTo("existing content");
+    }
+}
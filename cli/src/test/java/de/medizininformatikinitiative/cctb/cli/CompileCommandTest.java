@@ -0,0 +1,150 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static de.medizininformatikinitiative.cctb.cli.Util.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompileCommandTest {
+
+    private static final String EXPECTED_CQL_WITH_ALIAS = """
+            library Retrieve version '1.0.0'
+            using FHIR version '4.0.0'
+            include FHIRHelpers version '4.0.0'
+
+            codesystem icd10: 'http://fhir.de/CodeSystem/bfarm/icd-10-gm'
+
+            context Patient
+
+            define Criterion:
+              exists [Condition: Code 'C71.1' from icd10]
+
+            define InInitialPopulation:
+              Criterion
+            """;
+
+    private final PrintStream originalOut = System.out;
+    private final PrintStream originalErr = System.err;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @TempDir
+    private Path tempDir;
+
+    @BeforeEach
+    void redirectStreams() {
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restoreStreams() {
+        System.setOut(originalOut);
+        System.setErr(originalErr);
+    }
+
+    private String stdout() {
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private String stderr() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    private Path compile() throws Exception {
+        var snapshot = tempDir.resolve("mapping.snapshot");
+        var exitCode = execute("compile",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                "-csa", resource("code-system-aliases.json").toString(),
+                snapshot.toString());
+        assertThat(exitCode).isZero();
+        return snapshot;
+    }
+
+    @Test
+    void translatesWithCompiledSnapshot() throws Exception {
+        var snapshot = compile();
+        out.reset();
+
+        var exitCode = execute("translate", "cql",
+                "-s", snapshot.toString(),
+                resource("structured-query.json").toString());
+
+        assertThat(exitCode).isZero();
+        assertThat(stdout()).isEqualTo(EXPECTED_CQL_WITH_ALIAS);
+        assertThat(stderr()).isEmpty();
+    }
+
+    @Test
+    void translatesWithLazySnapshot() throws Exception {
+        var snapshot = compile();
+        out.reset();
+
+        var exitCode = execute("translate", "cql",
+                "-s", snapshot.toString(), "--lazy",
+                resource("structured-query.json").toString());
+
+        assertThat(exitCode).isZero();
+        assertThat(stdout()).isEqualTo(EXPECTED_CQL_WITH_ALIAS);
+        assertThat(stderr()).isEmpty();
+    }
+
+    @Test
+    void rejectsLazyWithoutSnapshot() throws Exception {
+        var exitCode = execute("translate", "cql", "--lazy",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                resource("structured-query.json").toString());
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(stderr()).contains("Option '--lazy' requires '--snapshot'");
+    }
+
+    @Test
+    void failsIfOutputFileExists() throws Exception {
+        var snapshot = compile();
+        var before = Files.readAllBytes(snapshot);
+
+        var exitCode = execute("compile",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                snapshot.toString());
+
+        assertThat(exitCode).isEqualTo(1);
+        assertThat(stderr()).isEqualTo("Compilation failed: Output file already exists");
+        assertThat(Files.readAllBytes(snapshot)).isEqualTo(before);
+    }
+
+    @Test
+    void rejectsSnapshotCombinedWithMappingFiles() throws Exception {
+        var snapshot = compile();
+
+        var exitCode = execute("translate", "cql",
+                "-s", snapshot.toString(),
+                "-m", resource("mapping.json").toString(),
+                resource("structured-query.json").toString());
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(stderr()).contains("Option '--snapshot' can't be combined with");
+    }
+
+    @Test
+    void reportsInvalidSnapshotAsTranslationFailure() throws Exception {
+        var exitCode = execute("translate", "cql",
+                "-s", resource("mapping.json").toString(),
+                resource("structured-query.json").toString());
+
+        assertThat(exitCode).isEqualTo(1);
+        assertThat(stderr()).isEqualTo("Translation failed: Not a mapping snapshot.");
+    }
+}
@@ -21,6 +21,9 @@ class MainTest {
               -V, --version   Print version information and exit.
             Commands:
               translate  Translates a CCDL query to a target language
+              batch      Translates many CCDL queries to CQL in one run
+              serve      Serves translations of CCDL queries over HTTP
+              compile    Compiles the mapping files into a snapshot for fast startup
             """;
 
     private final PrintStream originalOut = System.out;
@@ -0,0 +1,42 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static de.medizininformatikinitiative.cctb.cli.Util.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServeCommandTest {
+
+    private final PrintStream originalErr = System.err;
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    @BeforeEach
+    void redirectStreams() {
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void restoreStreams() {
+        System.setErr(originalErr);
+    }
+
+    private String stderr() {
+        return err.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void rejectsNonPositiveThreads() throws Exception {
+        var exitCode = execute("serve", "--threads", "0",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString());
+
+        assertThat(exitCode).isEqualTo(2);
+        assertThat(stderr()).contains("Option '--threads' must be positive");
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import tools.jackson.databind.ObjectMapper;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -121,6 +122,17 @@ class TranslateCommandTest {
         assertThat(stderr()).isEmpty();
     }
 
+    @Test
+    void translatesCriteriaConcurrentlyIfRequested() throws Exception {
+        var exitCode = execute("translate", "cql", "--parallel",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                resource("structured-query.json").toString());
+
+        assertThat(exitCode).isZero();
+        assertThat(stdout()).isEqualTo(EXPECTED_CQL);
+    }
+
     @Test
     void targetLanguageIsMatchedCaseInsensitively() throws Exception {
         var exitCode = execute("translate", "CQL",
@@ -189,6 +201,24 @@ class TranslateCommandTest {
         assertThat(Files.readString(outputFile)).isEqualTo("existing content");
     }
 
+    @Test
+    void translatesStructuredQueryToElm() throws Exception {
+        var exitCode = execute("translate", "elm",
+                "-m", resource("mapping.json").toString(),
+                "-ct", resource("concept-tree.json").toString(),
+                resource("structured-query.json").toString());
+
+        assertThat(exitCode).isZero();
+        var library = new ObjectMapper().readTree(stdout()).get("library");
+        assertThat(library.at("/identifier/id").asString()).isEqualTo("Retrieve");
+        assertThat(library.at("/codeSystems/def/0/name").asString()).isEqualTo("codeSystem1");
+        var statements = library.at("/statements/def");
+        assertThat(statements.get(1).get("name").asString()).isEqualTo("Criterion");
+        assertThat(statements.get(1).at("/expression/operand/codes/operand/code").asString()).isEqualTo("C71.1");
+        assertThat(statements.get(2).get("name").asString()).isEqualTo("InInitialPopulation");
+        assertThat(statements.get(2).at("/expression/type").asString()).isEqualTo("ExpressionRef");
+    }
+
     @Test
     void rejectsUnknownTargetLanguage() throws Exception {
         var exitCode = execute("translate", "xml",
@@ -198,7 +228,7 @@ class TranslateCommandTest {
 
         assertThat(exitCode).isEqualTo(2);
         assertThat(stderr()).contains(
-                "Invalid value for positional parameter at index 0 (<TARGET_LANGUAGE>): expected one of [CQL] (case-insensitive) but was 'xml'");
+                "Invalid value for positional parameter at index 0 (<TARGET_LANGUAGE>): expected one of [CQL, ELM] (case-insensitive) but was 'xml'");
     }
 
     @Test
@@ -0,0 +1,221 @@
+package de.medizininformatikinitiative.cctb.cli;
+
+import de.medizininformatikinitiative.cctb.ReloadableMappingContext;
+import de.medizininformatikinitiative.cctb.TranslationCache;
+import de.medizininformatikinitiative.cctb.TranslationMetrics;
+import de.medizininformatikinitiative.cctb.Translator;
+import de.medizininformatikinitiative.cctb.model.Mapping;
+import de.medizininformatikinitiative.cctb.model.MappingContext;
+import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
+import de.medizininformatikinitiative.cctb.model.MappingTreeModuleRoot;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static de.medizininformatikinitiative.cctb.cli.Util.resource;
+import static de.medizininformatikinitiative.cctb.cli.Util.slurp;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranslationServerTest {
+
+    private static final ObjectMapper JSON_UTIL = new ObjectMapper();
+    private static final HttpClient CLIENT = HttpClient.newHttpClient();
+
+    private static MappingContext mappingContext;
+    private static Translator translator;
+    private static TranslationServer server;
+
+    @BeforeAll
+    static void startServer() throws Exception {
+        var mappings = Stream.of(JSON_UTIL.readValue(resource("mapping.json").toFile(), Mapping[].class))
+                .collect(Collectors.toMap(Mapping::key, Function.identity()));
+        var conceptTree = new MappingTreeBase(Arrays.asList(JSON_UTIL.readValue(resource("concept-tree.json").toFile(),
+                MappingTreeModuleRoot[].class)));
+        mappingContext = MappingContext.of(mappings, conceptTree, Map.of());
+        translator = Translator.of(mappingContext);
+        server = TranslationServer.start(new InetSocketAddress("127.0.0.1", 0), translator, 2);
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://127.0.0.1:%d%s".formatted(server.address().getPort(), path));
+    }
+
+    private static HttpResponse<String> post(String body) throws IOException, InterruptedException {
+        return CLIENT.send(HttpRequest.newBuilder(uri("/cql")).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void translatesStructuredQuery() throws Exception {
+        var response = post(slurp("structured-query.json"));
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValue("text/cql; charset=utf-8");
+        assertThat(response.body()).isEqualTo("""
+                library Retrieve version '1.0.0'
+                using FHIR version '4.0.0'
+                include FHIRHelpers version '4.0.0'
+
+                codesystem codeSystem1: 'http://fhir.de/CodeSystem/bfarm/icd-10-gm'
+
+                context Patient
+
+                define Criterion:
+                  exists [Condition: Code 'C71.1' from codeSystem1]
+
+                define InInitialPopulation:
+                  Criterion
+                """);
+    }
+
+    @Test
+    void sendsContentLength() throws Exception {
+        var response = post(slurp("structured-query.json"));
+
+        assertThat(response.headers().firstValue("Content-Length"))
+                .hasValue(String.valueOf(response.body().getBytes(StandardCharsets.UTF_8).length));
+    }
+
+    @Test
+    void translatesConsecutiveRequests() throws Exception {
+        var first = post(slurp("structured-query.json"));
+        var second = post(slurp("structured-query.json"));
+
+        assertThat(second.body()).isEqualTo(first.body());
+    }
+
+    @Test
+    void rejectsInvalidJson() throws Exception {
+        var response = post("{");
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(response.body()).startsWith("Invalid Structured Query: ");
+    }
+
+    @Test
+    void reportsUnexpectedFailure() throws Exception {
+        var rejecting = Translator.of(mappingContext, command -> {
+            throw new RejectedExecutionException("executor shut down");
+        });
+        try (var failingServer = TranslationServer.start(new InetSocketAddress("127.0.0.1", 0), rejecting, 2)) {
+            var response = CLIENT.send(HttpRequest.newBuilder(URI.create("http://127.0.0.1:%d/cql"
+                            .formatted(failingServer.address().getPort())))
+                    .POST(HttpRequest.BodyPublishers.ofString(slurp("structured-query.json")))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+
+            assertThat(response.statusCode()).isEqualTo(500);
+            assertThat(response.body()).isEqualTo("Internal error: executor shut down");
+        }
+    }
+
+    @Test
+    void rejectsOtherMethods() throws Exception {
+        var response = CLIENT.send(HttpRequest.newBuilder(uri("/cql")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(405);
+        assertThat(response.headers().firstValue("Allow")).hasValue("POST");
+    }
+
+    @Test
+    void reportsHealth() throws Exception {
+        var response = CLIENT.send(HttpRequest.newBuilder(uri("/health")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.body()).isEqualTo("OK");
+    }
+
+    @Test
+    void answersRepeatedQueriesFromCache() throws Exception {
+        var cache = TranslationCache.of(translator, 10, Duration.ofMinutes(1));
+        try (var cachingServer = TranslationServer.start(new InetSocketAddress("127.0.0.1", 0), cache, 2)) {
+            var request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:%d/cql"
+                            .formatted(cachingServer.address().getPort())))
+                    .POST(HttpRequest.BodyPublishers.ofString(slurp("structured-query.json")))
+                    .build();
+
+            var first = CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+            var second = CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+
+            assertThat(second.statusCode()).isEqualTo(200);
+            assertThat(second.body()).isEqualTo(first.body()).startsWith("library Retrieve");
+            assertThat(cache.stats().hits()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void reloadsMappingContext() throws Exception {
+        var contexts = List.of(MappingContext.of(), mappingContext).iterator();
+        var reloadable = ReloadableMappingContext.load(contexts::next, Runnable::run, TranslationMetrics.NOOP);
+        try (var reloadingServer = TranslationServer.start(new InetSocketAddress("127.0.0.1", 0), reloadable, 10,
+                Duration.ofMinutes(1), 2)) {
+            var baseUri = "http://127.0.0.1:%d".formatted(reloadingServer.address().getPort());
+            var translation = HttpRequest.newBuilder(URI.create(baseUri + "/cql"))
+                    .POST(HttpRequest.BodyPublishers.ofString(slurp("structured-query.json")))
+                    .build();
+            var reload = HttpRequest.newBuilder(URI.create(baseUri + "/reload"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build();
+
+            var before = CLIENT.send(translation, HttpResponse.BodyHandlers.ofString());
+            var reloaded = CLIENT.send(reload, HttpResponse.BodyHandlers.ofString());
+            var after = CLIENT.send(translation, HttpResponse.BodyHandlers.ofString());
+
+            assertThat(before.statusCode()).isEqualTo(422);
+            assertThat(reloaded.statusCode()).isEqualTo(200);
+            assertThat(reloaded.body()).startsWith("Reloaded mapping in ");
+            assertThat(after.statusCode()).isEqualTo(200);
+            assertThat(after.body()).contains("exists [Condition: Code 'C71.1' from codeSystem1]");
+        }
+    }
+
+    @Test
+    void keepsMappingContextOnFailedReload() throws Exception {
+        var loads = new AtomicInteger();
+        var reloadable = ReloadableMappingContext.load(() -> {
+            if (loads.incrementAndGet() > 1) {
+                throw new IllegalStateException("broken mapping");
+            }
+            return mappingContext;
+        }, Runnable::run, TranslationMetrics.NOOP);
+        try (var reloadingServer = TranslationServer.start(new InetSocketAddress("127.0.0.1", 0), reloadable, 0,
+                Duration.ZERO, 2)) {
+            var baseUri = "http://127.0.0.1:%d".formatted(reloadingServer.address().getPort());
+
+            var reloaded = CLIENT.send(HttpRequest.newBuilder(URI.create(baseUri + "/reload"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+            var after = CLIENT.send(HttpRequest.newBuilder(URI.create(baseUri + "/cql"))
+                    .POST(HttpRequest.BodyPublishers.ofString(slurp("structured-query.json"))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertThat(reloaded.statusCode()).isEqualTo(500);
+            assertThat(reloaded.body()).isEqualTo("Reload failed: broken mapping");
+            assertThat(after.statusCode()).isEqualTo(200);
+            assertThat(reloadable.generation()).isEqualTo(1);
+        }
+    }
+}
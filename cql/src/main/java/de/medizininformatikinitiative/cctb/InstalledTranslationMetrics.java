@@ -0,0 +1,15 @@
+package de.medizininformatikinitiative.cctb;
+
+import java.util.ServiceLoader;
+
+/**
+ * Holds the {@link TranslationMetrics#installed() installed} metrics, which are looked up once on first use.
+ */
+final class InstalledTranslationMetrics {
+
+    static final TranslationMetrics INSTANCE = ServiceLoader.load(TranslationMetrics.class).findFirst()
+            .orElse(TranslationMetrics.NOOP);
+
+    private InstalledTranslationMetrics() {
+    }
+}
@@ -2,16 +2,42 @@ package de.medizininformatikinitiative.cctb;
 
 import de.medizininformatikinitiative.cctb.model.cql.Clause;
 import de.medizininformatikinitiative.cctb.model.cql.Expression;
+import de.medizininformatikinitiative.cctb.model.cql.IdentifierExpression;
+import de.medizininformatikinitiative.cctb.model.cql.SuffixedIdentifierExpression;
+
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
 
 /**
+ * @param indent     the number of spaces to indent
+ * @param precedence the precedence of the surrounding expression
+ * @param suffixes        the numerical suffixes of {@link SuffixedIdentifierExpression SuffixedIdentifierExpressions}
+ *                        resolved by the enclosing library
+ * @param codeSystemNames the names of code systems without alias resolved by the enclosing library, keyed by their
+ *                        URL
  * @author Alexander Kiel
  */
-public record PrintContext(int indent, int precedence) {
+public record PrintContext(int indent, int precedence, Map<IdentifierExpression, Integer> suffixes,
+                           Map<String, String> codeSystemNames) {
+
+    public static final PrintContext ZERO = new PrintContext(0, 0, Map.of(), Map.of());
+
+    private static final String[] INDENTS = new String[64];
 
-    public static final PrintContext ZERO = new PrintContext(0, 0);
+    static {
+        for (int i = 0; i < INDENTS.length; i++) {
+            INDENTS[i] = " ".repeat(i);
+        }
+    }
+
+    public PrintContext {
+        requireNonNull(suffixes);
+        requireNonNull(codeSystemNames);
+    }
 
     public String getIndent() {
-        return " ".repeat(indent);
+        return indent < INDENTS.length ? INDENTS[indent] : " ".repeat(indent);
     }
 
     public String parenthesizeZero(String s) {
@@ -19,15 +45,25 @@ public record PrintContext(int indent, int precedence) {
     }
 
     public String parenthesize(int precedence, String s) {
-        return precedence < this.precedence ? "(%s)".formatted(s) : s;
+        return needsParentheses(precedence) ? "(%s)".formatted(s) : s;
+    }
+
+    /**
+     * Returns {@code true} iff an expression with {@code precedence} has to be parenthesized in this context.
+     *
+     * @param precedence the precedence of the expression
+     * @return {@code true} iff parentheses are needed
+     */
+    public boolean needsParentheses(int precedence) {
+        return precedence < this.precedence;
     }
 
     public PrintContext increase() {
-        return new PrintContext(indent + 2, precedence);
+        return new PrintContext(indent + 2, precedence, suffixes, codeSystemNames);
     }
 
     public PrintContext withPrecedence(int precedence) {
-        return new PrintContext(indent, precedence);
+        return new PrintContext(indent, precedence, suffixes, codeSystemNames);
     }
 
     /**
@@ -36,7 +72,49 @@ public record PrintContext(int indent, int precedence) {
      * @return a new {@code PrintContext} with a {@code precedence} of zero and an {@code indent} of this {@code PrintContext}
      */
     public PrintContext resetPrecedence() {
-        return new PrintContext(indent, 0);
+        return new PrintContext(indent, 0, suffixes, codeSystemNames);
+    }
+
+    /**
+     * Returns a new {@code PrintContext} using {@code suffixes} to print {@link SuffixedIdentifierExpression
+     * SuffixedIdentifierExpressions}.
+     *
+     * @param suffixes the numerical suffixes of identifiers
+     * @return a new {@code PrintContext} with {@code suffixes}
+     */
+    public PrintContext withSuffixes(Map<IdentifierExpression, Integer> suffixes) {
+        return new PrintContext(indent, precedence, suffixes, codeSystemNames);
+    }
+
+    /**
+     * Returns a new {@code PrintContext} using {@code codeSystemNames} to print references to code systems without
+     * alias.
+     *
+     * @param codeSystemNames the names of code systems keyed by their URL
+     * @return a new {@code PrintContext} with {@code codeSystemNames}
+     */
+    public PrintContext withCodeSystemNames(Map<String, String> codeSystemNames) {
+        return new PrintContext(indent, precedence, suffixes, codeSystemNames);
+    }
+
+    /**
+     * Returns the numerical suffix of {@code identifier} or zero if {@code identifier} has no suffix.
+     *
+     * @param identifier the identifier to lookup
+     * @return the numerical suffix of {@code identifier} or zero
+     */
+    public int suffix(IdentifierExpression identifier) {
+        return suffixes.getOrDefault(identifier, 0);
+    }
+
+    /**
+     * Returns the name {@code codeSystemIdentifier} is printed as.
+     *
+     * @param codeSystemIdentifier either the alias of a code system or the URL of a code system without alias
+     * @return the resolved name or {@code codeSystemIdentifier} itself if it isn't known
+     */
+    public String codeSystemName(String codeSystemIdentifier) {
+        return codeSystemNames.getOrDefault(codeSystemIdentifier, codeSystemIdentifier);
     }
 
     public String print(Expression<?> expression) {
@@ -0,0 +1,261 @@
+package de.medizininformatikinitiative.cctb;
+
+import de.medizininformatikinitiative.cctb.model.cql.AliasedQuerySource;
+import de.medizininformatikinitiative.cctb.model.cql.Clause;
+import de.medizininformatikinitiative.cctb.model.cql.Expression;
+import de.medizininformatikinitiative.cctb.model.cql.Statement;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A sink CQL is printed into in a single pass.
+ * <p>
+ * Expressions print their children directly into the printer instead of building nested strings. The
+ * {@link Appendable} the printer wraps can be a {@link StringBuilder} or a {@link java.io.Writer}. {@link IOException
+ * IOExceptions} of the underlying {@code Appendable} are rethrown as {@link UncheckedIOException}.
+ * <p>
+ * Children are printed directly up to a nesting depth of {@value #MAX_DIRECT_DEPTH}, so printing usual expressions
+ * doesn't allocate anything. Deeper children are printed without recursion, so expressions of any depth can be
+ * printed: while such an expression prints itself, the text it appends and the children it
+ * {@link #print(Expression, PrintContext) prints} are only recorded. The recorded output is then written in order,
+ * recording each child when it is reached, with the expressions being printed kept on an explicit stack.
+ */
+public final class Printer {
+
+    /**
+     * The nesting depth up to which children are printed directly, which is well within the default stack size.
+     */
+    private static final int MAX_DIRECT_DEPTH = 256;
+
+    private final Appendable out;
+
+    /**
+     * The number of expressions and clauses being printed directly.
+     */
+    private int depth;
+
+    /**
+     * The output recorded for the expression or clause that prints itself or {@code null} while writing.
+     */
+    private List<Object> recorded;
+
+    private Printer(Appendable out) {
+        this.out = requireNonNull(out);
+    }
+
+    /**
+     * Returns a printer appending to {@code out}.
+     *
+     * @param out the appendable to print into
+     * @return a printer
+     */
+    public static Printer of(Appendable out) {
+        return new Printer(out);
+    }
+
+    /**
+     * Prints {@code expression} into a string.
+     *
+     * @param expression   the expression to print
+     * @param printContext the context to print with
+     * @return the printed expression
+     */
+    public static String printToString(Expression<?> expression, PrintContext printContext) {
+        var builder = new StringBuilder();
+        new Printer(builder).print(expression, printContext);
+        return builder.toString();
+    }
+
+    /**
+     * Prints {@code clause} into a string.
+     *
+     * @param clause       the clause to print
+     * @param printContext the context to print with
+     * @return the printed clause
+     */
+    public static String printToString(Clause clause, PrintContext printContext) {
+        var builder = new StringBuilder();
+        new Printer(builder).print(clause, printContext);
+        return builder.toString();
+    }
+
+    /**
+     * Prints {@code source} into a string.
+     *
+     * @param source       the query source to print
+     * @param printContext the context to print with
+     * @return the printed query source
+     */
+    public static String printToString(AliasedQuerySource source, PrintContext printContext) {
+        var builder = new StringBuilder();
+        source.print(printContext, new Printer(builder));
+        return builder.toString();
+    }
+
+    /**
+     * Prints {@code statement} into a string.
+     *
+     * @param statement    the statement to print
+     * @param printContext the context to print with
+     * @return the printed statement
+     */
+    public static String printToString(Statement statement, PrintContext printContext) {
+        var builder = new StringBuilder();
+        statement.print(printContext, new Printer(builder));
+        return builder.toString();
+    }
+
+    public Printer append(CharSequence s) {
+        if (recorded != null) {
+            recorded.add(s.toString());
+            return this;
+        }
+        try {
+            out.append(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    public Printer append(char c) {
+        if (recorded != null) {
+            recorded.add(c);
+            return this;
+        }
+        try {
+            out.append(c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a line break followed by the indentation of {@code printContext}.
+     *
+     * @param printContext the context holding the indentation
+     * @return this printer
+     */
+    public Printer newline(PrintContext printContext) {
+        return append('\n').append(printContext.getIndent());
+    }
+
+    public Printer print(Expression<?> expression, PrintContext printContext) {
+        requireNonNull(expression);
+        if (recorded == null && depth < MAX_DIRECT_DEPTH) {
+            depth++;
+            try {
+                expression.print(printContext, this);
+            } finally {
+                depth--;
+            }
+            return this;
+        }
+        return print(new ExpressionNode(expression, printContext));
+    }
+
+    public Printer print(Clause clause, PrintContext printContext) {
+        requireNonNull(clause);
+        if (recorded == null && depth < MAX_DIRECT_DEPTH) {
+            depth++;
+            try {
+                clause.print(printContext, this);
+            } finally {
+                depth--;
+            }
+            return this;
+        }
+        return print(new ClauseNode(clause, printContext));
+    }
+
+    private Printer print(Node node) {
+        if (recorded != null) {
+            recorded.add(node);
+            return this;
+        }
+        var stack = new ArrayDeque<Iterator<Object>>();
+        stack.push(record(node));
+        while (!stack.isEmpty()) {
+            var output = stack.peek();
+            if (!output.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            var next = output.next();
+            if (next instanceof Node child) {
+                stack.push(record(child));
+            } else if (next instanceof Character c) {
+                append(c.charValue());
+            } else {
+                append((CharSequence) next);
+            }
+        }
+        return this;
+    }
+
+    private Iterator<Object> record(Node node) {
+        recorded = new ArrayList<>();
+        try {
+            node.print(this);
+            return recorded.iterator();
+        } finally {
+            recorded = null;
+        }
+    }
+
+    /**
+     * Appends an opening parenthesis if an expression with {@code precedence} has to be parenthesized in
+     * {@code printContext}.
+     *
+     * @param printContext the context of the expression
+     * @param precedence   the precedence of the expression
+     * @return this printer
+     */
+    public Printer openParen(PrintContext printContext, int precedence) {
+        return printContext.needsParentheses(precedence) ? append('(') : this;
+    }
+
+    /**
+     * Appends a closing parenthesis if an expression with {@code precedence} has to be parenthesized in
+     * {@code printContext}.
+     *
+     * @param printContext the context of the expression
+     * @param precedence   the precedence of the expression
+     * @return this printer
+     */
+    public Printer closeParen(PrintContext printContext, int precedence) {
+        return printContext.needsParentheses(precedence) ? append(')') : this;
+    }
+
+    /**
+     * An expression or clause to print.
+     */
+    private sealed interface Node permits ExpressionNode, ClauseNode {
+
+        void print(Printer printer);
+    }
+
+    private record ExpressionNode(Expression<?> expression, PrintContext printContext) implements Node {
+
+        @Override
+        public void print(Printer printer) {
+            expression.print(printContext, printer);
+        }
+    }
+
+    private record ClauseNode(Clause clause, PrintContext printContext) implements Node {
+
+        @Override
+        public void print(Printer printer) {
+            clause.print(printContext, printer);
+        }
+    }
+}
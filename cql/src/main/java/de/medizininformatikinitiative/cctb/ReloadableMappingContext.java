@@ -0,0 +1,181 @@
+package de.medizininformatikinitiative.cctb;
+
+import de.medizininformatikinitiative.cctb.model.MappingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A holder of the current {@link MappingContext} that can be reloaded while translations are running.
+ * <p>
+ * A reload builds the new mapping context in the background and swaps it in atomically once it's complete. Mapping
+ * contexts are immutable, so {@link Translator Translators} created before a reload finish their translations on the
+ * old mapping context, while translators created after it use the new one. A failed reload keeps the current mapping
+ * context. The term codes {@link de.medizininformatikinitiative.cctb.model.common.TermCodes interned} by a replaced
+ * mapping context are dropped together with it.
+ * <p>
+ * The durations of all loads and failed loads are reported to the given {@link TranslationMetrics}.
+ * <p>
+ * Instances are thread-safe. Reloads requested while a reload is running join the running reload.
+ */
+public final class ReloadableMappingContext {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReloadableMappingContext.class);
+
+    private final Callable<MappingContext> loader;
+    private final Executor executor;
+    private final TranslationMetrics metrics;
+    private final AtomicReference<Snapshot> current;
+    private final AtomicReference<CompletableFuture<MappingContext>> running = new AtomicReference<>();
+    private final List<Consumer<MappingContext>> listeners = new CopyOnWriteArrayList<>();
+
+    private record Snapshot(MappingContext mappingContext, long generation) {
+    }
+
+    private ReloadableMappingContext(Callable<MappingContext> loader, Executor executor, TranslationMetrics metrics,
+                                     MappingContext mappingContext) {
+        this.loader = loader;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.current = new AtomicReference<>(new Snapshot(mappingContext, 1));
+    }
+
+    /**
+     * Loads the initial mapping context with {@code loader} in the calling thread. Reloads run on a new daemon thread
+     * each and are reported to the {@link TranslationMetrics#installed() installed} metrics.
+     *
+     * @param loader the loader of mapping contexts
+     * @return the holder of the loaded mapping context
+     * @throws Exception if the initial mapping context can't be loaded
+     */
+    public static ReloadableMappingContext load(Callable<MappingContext> loader) throws Exception {
+        return load(loader, ReloadableMappingContext::startDaemon, TranslationMetrics.installed());
+    }
+
+    /**
+     * Loads the initial mapping context with {@code loader} in the calling thread. Reloads run on {@code executor}.
+     *
+     * @param loader   the loader of mapping contexts
+     * @param executor the executor reloads run on
+     * @param metrics  the metrics to report loads to
+     * @return the holder of the loaded mapping context
+     * @throws Exception if the initial mapping context can't be loaded
+     */
+    public static ReloadableMappingContext load(Callable<MappingContext> loader, Executor executor,
+                                                TranslationMetrics metrics) throws Exception {
+        requireNonNull(executor);
+        return new ReloadableMappingContext(loader, executor, metrics, timedLoad(loader, metrics));
+    }
+
+    private static void startDaemon(Runnable runnable) {
+        var thread = new Thread(runnable, "mapping-reload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static MappingContext timedLoad(Callable<MappingContext> loader, TranslationMetrics metrics)
+            throws Exception {
+        var start = System.nanoTime();
+        try {
+            var mappingContext = requireNonNull(loader.call(), "loaded mapping context");
+            metrics.mappingLoaded(System.nanoTime() - start);
+            return mappingContext;
+        } catch (Exception | Error e) {
+            metrics.mappingLoadFailed(System.nanoTime() - start, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the current mapping context.
+     *
+     * @return the current mapping context
+     */
+    public MappingContext get() {
+        return current.get().mappingContext;
+    }
+
+    /**
+     * Returns the number of mapping contexts loaded so far, starting at one for the initial one.
+     *
+     * @return the generation of the current mapping context
+     */
+    public long generation() {
+        return current.get().generation;
+    }
+
+    /**
+     * Adds {@code listener}, which is called with the new mapping context after each successful reload in the thread
+     * that loaded it. Exceptions thrown by the listener are logged and don't fail the reload.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(Consumer<MappingContext> listener) {
+        listeners.add(requireNonNull(listener));
+    }
+
+    /**
+     * Reloads the mapping context in the background.
+     * <p>
+     * The returned future completes with the new mapping context after it was swapped in, or exceptionally with the
+     * cause of a failed reload, in which case the current mapping context is kept.
+     *
+     * @return a future of the new mapping context
+     */
+    public CompletableFuture<MappingContext> reload() {
+        var future = new CompletableFuture<MappingContext>();
+        var witness = running.compareAndExchange(null, future);
+        if (witness != null) {
+            return witness;
+        }
+        try {
+            executor.execute(() -> {
+                MappingContext mappingContext = null;
+                Throwable failure = null;
+                try {
+                    var loaded = timedLoad(loader, metrics);
+                    current.getAndUpdate(snapshot -> new Snapshot(loaded, snapshot.generation + 1));
+                    notifyListeners(loaded);
+                    mappingContext = loaded;
+                } catch (Throwable e) {
+                    failure = e;
+                } finally {
+                    // reset before completing, so that callbacks of the future can start the next reload
+                    running.set(null);
+                    if (failure == null) {
+                        future.complete(mappingContext);
+                    } else {
+                        future.completeExceptionally(failure);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(null);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Calls all listeners with the new {@code mappingContext}. The new mapping context is already current, so a
+     * failing listener is only logged and doesn't fail the reload or keep the other listeners from being called.
+     */
+    private void notifyListeners(MappingContext mappingContext) {
+        for (var listener : listeners) {
+            try {
+                listener.accept(mappingContext);
+            } catch (RuntimeException e) {
+                logger.warn("Listener failed on reload of the mapping context.", e);
+            }
+        }
+    }
+}
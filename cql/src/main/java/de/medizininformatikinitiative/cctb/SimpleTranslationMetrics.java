@@ -0,0 +1,153 @@
+package de.medizininformatikinitiative.cctb;
+
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualConcept;
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
+import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuery;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TranslationMetrics} that aggregate all measurements in memory into named timers and counters, which can be
+ * read at any time, for example to export them to a monitoring system.
+ * <p>
+ * Timers:
+ * <ul>
+ *     <li>{@value #TRANSLATION} - the translations of Structured Queries</li>
+ *     <li>{@value #EXPANSION} - the expansions of concepts</li>
+ *     <li>{@value #COMBINATION} - the combinations of containers</li>
+ *     <li>{@value #PRINT} - the printing of libraries</li>
+ *     <li>{@value #MAPPING_LOAD} - the loads of mapping contexts</li>
+ * </ul>
+ * Counters:
+ * <ul>
+ *     <li>{@value #EXPANDED_CODES} - the term codes concepts were expanded into</li>
+ *     <li>{@value #MAPPING_MISSES} - the term codes without mapping</li>
+ *     <li>{@value #DEFINITIONS} - the expression definitions of printed libraries</li>
+ *     <li>{@value #OUTPUT_CHARS} - the characters of printed libraries</li>
+ *     <li>{@value #MAPPING_LOAD_FAILURES} - the failed loads of mapping contexts</li>
+ * </ul>
+ * Instances are thread-safe.
+ */
+public final class SimpleTranslationMetrics implements TranslationMetrics {
+
+    public static final String TRANSLATION = "cctb.translation";
+    public static final String EXPANSION = "cctb.expansion";
+    public static final String COMBINATION = "cctb.combination";
+    public static final String PRINT = "cctb.print";
+    public static final String MAPPING_LOAD = "cctb.mapping.load";
+    public static final String EXPANDED_CODES = "cctb.expanded.codes";
+    public static final String MAPPING_MISSES = "cctb.mapping.misses";
+    public static final String DEFINITIONS = "cctb.definitions";
+    public static final String OUTPUT_CHARS = "cctb.output.chars";
+    public static final String MAPPING_LOAD_FAILURES = "cctb.mapping.load.failures";
+
+    private final Timer translation = new Timer();
+    private final Timer expansion = new Timer();
+    private final Timer combination = new Timer();
+    private final Timer print = new Timer();
+    private final Timer mappingLoad = new Timer();
+    private final LongAdder expandedCodes = new LongAdder();
+    private final LongAdder mappingMisses = new LongAdder();
+    private final LongAdder definitions = new LongAdder();
+    private final LongAdder outputChars = new LongAdder();
+    private final LongAdder mappingLoadFailures = new LongAdder();
+
+    /**
+     * A snapshot of a timer.
+     *
+     * @param count the number of measurements
+     * @param total the sum of all measured durations
+     * @param max   the longest measured duration
+     */
+    public record TimerSnapshot(long count, Duration total, Duration max) {
+
+        /**
+         * Returns the mean duration or zero if nothing was measured.
+         *
+         * @return the mean duration
+         */
+        public Duration mean() {
+            return count == 0 ? Duration.ZERO : total.dividedBy(count);
+        }
+    }
+
+    @Override
+    public void translated(StructuredQuery query, long nanos) {
+        translation.record(nanos);
+    }
+
+    @Override
+    public void expanded(ContextualConcept concept, int codes, long nanos) {
+        expansion.record(nanos);
+        expandedCodes.add(codes);
+    }
+
+    @Override
+    public void mappingMissed(ContextualTermCode key) {
+        mappingMisses.increment();
+    }
+
+    @Override
+    public void combined(long nanos) {
+        combination.record(nanos);
+    }
+
+    @Override
+    public void printed(int definitions, long chars, long nanos) {
+        print.record(nanos);
+        this.definitions.add(definitions);
+        outputChars.add(chars);
+    }
+
+    @Override
+    public void mappingLoaded(long nanos) {
+        mappingLoad.record(nanos);
+    }
+
+    @Override
+    public void mappingLoadFailed(long nanos, Throwable cause) {
+        mappingLoadFailures.increment();
+    }
+
+    /**
+     * Returns snapshots of all timers by name.
+     *
+     * @return the timer snapshots
+     */
+    public Map<String, TimerSnapshot> timers() {
+        return Map.of(TRANSLATION, translation.snapshot(), EXPANSION, expansion.snapshot(),
+                COMBINATION, combination.snapshot(), PRINT, print.snapshot(),
+                MAPPING_LOAD, mappingLoad.snapshot());
+    }
+
+    /**
+     * Returns the values of all counters by name.
+     *
+     * @return the counter values
+     */
+    public Map<String, Long> counters() {
+        return Map.of(EXPANDED_CODES, expandedCodes.sum(), MAPPING_MISSES, mappingMisses.sum(),
+                DEFINITIONS, definitions.sum(), OUTPUT_CHARS, outputChars.sum(),
+                MAPPING_LOAD_FAILURES, mappingLoadFailures.sum());
+    }
+
+    private static final class Timer {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        private TimerSnapshot snapshot() {
+            return new TimerSnapshot(count.sum(), Duration.ofNanos(total.sum()), Duration.ofNanos(max.get()));
+        }
+    }
+}
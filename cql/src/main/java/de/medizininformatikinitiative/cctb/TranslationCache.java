@@ -0,0 +1,168 @@
+package de.medizininformatikinitiative.cctb;
+
+import de.medizininformatikinitiative.cctb.model.structured_query.Criterion;
+import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuery;
+import de.medizininformatikinitiative.cctb.model.structured_query.TranslationException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bounded cache of printed CQL libraries in front of a {@link Translator}.
+ * <p>
+ * Structured Queries are looked up by a canonical form. The order of the criteria inside each group, the order of the
+ * groups and duplicated criteria are irrelevant. Criteria themselves are compared by value, so the order of their term
+ * codes and attribute filters and the displays of term codes are irrelevant as well. Queries with the same canonical
+ * form return the CQL of the query that was translated first.
+ * <p>
+ * At most {@code maximumSize} libraries are kept, evicting the least recently used one. Libraries older than
+ * {@code maximumAge} are evicted when they are accessed. Failed translations aren't cached.
+ * <p>
+ * Instances are thread-safe. Translations run outside the lock of the cache, so concurrent misses of the same query
+ * may translate it more than once.
+ */
+public final class TranslationCache {
+
+    private final Translator translator;
+    private final long maximumAgeNanos;
+    private final LongSupplier nanoTime;
+    private final Map<Key, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private TranslationCache(Translator translator, int maximumSize, Duration maximumAge, LongSupplier nanoTime) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximum size has to be positive but was %d".formatted(maximumSize));
+        }
+        this.translator = requireNonNull(translator);
+        this.maximumAgeNanos = maximumAge.toNanos();
+        this.nanoTime = nanoTime;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a cache in front of {@code translator}.
+     *
+     * @param translator  the translator to use on cache misses
+     * @param maximumSize the maximum number of libraries to keep
+     * @param maximumAge  the time after which a library is translated again
+     * @return the cache
+     * @throws IllegalArgumentException if {@code maximumSize} isn't positive
+     */
+    public static TranslationCache of(Translator translator, int maximumSize, Duration maximumAge) {
+        return new TranslationCache(translator, maximumSize, maximumAge, System::nanoTime);
+    }
+
+    static TranslationCache of(Translator translator, int maximumSize, Duration maximumAge, LongSupplier nanoTime) {
+        return new TranslationCache(translator, maximumSize, maximumAge, nanoTime);
+    }
+
+    /**
+     * The canonical form of a {@link StructuredQuery}.
+     * <p>
+     * Empty groups are dropped because they don't contribute to the translation.
+     */
+    private record Key(Set<Set<Criterion>> inclusionCriteria, Set<Set<Criterion>> exclusionCriteria) {
+
+        static Key of(StructuredQuery structuredQuery) {
+            return new Key(canonical(structuredQuery.inclusionCriteria()),
+                    canonical(structuredQuery.exclusionCriteria()));
+        }
+
+        private static Set<Set<Criterion>> canonical(List<List<Criterion>> criteria) {
+            return criteria.stream()
+                    .filter(group -> !group.isEmpty())
+                    .map(Set::copyOf)
+                    .collect(Collectors.toUnmodifiableSet());
+        }
+    }
+
+    private record Entry(String cql, long createdAt) {
+    }
+
+    /**
+     * Statistics of a cache.
+     *
+     * @param hits      the number of lookups answered from the cache
+     * @param misses    the number of lookups that had to be translated
+     * @param evictions the number of libraries evicted because of the size or age limit
+     * @param size      the number of libraries currently cached
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    /**
+     * Returns the CQL library of {@code structuredQuery} printed into a string.
+     *
+     * @param structuredQuery the Structured Query to translate
+     * @return the printed CQL library
+     * @throws TranslationException if the given {@code structuredQuery} can't be translated
+     */
+    public String toCql(StructuredQuery structuredQuery) {
+        var key = Key.of(structuredQuery);
+        var cql = lookup(key);
+        if (cql != null) {
+            hits.increment();
+            return cql;
+        }
+        misses.increment();
+        cql = translator.toCql(structuredQuery).print();
+        store(key, cql);
+        return cql;
+    }
+
+    private synchronized String lookup(Key key) {
+        var entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (nanoTime.getAsLong() - entry.createdAt() > maximumAgeNanos) {
+            entries.remove(key);
+            evictions.increment();
+            return null;
+        }
+        return entry.cql();
+    }
+
+    private synchronized void store(Key key, String cql) {
+        entries.put(key, new Entry(cql, nanoTime.getAsLong()));
+    }
+
+    /**
+     * Removes all cached libraries. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the current statistics of this cache.
+     *
+     * @return the statistics
+     */
+    public Stats stats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+}
@@ -0,0 +1,97 @@
+package de.medizininformatikinitiative.cctb;
+
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualConcept;
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
+import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuery;
+
+import java.util.ServiceLoader;
+
+/**
+ * Receives measurements of the translation process.
+ * <p>
+ * All methods do nothing by default, so implementations only override what they are interested in. Implementations
+ * have to be thread-safe, because they are shared by concurrent translations, and fast, because some methods are
+ * called many times per translation.
+ * <p>
+ * The {@link #installed() installed} metrics are used by default. They are the first implementation found by the
+ * {@link ServiceLoader} or {@link #NOOP} if there is none.
+ */
+public interface TranslationMetrics {
+
+    /**
+     * Metrics that ignore all measurements.
+     */
+    TranslationMetrics NOOP = new TranslationMetrics() {
+    };
+
+    /**
+     * Returns the metrics installed as service provider or {@link #NOOP} if there are none.
+     *
+     * @return the installed metrics
+     */
+    static TranslationMetrics installed() {
+        return InstalledTranslationMetrics.INSTANCE;
+    }
+
+    /**
+     * Called after {@code query} was translated.
+     *
+     * @param query the translated Structured Query
+     * @param nanos the duration of the translation
+     */
+    default void translated(StructuredQuery query, long nanos) {
+    }
+
+    /**
+     * Called after {@code concept} was expanded.
+     *
+     * @param concept the expanded concept
+     * @param codes   the number of term codes the concept was expanded into
+     * @param nanos   the duration of the expansion
+     */
+    default void expanded(ContextualConcept concept, int codes, long nanos) {
+    }
+
+    /**
+     * Called if there is no mapping for {@code key}.
+     *
+     * @param key the term code without mapping
+     */
+    default void mappingMissed(ContextualTermCode key) {
+    }
+
+    /**
+     * Called after two containers were combined during a translation.
+     *
+     * @param nanos the duration of the combination
+     */
+    default void combined(long nanos) {
+    }
+
+    /**
+     * Called after a library was printed.
+     *
+     * @param definitions the number of expression definitions of the library
+     * @param chars       the number of characters printed
+     * @param nanos       the duration of printing
+     */
+    default void printed(int definitions, long chars, long nanos) {
+    }
+
+    /**
+     * Called after a mapping context was loaded.
+     *
+     * @param nanos the duration of loading
+     */
+    default void mappingLoaded(long nanos) {
+    }
+
+    /**
+     * Called after loading a mapping context failed.
+     *
+     * @param nanos the duration until the failure
+     * @param cause the cause of the failure
+     */
+    default void mappingLoadFailed(long nanos, Throwable cause) {
+    }
+}
@@ -9,9 +9,14 @@ import de.medizininformatikinitiative.cctb.model.structured_query.StructuredQuer
 import de.medizininformatikinitiative.cctb.model.structured_query.TranslationException;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BinaryOperator;
 
 import static de.medizininformatikinitiative.cctb.model.cql.Container.AND;
 import static de.medizininformatikinitiative.cctb.model.cql.Container.AND_NOT;
+import static de.medizininformatikinitiative.cctb.model.cql.Container.OR;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -20,15 +25,23 @@ import static java.util.Objects.requireNonNull;
  * It needs {@code mappings} and will produce a CQL {@link Container} by calling {@link #toCql(StructuredQuery) toCql}.
  * <p>
  * Instances are immutable and thread-safe.
+ * <p>
+ * A translator created with an {@link Executor} translates the criteria of a query concurrently. The translated
+ * criteria are combined in the order of the query, so the result is the same as the one of a sequential translator.
+ * <p>
+ * Translations, concept expansions and the combination of the translated criteria are reported to the
+ * {@link TranslationMetrics} of the {@link MappingContext#metrics() mapping context}.
  *
  * @author Alexander Kiel
  */
 public class Translator {
 
     private final MappingContext mappingContext;
+    private final Executor executor;
 
-    private Translator(MappingContext mappingContext) {
+    private Translator(MappingContext mappingContext, Executor executor) {
         this.mappingContext = requireNonNull(mappingContext);
+        this.executor = executor;
     }
 
     /**
@@ -37,7 +50,7 @@ public class Translator {
      * @return a translator without any mappings
      */
     public static Translator of() {
-        return new Translator(MappingContext.of());
+        return new Translator(MappingContext.of(), null);
     }
 
     /**
@@ -46,7 +59,32 @@ public class Translator {
      * @return a translator with mappings defined in {@code mappingContext}
      */
     public static Translator of(MappingContext mappingContext) {
-        return new Translator(mappingContext);
+        return new Translator(mappingContext, null);
+    }
+
+    /**
+     * Returns a translator with mappings defined in {@code mappingContext} that translates the criteria of a query
+     * concurrently on {@code executor}.
+     * <p>
+     * The calling thread waits for the criteria to be translated, so {@code executor} shouldn't be a bounded pool
+     * the caller itself runs on.
+     *
+     * @param mappingContext the mappings to use
+     * @param executor       the executor to translate the criteria on
+     * @return a translator with mappings defined in {@code mappingContext}
+     */
+    public static Translator of(MappingContext mappingContext, Executor executor) {
+        return new Translator(mappingContext, requireNonNull(executor));
+    }
+
+    /**
+     * Returns a translator with the same mappings and executor that reports to {@code metrics}.
+     *
+     * @param metrics the metrics to report to
+     * @return a translator reporting to {@code metrics}
+     */
+    public Translator withMetrics(TranslationMetrics metrics) {
+        return new Translator(mappingContext.withMetrics(metrics), executor);
     }
 
     /**
@@ -58,44 +96,101 @@ public class Translator {
      *                              CQL {@link Container}
      */
     public Container<DefaultExpression> toCql(StructuredQuery structuredQuery) {
-        var inclusionExpr = inclusionExpr(structuredQuery.inclusionCriteria());
-        var exclusionExpr = exclusionExpr(structuredQuery.exclusionCriteria());
+        var metrics = mappingContext.metrics();
+        var start = System.nanoTime();
+        // start all translations before waiting for the first one
+        var inclusionCriteria = translate(structuredQuery.inclusionCriteria());
+        var exclusionCriteria = translate(structuredQuery.exclusionCriteria());
+        Container<DefaultExpression> inclusionExpr;
+        Container<DefaultExpression> exclusionExpr;
+        try {
+            inclusionExpr = inclusionExpr(inclusionCriteria, timed(AND, metrics), timed(OR, metrics));
+            exclusionExpr = exclusionExpr(exclusionCriteria, timed(AND, metrics), timed(OR, metrics));
+        } catch (RuntimeException | Error e) {
+            // the query fails anyway, so don't occupy the executor with the remaining translations
+            cancel(inclusionCriteria);
+            cancel(exclusionCriteria);
+            throw e;
+        }
 
-        return exclusionExpr.isEmpty()
+        var result = exclusionExpr.isEmpty()
                 ? inclusionExpr.moveToPatientContext("InInitialPopulation")
                 : AND_NOT.apply(inclusionExpr.moveToPatientContext("Inclusion"),
                         exclusionExpr.moveToPatientContext("Exclusion"))
                 .moveToPatientContext("InInitialPopulation");
+        metrics.translated(structuredQuery, System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Returns {@code combiner} reporting the duration of each combination to {@code metrics}.
+     */
+    private static BinaryOperator<Container<DefaultExpression>> timed(
+            BinaryOperator<Container<DefaultExpression>> combiner, TranslationMetrics metrics) {
+        if (metrics == TranslationMetrics.NOOP) {
+            return combiner;
+        }
+        return (a, b) -> {
+            var start = System.nanoTime();
+            var result = combiner.apply(a, b);
+            metrics.combined(System.nanoTime() - start);
+            return result;
+        };
+    }
+
+    private List<List<CompletableFuture<Container<DefaultExpression>>>> translate(List<List<Criterion>> criteria) {
+        return criteria.stream().map(group -> group.stream().map(this::translate).toList()).toList();
+    }
+
+    private CompletableFuture<Container<DefaultExpression>> translate(Criterion criterion) {
+        return executor == null
+                ? CompletableFuture.completedFuture(criterion.toCql(mappingContext))
+                : CompletableFuture.supplyAsync(() -> criterion.toCql(mappingContext), executor);
+    }
+
+    private static void cancel(List<List<CompletableFuture<Container<DefaultExpression>>>> criteria) {
+        criteria.forEach(group -> group.forEach(future -> future.cancel(false)));
+    }
+
+    private static Container<DefaultExpression> join(CompletableFuture<Container<DefaultExpression>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
     }
 
     /**
      * Builds the inclusion expression as conjunctive normal form (CNF) of {@code criteria}.
      *
-     * @param criteria a list of lists of {@link Criterion} representing a CNF
+     * @param criteria a list of lists of translated {@link Criterion} representing a CNF
      * @return a {@link Container} of the boolean inclusion expression together with the used {@link
      * CodeSystemDefinition CodeSystemDefinitions}
      */
-    private Container<DefaultExpression> inclusionExpr(List<List<Criterion>> criteria) {
-        return criteria.stream().map(this::orExpr).reduce(Container.empty(), AND);
-    }
-
-    private Container<DefaultExpression> orExpr(List<Criterion> criteria) {
-        return criteria.stream().map(c -> c.toCql(mappingContext)).reduce(Container.empty(), Container.OR);
+    private static Container<DefaultExpression> inclusionExpr(
+            List<List<CompletableFuture<Container<DefaultExpression>>>> criteria,
+            BinaryOperator<Container<DefaultExpression>> and, BinaryOperator<Container<DefaultExpression>> or) {
+        return criteria.stream().map(group -> combine(group, or)).reduce(Container.empty(), and);
     }
 
     /**
      * Builds the exclusion expression as disjunctive normal form (DNF) of {@code criteria}.
      *
-     * @param criteria a list of lists of {@link Criterion} representing a DNF
+     * @param criteria a list of lists of translated {@link Criterion} representing a DNF
      * @return a {@link Container} of the boolean exclusion expression together with the used {@link
      * CodeSystemDefinition CodeSystemDefinitions}
      */
-    private Container<DefaultExpression> exclusionExpr(List<List<Criterion>> criteria) {
-        return criteria.stream().map(this::andExpr).reduce(Container.empty(), Container.OR);
+    private static Container<DefaultExpression> exclusionExpr(
+            List<List<CompletableFuture<Container<DefaultExpression>>>> criteria,
+            BinaryOperator<Container<DefaultExpression>> and, BinaryOperator<Container<DefaultExpression>> or) {
+        return criteria.stream().map(group -> combine(group, and)).reduce(Container.empty(), or);
     }
 
-    private Container<DefaultExpression> andExpr(List<Criterion> criteria) {
-        return criteria.stream().map(c -> c.toCql(mappingContext))
-                .reduce(Container.empty(), AND);
+    private static Container<DefaultExpression> combine(List<CompletableFuture<Container<DefaultExpression>>> criteria,
+                                                        BinaryOperator<Container<DefaultExpression>> combiner) {
+        return criteria.stream().map(Translator::join).reduce(Container.empty(), combiner);
     }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
+import de.medizininformatikinitiative.cctb.model.common.TermCodes;
 import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
 import de.medizininformatikinitiative.cctb.model.structured_query.Modifier;
 
@@ -81,7 +82,7 @@ public final class Mapping {
         if (termCodeMapping != null && termCodeMapping.types().size() > 1) {
             throw new IllegalArgumentException("Unsupported `termCode` mapping with multiple types.");
         }
-        var contextualTermCode = ContextualTermCode.of(context, key);
+        var contextualTermCode = ContextualTermCode.of(context, key).intern();
         return new Mapping(contextualTermCode,
                 requireNonNull(resourceType, "missing JSON property: resourceType"),
                 valueMapping,
@@ -89,7 +90,7 @@ public final class Mapping {
                 (attributeMappings == null ? Map.of() : attributeMappings.stream()
                         .collect(Collectors.toMap(AttributeMapping::key, Function.identity()))),
                 timeRestriction,
-                primaryCode,
+                primaryCode == null ? null : TermCodes.intern(primaryCode),
                 termCodeMapping);
     }
 
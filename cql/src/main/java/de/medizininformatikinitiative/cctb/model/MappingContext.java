@@ -1,14 +1,16 @@
 package de.medizininformatikinitiative.cctb.model;
 
+import de.medizininformatikinitiative.cctb.TranslationMetrics;
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
 import de.medizininformatikinitiative.cctb.model.cql.CodeSystemDefinition;
 import de.medizininformatikinitiative.cctb.model.structured_query.ContextualConcept;
 import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -16,6 +18,15 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * A context holding information to facilitate the mapping process.
+ * <p>
+ * Instances are immutable and can be shared by concurrent translations.
+ * <p>
+ * The keys of the mappings are {@link ContextualTermCode#intern() interned}, so they share their term codes with the
+ * expansions of the concept tree.
+ * <p>
+ * Concept expansions and missing mappings are reported to the {@link TranslationMetrics} of the context, which are
+ * the {@link TranslationMetrics#installed() installed} metrics unless {@link #withMetrics(TranslationMetrics) set}
+ * otherwise.
  *
  * @author Alexander Kiel
  */
@@ -24,13 +35,14 @@ public class MappingContext {
     private final Map<ContextualTermCode, Mapping> mappings;
     private final MappingTreeBase conceptTree;
     private final Map<String, CodeSystemDefinition> codeSystemDefinitions;
-    private final AtomicInteger aliasId = new AtomicInteger(1);
+    private final TranslationMetrics metrics;
 
     private MappingContext(Map<ContextualTermCode, Mapping> mappings, MappingTreeBase conceptTree,
-                           Map<String, CodeSystemDefinition> codeSystemDefinitions) {
+                           Map<String, CodeSystemDefinition> codeSystemDefinitions, TranslationMetrics metrics) {
         this.mappings = mappings;
         this.conceptTree = conceptTree;
         this.codeSystemDefinitions = codeSystemDefinitions;
+        this.metrics = metrics;
     }
 
     /**
@@ -39,7 +51,7 @@ public class MappingContext {
      * @return the mapping context
      */
     public static MappingContext of() {
-        return new MappingContext(Map.of(), null, Map.of());
+        return new MappingContext(Map.of(), null, Map.of(), TranslationMetrics.installed());
     }
 
     /**
@@ -52,9 +64,65 @@ public class MappingContext {
      */
     public static MappingContext of(Map<ContextualTermCode, Mapping> mappings, MappingTreeBase conceptTree,
                                     Map<String, String> codeSystemAliases) {
-        return new MappingContext(Map.copyOf(mappings), conceptTree, codeSystemAliases.entrySet().stream()
-                .collect(Collectors.toConcurrentMap(Map.Entry::getKey,
-                        e -> CodeSystemDefinition.of(e.getValue(), e.getKey()))));
+        return new MappingContext(internKeys(mappings), conceptTree, codeSystemDefinitions(codeSystemAliases),
+                TranslationMetrics.installed());
+    }
+
+    /**
+     * Returns a mapping context that looks up mappings in {@code mappings} as they are.
+     * <p>
+     * Only {@link Map#get(Object) get} and {@link Map#containsKey(Object) containsKey} are called on
+     * {@code mappings}, which have to be thread-safe.
+     *
+     * @param mappings          the mappings keyed by their term code
+     * @param conceptTree       a tree of concepts to expand (can be null)
+     * @param codeSystemAliases a map of code system URLs to their aliases
+     * @return the mapping context
+     */
+    static MappingContext withLookup(Map<ContextualTermCode, Mapping> mappings, MappingTreeBase conceptTree,
+                                     Map<String, String> codeSystemAliases) {
+        return new MappingContext(requireNonNull(mappings), conceptTree, codeSystemDefinitions(codeSystemAliases),
+                TranslationMetrics.installed());
+    }
+
+    private static Map<String, CodeSystemDefinition> codeSystemDefinitions(Map<String, String> codeSystemAliases) {
+        return codeSystemAliases.entrySet().stream()
+                .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey,
+                        e -> CodeSystemDefinition.of(e.getValue(), e.getKey())));
+    }
+
+    private static Map<ContextualTermCode, Mapping> internKeys(Map<ContextualTermCode, Mapping> mappings) {
+        var interned = new HashMap<ContextualTermCode, Mapping>(mappings.size() * 4 / 3 + 1);
+        mappings.forEach((key, mapping) -> interned.put(key.intern(), mapping));
+        return Map.copyOf(interned);
+    }
+
+    /**
+     * Returns a mapping context with the same mappings reporting to {@code metrics}.
+     *
+     * @param metrics the metrics to report concept expansions and missing mappings to
+     * @return the mapping context
+     */
+    public MappingContext withMetrics(TranslationMetrics metrics) {
+        return new MappingContext(mappings, conceptTree, codeSystemDefinitions, requireNonNull(metrics));
+    }
+
+    /**
+     * Returns the tree of concepts this context expands concepts with.
+     *
+     * @return the concept tree or {@link Optional#empty() nothing} if concepts aren't expanded
+     */
+    public Optional<MappingTreeBase> conceptTree() {
+        return Optional.ofNullable(conceptTree);
+    }
+
+    /**
+     * Returns the metrics this context reports to.
+     *
+     * @return the metrics
+     */
+    public TranslationMetrics metrics() {
+        return metrics;
     }
 
     /**
@@ -64,7 +132,11 @@ public class MappingContext {
      * @return either the Mapping or {@code Optional#empty() nothing}
      */
     public Optional<Mapping> findMapping(ContextualTermCode key) {
-        return Optional.ofNullable(mappings.get(requireNonNull(key)));
+        var mapping = mappings.get(requireNonNull(key));
+        if (mapping == null) {
+            metrics.mappingMissed(key);
+        }
+        return Optional.ofNullable(mapping);
     }
 
     /**
@@ -74,9 +146,22 @@ public class MappingContext {
      * @return the stream of TermCodes
      */
     public Stream<ContextualTermCode> expandConcept(ContextualConcept concept) {
+        var start = System.nanoTime();
         List<ContextualTermCode> expandedCodes = conceptTree == null ? List.of() : expandCodes(concept);
         List<ContextualTermCode> concepts = expandedCodes.isEmpty() ? concept.contextualTermCodes() : expandedCodes;
-        return concepts.stream().filter(mappings::containsKey);
+        if (metrics == TranslationMetrics.NOOP) {
+            return concepts.stream().filter(mappings::containsKey);
+        }
+        var mapped = new ArrayList<ContextualTermCode>(concepts.size());
+        for (var code : concepts) {
+            if (mappings.containsKey(code)) {
+                mapped.add(code);
+            } else {
+                metrics.mappingMissed(code);
+            }
+        }
+        metrics.expanded(concept, mapped.size(), System.nanoTime() - start);
+        return mapped.stream();
     }
 
     private List<ContextualTermCode> expandCodes(ContextualConcept concept) {
@@ -84,13 +169,16 @@ public class MappingContext {
     }
 
     /**
-     * Gets the {@link CodeSystemDefinition} with the given {@code system} URL. If none is present a new one will be
-     * created, stored, and returned.
+     * Gets the {@link CodeSystemDefinition} with the given {@code system} URL. If no alias is configured for
+     * {@code system}, a definition without alias is returned, whose name is generated when the library is printed.
+     * <p>
+     * The mapping context isn't changed, so generated names don't depend on earlier translations.
      *
      * @param system the URL of the code system
      * @return the CodeSystemDefinition
      */
     public CodeSystemDefinition getCodeSystemDefinition(String system) {
-        return codeSystemDefinitions.computeIfAbsent(system, (k) -> CodeSystemDefinition.of("codeSystem%d".formatted(aliasId.getAndIncrement()), k));
+        var definition = codeSystemDefinitions.get(system);
+        return definition == null ? CodeSystemDefinition.of(system) : definition;
     }
 }
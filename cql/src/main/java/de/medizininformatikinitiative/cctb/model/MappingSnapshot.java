@@ -0,0 +1,755 @@
+package de.medizininformatikinitiative.cctb.model;
+
+import de.medizininformatikinitiative.cctb.model.common.TermCode;
+import de.medizininformatikinitiative.cctb.model.common.TermCodes;
+import de.medizininformatikinitiative.cctb.model.structured_query.CodeEquivalentModifier;
+import de.medizininformatikinitiative.cctb.model.structured_query.CodeModifier;
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
+import de.medizininformatikinitiative.cctb.model.structured_query.Modifier;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A compact binary snapshot of a mapping bundle, consisting of the mappings, the concept tree and the code system
+ * aliases.
+ * <p>
+ * A snapshot starts with a table of all distinct strings, followed by a table of all distinct term codes referencing
+ * strings by index. The code system aliases, mappings and concept tree follow as packed records referencing strings
+ * and term codes by index. The snapshot ends with an index of the offsets of the mappings, sorted by the hash of their
+ * keys. Strings and term codes are decoded directly from their tables, so no intermediate JSON trees are built, and
+ * {@link TermCodes interned}, so equal strings and term codes are shared.
+ * <p>
+ * A snapshot can either be {@link #read(Path) read} completely or {@link #open(Path, int) opened}, in which case the
+ * mappings are decoded on demand.
+ * <p>
+ * Only the {@link CodeModifier} and {@link CodeEquivalentModifier} fixed criteria, which are the ones that can be
+ * read from JSON, are supported.
+ */
+public final class MappingSnapshot {
+
+    /**
+     * The number of mappings an {@link #open(Path, int) opened} snapshot keeps decoded by default.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private static final int MAGIC = 0x43435442; // CCTB
+    private static final int VERSION = 2;
+    private static final int NULL = -1;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final byte CODE_MODIFIER = 0;
+    private static final byte CODE_EQUIVALENT_MODIFIER = 1;
+
+    private MappingSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the given mapping bundle into {@code file}.
+     *
+     * @param file              the file to write to, an existing file is replaced
+     * @param mappings          the mappings
+     * @param conceptTree       the concept tree (can be null)
+     * @param codeSystemAliases a map of code system URLs to their aliases
+     * @throws IOException              if the file can't be written
+     * @throws IllegalArgumentException if a mapping contains a fixed criterion that isn't supported
+     */
+    public static void write(Path file, Collection<Mapping> mappings, MappingTreeBase conceptTree,
+                             Map<String, String> codeSystemAliases) throws IOException {
+        var writer = new Writer();
+        writer.writeCodeSystemAliases(codeSystemAliases);
+        writer.writeMappings(mappings);
+        var treeOffset = writer.out.size();
+        writer.writeConceptTree(conceptTree);
+        var indexOffset = writer.out.size();
+        writer.writeIndex();
+
+        try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writer.writeTables(out);
+            out.writeInt(treeOffset);
+            out.writeInt(indexOffset);
+            writer.body.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads the snapshot in {@code file} into a {@link MappingContext}.
+     *
+     * @param file the snapshot file
+     * @return the mapping context
+     * @throws IOException if the file can't be read or isn't a snapshot of a supported version
+     */
+    public static MappingContext read(Path file) throws IOException {
+        var buffer = map(file);
+        try {
+            var snapshot = new Snapshot(buffer, true);
+            var reader = snapshot.reader(snapshot.bodyStart);
+            var codeSystemAliases = reader.readCodeSystemAliases();
+            var mappings = reader.readMappings();
+            var conceptTree = reader.readConceptTree();
+            return MappingContext.of(mappings, conceptTree, codeSystemAliases);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw corrupt(file, e);
+        }
+    }
+
+    /**
+     * Opens the snapshot in {@code file} as {@link MappingContext} that decodes mappings on demand.
+     * <p>
+     * Only the code system aliases and the concept tree are read upfront. A mapping is decoded on its first lookup
+     * using the index of the snapshot and kept in a cache of the most recently used {@code cacheSize} mappings, so
+     * startup time and memory are proportional to the mappings actually used rather than to the size of the
+     * snapshot. Strings and term codes are decoded per mapping and shared through {@link TermCodes} only as long as
+     * mappings using them are reachable, so they don't accumulate beyond the cache. The file stays memory-mapped as long
+     * as the mapping context is in use.
+     *
+     * @param file      the snapshot file
+     * @param cacheSize the maximum number of decoded mappings to keep
+     * @return the mapping context
+     * @throws IOException if the file can't be read or isn't a snapshot of a supported version
+     */
+    public static MappingContext open(Path file, int cacheSize) throws IOException {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size %d, expected at least 1.".formatted(cacheSize));
+        }
+        var buffer = map(file);
+        try {
+            var snapshot = new Snapshot(buffer, false);
+            var codeSystemAliases = snapshot.reader(snapshot.bodyStart).readCodeSystemAliases();
+            var conceptTree = snapshot.reader(snapshot.treeStart).readConceptTree();
+            return MappingContext.withLookup(new IndexedMappings(snapshot, file, cacheSize), conceptTree,
+                    codeSystemAliases);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw corrupt(file, e);
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static IOException corrupt(Path file, RuntimeException e) {
+        return new IOException("Truncated or corrupt mapping snapshot `%s`.".formatted(file), e);
+    }
+
+    /*
+     * The hash of the index is specified here instead of relying on TermCode#hashCode, so snapshots stay valid if the
+     * hash code of term codes changes.
+     */
+    private static int keyHash(TermCode context, TermCode termCode) {
+        var hash = context.system().hashCode();
+        hash = 31 * hash + context.code().hashCode();
+        hash = 31 * hash + termCode.system().hashCode();
+        return 31 * hash + termCode.code().hashCode();
+    }
+
+    private static final class Writer {
+
+        private final Map<String, Integer> strings = new LinkedHashMap<>();
+        private final Map<TermCode, Integer> termCodes = new LinkedHashMap<>();
+        private final List<TermCode> termCodeList = new ArrayList<>();
+        private final Map<ContextualTermCode, Integer> mappingOffsets = new LinkedHashMap<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(body);
+
+        private int string(String s) {
+            return s == null ? NULL : strings.computeIfAbsent(s, k -> strings.size());
+        }
+
+        /*
+         * TermCode equality ignores the display, so the display is part of the key here.
+         */
+        private int termCode(TermCode termCode) {
+            if (termCode == null) {
+                return NULL;
+            }
+            var key = new TermCode(termCode.system(), termCode.code() + '\0' + termCode.display(), "");
+            return termCodes.computeIfAbsent(key, k -> {
+                string(termCode.system());
+                string(termCode.code());
+                string(termCode.display());
+                termCodeList.add(termCode);
+                return termCodeList.size() - 1;
+            });
+        }
+
+        private void writeString(String s) throws IOException {
+            out.writeInt(string(s));
+        }
+
+        private void writeTermCode(TermCode termCode) throws IOException {
+            out.writeInt(termCode(termCode));
+        }
+
+        private void writeCodeSystemAliases(Map<String, String> codeSystemAliases) throws IOException {
+            out.writeInt(codeSystemAliases.size());
+            for (var entry : codeSystemAliases.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+
+        private void writeMappings(Collection<Mapping> mappings) throws IOException {
+            out.writeInt(mappings.size());
+            for (var mapping : mappings) {
+                // like reading all mappings, the index keeps the first mapping of a key
+                mappingOffsets.putIfAbsent(mapping.key(), out.size());
+                writeTermCode(mapping.key().context());
+                writeTermCode(mapping.key().termCode());
+                writeString(mapping.resourceType());
+                writePathMapping(mapping.valueMapping().orElse(null));
+                out.writeInt(mapping.fixedCriteria().size());
+                for (var modifier : mapping.fixedCriteria()) {
+                    writeModifier(modifier);
+                }
+                out.writeInt(mapping.attributeMappings().size());
+                for (var attributeMapping : mapping.attributeMappings().values()) {
+                    writeAttributeMapping(attributeMapping);
+                }
+                writeTimeRestrictionMapping(mapping.timeRestrictionMapping().orElse(null));
+                // primaryCode() returns the key's term code if the mapping doesn't define one
+                var primaryCode = mapping.primaryCode();
+                writeTermCode(primaryCode == mapping.key().termCode() ? null : primaryCode);
+                writePathMapping(mapping.termCodeMapping().orElse(null));
+            }
+        }
+
+        private void writePathMapping(Mapping.PathMapping pathMapping) throws IOException {
+            if (pathMapping == null) {
+                out.writeBoolean(false);
+                return;
+            }
+            out.writeBoolean(true);
+            writeString(pathMapping.path());
+            out.writeByte(pathMapping.types().size());
+            for (var type : pathMapping.types()) {
+                out.writeByte(type.ordinal());
+            }
+            out.writeByte(pathMapping.cardinality().ordinal());
+        }
+
+        private void writeTimeRestrictionMapping(Mapping.TimeRestrictionMapping mapping) throws IOException {
+            if (mapping == null) {
+                out.writeBoolean(false);
+                return;
+            }
+            out.writeBoolean(true);
+            writeString(mapping.path());
+            out.writeByte(mapping.types().size());
+            for (var type : mapping.types()) {
+                out.writeByte(type.ordinal());
+            }
+            out.writeByte(mapping.cardinality().ordinal());
+        }
+
+        private void writeModifier(Modifier modifier) throws IOException {
+            if (modifier instanceof CodeModifier codeModifier) {
+                out.writeByte(CODE_MODIFIER);
+                writeString(codeModifier.path());
+                out.writeInt(codeModifier.codes().size());
+                for (var code : codeModifier.codes()) {
+                    writeString(code);
+                }
+            } else if (modifier instanceof CodeEquivalentModifier codeEquivalentModifier) {
+                out.writeByte(CODE_EQUIVALENT_MODIFIER);
+                writeString(codeEquivalentModifier.path());
+                out.writeByte(codeEquivalentModifier.cardinality().ordinal());
+                out.writeInt(codeEquivalentModifier.concepts().size());
+                for (var concept : codeEquivalentModifier.concepts()) {
+                    writeTermCode(concept);
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported fixed criterion `%s` in mapping snapshot."
+                        .formatted(modifier.getClass().getSimpleName()));
+            }
+        }
+
+        private void writeAttributeMapping(AttributeMapping attributeMapping) throws IOException {
+            out.writeByte(attributeMapping.types().size());
+            for (var type : attributeMapping.types()) {
+                writeString(type);
+            }
+            writeTermCode(attributeMapping.key());
+            writeString(attributeMapping.path());
+            writeString(attributeMapping.referenceTargetType());
+            out.writeByte(attributeMapping.cardinality().ordinal());
+        }
+
+        private void writeConceptTree(MappingTreeBase conceptTree) throws IOException {
+            if (conceptTree == null) {
+                out.writeInt(0);
+                return;
+            }
+            out.writeInt(conceptTree.moduleRoots().size());
+            for (var moduleRoot : conceptTree.moduleRoots()) {
+                writeTermCode(moduleRoot.context());
+                writeString(moduleRoot.system());
+                out.writeInt(moduleRoot.entries().size());
+                for (var entry : moduleRoot.entries().values()) {
+                    writeString(entry.key());
+                    out.writeInt(entry.children().size());
+                    for (var child : entry.children()) {
+                        writeString(child);
+                    }
+                }
+            }
+        }
+
+        /*
+         * Entries consist of the key hash, the key's context and term code and the offset of the mapping.
+         */
+        private void writeIndex() throws IOException {
+            var entries = new ArrayList<>(mappingOffsets.entrySet());
+            entries.sort(Comparator.comparingInt(e -> keyHash(e.getKey().context(), e.getKey().termCode())));
+            out.writeInt(entries.size());
+            for (var entry : entries) {
+                var key = entry.getKey();
+                out.writeInt(keyHash(key.context(), key.termCode()));
+                writeTermCode(key.context());
+                writeTermCode(key.termCode());
+                out.writeInt(entry.getValue());
+            }
+        }
+
+        /*
+         * Has to be called after all records are written, because they add to the tables.
+         */
+        private void writeTables(DataOutputStream out) throws IOException {
+            var encoded = new ArrayList<byte[]>(strings.size());
+            var blobLength = 0;
+            for (var s : strings.keySet()) {
+                var bytes = s.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                blobLength += bytes.length;
+            }
+            out.writeInt(encoded.size());
+            out.writeInt(blobLength);
+            var offset = 0;
+            for (var bytes : encoded) {
+                out.writeInt(offset);
+                offset += bytes.length;
+            }
+            for (var bytes : encoded) {
+                out.write(bytes);
+            }
+
+            out.writeInt(termCodeList.size());
+            for (var termCode : termCodeList) {
+                out.writeInt(string(termCode.system()));
+                out.writeInt(string(termCode.code()));
+                out.writeInt(string(termCode.display()));
+            }
+        }
+    }
+
+    /**
+     * The tables and section positions of a snapshot.
+     * <p>
+     * Strings and term codes are decoded on use. A snapshot that is {@link #read(Path) read} completely caches the
+     * decoded values, so each is decoded only once. An {@link #open(Path, int) opened} snapshot lives as long as its
+     * mapping context and doesn't cache them, because the caches would grow with every mapping ever decoded. Decoding
+     * is idempotent and the decoded values are immutable, so concurrent readers may race on the caches without harm.
+     */
+    private static final class Snapshot {
+
+        private final ByteBuffer data;
+        private final int stringCount;
+        private final int stringOffsetsStart;
+        private final int blobStart;
+        private final int blobLength;
+        private final int termCodeCount;
+        private final int termCodesStart;
+        private final int bodyStart;
+        private final int treeStart;
+        private final int indexStart;
+        private final int indexCount;
+        private final String[] strings;
+        private final TermCode[] termCodes;
+
+        /**
+         * @param cached whether decoded strings and term codes are cached
+         */
+        private Snapshot(ByteBuffer data, boolean cached) throws IOException {
+            this.data = data;
+            var in = data.duplicate();
+            if (in.remaining() < 8 || in.getInt() != MAGIC) {
+                throw new IOException("Not a mapping snapshot.");
+            }
+            var version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported mapping snapshot version %d, expected %d.".formatted(version,
+                        VERSION));
+            }
+            stringCount = count(in.getInt());
+            blobLength = count(in.getInt());
+            stringOffsetsStart = in.position();
+            blobStart = position(stringOffsetsStart + 4L * stringCount);
+            in.position(position((long) blobStart + blobLength));
+            termCodeCount = count(in.getInt());
+            termCodesStart = in.position();
+            in.position(position(termCodesStart + 12L * termCodeCount));
+            var treeOffset = count(in.getInt());
+            var indexOffset = count(in.getInt());
+            bodyStart = in.position();
+            treeStart = position((long) bodyStart + treeOffset);
+            indexStart = position((long) bodyStart + indexOffset + 4);
+            indexCount = data.getInt(indexStart - 4);
+            if (indexCount < 0 || (long) indexStart + (long) indexCount * INDEX_ENTRY_SIZE != data.limit()) {
+                throw new IndexOutOfBoundsException("index doesn't end with the snapshot");
+            }
+            strings = cached ? new String[stringCount] : null;
+            termCodes = cached ? new TermCode[termCodeCount] : null;
+        }
+
+        /**
+         * Returns {@code count} if it isn't negative, so a corrupt count can't be used as size or offset.
+         */
+        private static int count(int count) {
+            if (count < 0) {
+                throw new IndexOutOfBoundsException("negative count %d".formatted(count));
+            }
+            return count;
+        }
+
+        /**
+         * Returns {@code position} if it lies within the snapshot, so a corrupt header fails as corrupt snapshot.
+         */
+        private int position(long position) {
+            if (position > data.limit()) {
+                throw new IndexOutOfBoundsException("position %d outside of the snapshot".formatted(position));
+            }
+            return (int) position;
+        }
+
+        private Reader reader(int position) {
+            return new Reader(data.duplicate().position(position), this);
+        }
+
+        private String string(int index) {
+            if (index == NULL) {
+                return null;
+            }
+            Objects.checkIndex(index, stringCount);
+            var s = strings == null ? null : strings[index];
+            if (s == null) {
+                var start = data.getInt(stringOffsetsStart + 4 * index);
+                var end = index + 1 < stringCount ? data.getInt(stringOffsetsStart + 4 * (index + 1)) : blobLength;
+                var bytes = new byte[end - start];
+                data.get(blobStart + start, bytes);
+                s = TermCodes.intern(new String(bytes, StandardCharsets.UTF_8));
+                if (strings != null) {
+                    strings[index] = s;
+                }
+            }
+            return s;
+        }
+
+        private TermCode termCode(int index) {
+            if (index == NULL) {
+                return null;
+            }
+            Objects.checkIndex(index, termCodeCount);
+            var termCode = termCodes == null ? null : termCodes[index];
+            if (termCode == null) {
+                var position = termCodesStart + 12 * index;
+                termCode = TermCodes.intern(TermCode.of(string(data.getInt(position)),
+                        string(data.getInt(position + 4)), string(data.getInt(position + 8))));
+                if (termCodes != null) {
+                    termCodes[index] = termCode;
+                }
+            }
+            return termCode;
+        }
+
+        /*
+         * Returns the absolute position of the mapping with the given key or -1 if there is none.
+         */
+        private int find(ContextualTermCode key) {
+            var hash = keyHash(key.context(), key.termCode());
+            int low = 0;
+            int high = indexCount - 1;
+            while (low < high) {
+                var mid = (low + high) >>> 1;
+                if (indexHash(mid) < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            for (int i = low; i < indexCount && indexHash(i) == hash; i++) {
+                var entry = indexStart + i * INDEX_ENTRY_SIZE;
+                if (key.context().equals(termCode(data.getInt(entry + 4))) &&
+                        key.termCode().equals(termCode(data.getInt(entry + 8)))) {
+                    return bodyStart + data.getInt(entry + 12);
+                }
+            }
+            return -1;
+        }
+
+        private int indexHash(int i) {
+            return data.getInt(indexStart + i * INDEX_ENTRY_SIZE);
+        }
+
+        private Mapping mapping(int i) {
+            return reader(bodyStart + data.getInt(indexStart + i * INDEX_ENTRY_SIZE + 12)).readMapping();
+        }
+    }
+
+    /**
+     * The mappings of an {@link #open(Path, int) opened} snapshot, decoded on demand and cached.
+     * <p>
+     * Lookups of keys without mapping only search the index and are never cached.
+     */
+    private static final class IndexedMappings extends AbstractMap<ContextualTermCode, Mapping> {
+
+        private final Snapshot snapshot;
+        private final Path file;
+        private final Map<ContextualTermCode, Mapping> cache;
+
+        private IndexedMappings(Snapshot snapshot, Path file, int cacheSize) {
+            this.snapshot = snapshot;
+            this.file = file;
+            this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ContextualTermCode, Mapping> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+        }
+
+        @Override
+        public Mapping get(Object key) {
+            if (!(key instanceof ContextualTermCode termCode)) {
+                return null;
+            }
+            var mapping = cache.get(termCode);
+            if (mapping == null) {
+                var position = find(termCode);
+                if (position < 0) {
+                    return null;
+                }
+                mapping = decode(() -> snapshot.reader(position).readMapping());
+                cache.put(mapping.key(), mapping);
+            }
+            return mapping;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof ContextualTermCode termCode && (cache.containsKey(termCode) || find(termCode) >= 0);
+        }
+
+        @Override
+        public int size() {
+            return snapshot.indexCount;
+        }
+
+        /*
+         * Iterates over all mappings without caching them.
+         */
+        @Override
+        public Set<Entry<ContextualTermCode, Mapping>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<ContextualTermCode, Mapping>> iterator() {
+                    return new Iterator<>() {
+                        private int i;
+
+                        @Override
+                        public boolean hasNext() {
+                            return i < snapshot.indexCount;
+                        }
+
+                        @Override
+                        public Entry<ContextualTermCode, Mapping> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            var mapping = decode(() -> snapshot.mapping(i++));
+                            return Map.entry(mapping.key(), mapping);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return snapshot.indexCount;
+                }
+            };
+        }
+
+        private int find(ContextualTermCode key) {
+            return decode(() -> snapshot.find(key));
+        }
+
+        private <T> T decode(Supplier<T> decoder) {
+            try {
+                return decoder.get();
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IllegalStateException("Truncated or corrupt mapping snapshot `%s`.".formatted(file), e);
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private static final Mapping.PathMapping.Type[] PATH_TYPES = Mapping.PathMapping.Type.values();
+        private static final Mapping.TimeRestrictionMapping.Type[] TIME_TYPES =
+                Mapping.TimeRestrictionMapping.Type.values();
+        private static final Mapping.Cardinality[] CARDINALITIES = Mapping.Cardinality.values();
+
+        private final ByteBuffer in;
+        private final Snapshot snapshot;
+
+        private Reader(ByteBuffer in, Snapshot snapshot) {
+            this.in = in;
+            this.snapshot = snapshot;
+        }
+
+        private String readString() {
+            return snapshot.string(in.getInt());
+        }
+
+        private TermCode readTermCode() {
+            return snapshot.termCode(in.getInt());
+        }
+
+        private Map<String, String> readCodeSystemAliases() {
+            var count = in.getInt();
+            var aliases = new HashMap<String, String>(count * 2);
+            for (int i = 0; i < count; i++) {
+                aliases.put(readString(), readString());
+            }
+            return aliases;
+        }
+
+        private Map<ContextualTermCode, Mapping> readMappings() {
+            var count = in.getInt();
+            var mappings = new HashMap<ContextualTermCode, Mapping>(count * 2);
+            for (int i = 0; i < count; i++) {
+                var mapping = readMapping();
+                mappings.putIfAbsent(mapping.key(), mapping);
+            }
+            return mappings;
+        }
+
+        private Mapping readMapping() {
+            var key = ContextualTermCode.of(readTermCode(), readTermCode());
+            var resourceType = readString();
+            var valueMapping = readPathMapping();
+            var fixedCriteria = new ArrayList<Modifier>();
+            for (int n = in.getInt(); n > 0; n--) {
+                fixedCriteria.add(readModifier());
+            }
+            var attributeMappings = new HashMap<TermCode, AttributeMapping>();
+            for (int n = in.getInt(); n > 0; n--) {
+                var attributeMapping = readAttributeMapping();
+                attributeMappings.put(attributeMapping.key(), attributeMapping);
+            }
+            var timeRestrictionMapping = readTimeRestrictionMapping();
+            var primaryCode = readTermCode();
+            var termCodeMapping = readPathMapping();
+            return new Mapping(key, resourceType, valueMapping, List.copyOf(fixedCriteria),
+                    Map.copyOf(attributeMappings), timeRestrictionMapping, primaryCode, termCodeMapping);
+        }
+
+        private Mapping.PathMapping readPathMapping() {
+            if (in.get() == 0) {
+                return null;
+            }
+            var path = readString();
+            var types = new ArrayList<Mapping.PathMapping.Type>();
+            for (int n = in.get(); n > 0; n--) {
+                types.add(PATH_TYPES[in.get()]);
+            }
+            return new Mapping.PathMapping(path, types, CARDINALITIES[in.get()]);
+        }
+
+        private Mapping.TimeRestrictionMapping readTimeRestrictionMapping() {
+            if (in.get() == 0) {
+                return null;
+            }
+            var path = readString();
+            var types = new ArrayList<Mapping.TimeRestrictionMapping.Type>();
+            for (int n = in.get(); n > 0; n--) {
+                types.add(TIME_TYPES[in.get()]);
+            }
+            return new Mapping.TimeRestrictionMapping(path, types, CARDINALITIES[in.get()]);
+        }
+
+        private Modifier readModifier() {
+            var tag = in.get();
+            var path = readString();
+            if (tag == CODE_MODIFIER) {
+                var codes = new ArrayList<String>();
+                for (int n = in.getInt(); n > 0; n--) {
+                    codes.add(readString());
+                }
+                return new CodeModifier(path, codes);
+            }
+            var cardinality = CARDINALITIES[in.get()];
+            var concepts = new ArrayList<TermCode>();
+            for (int n = in.getInt(); n > 0; n--) {
+                concepts.add(readTermCode());
+            }
+            return new CodeEquivalentModifier(path, cardinality, concepts);
+        }
+
+        private AttributeMapping readAttributeMapping() {
+            var types = new ArrayList<String>();
+            for (int n = in.get(); n > 0; n--) {
+                types.add(readString());
+            }
+            return new AttributeMapping(types, readTermCode(), readString(), readString(), CARDINALITIES[in.get()]);
+        }
+
+        private MappingTreeBase readConceptTree() {
+            var count = in.getInt();
+            var moduleRoots = new ArrayList<MappingTreeModuleRoot>(count);
+            for (int i = 0; i < count; i++) {
+                var context = readTermCode();
+                var system = readString();
+                var entryCount = in.getInt();
+                var entries = new HashMap<String, MappingTreeModuleEntry>(entryCount * 2);
+                for (int j = 0; j < entryCount; j++) {
+                    var key = readString();
+                    var children = new String[in.getInt()];
+                    for (int k = 0; k < children.length; k++) {
+                        children[k] = readString();
+                    }
+                    entries.put(key, new MappingTreeModuleEntry(key, List.of(children)));
+                }
+                moduleRoots.add(new MappingTreeModuleRoot(context, system, entries));
+            }
+            return new MappingTreeBase(moduleRoots);
+        }
+    }
+}
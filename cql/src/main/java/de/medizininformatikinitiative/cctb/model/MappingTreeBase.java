@@ -1,17 +1,107 @@
 package de.medizininformatikinitiative.cctb.model;
 
 
+import de.medizininformatikinitiative.cctb.model.common.TermCode;
 import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
-public record MappingTreeBase(List<MappingTreeModuleRoot> moduleRoots) {
+/**
+ * The concept trees of all modules.
+ * <p>
+ * All entries are indexed by their context, system and code on construction. The flattened descendants of an entry
+ * are computed on its first expansion and memoized, so expanding a popular parent again is a single hash lookup.
+ */
+public final class MappingTreeBase {
 
+    private final List<MappingTreeModuleRoot> moduleRoots;
+    private final Map<Key, Node[]> index;
+
+    public MappingTreeBase(List<MappingTreeModuleRoot> moduleRoots) {
+        this.moduleRoots = List.copyOf(moduleRoots);
+        this.index = index(this.moduleRoots);
+    }
+
+    private record Key(TermCode context, String system, String code) {
+    }
+
+    /**
+     * An entry of one module root with its lazily computed descendants, including the entry itself.
+     */
+    private static final class Node {
+
+        private final MappingTreeModuleRoot moduleRoot;
+        private final String code;
+        private volatile ContextualTermCode[] descendants;
+
+        private Node(MappingTreeModuleRoot moduleRoot, String code) {
+            this.moduleRoot = moduleRoot;
+            this.code = code;
+        }
+
+        private ContextualTermCode[] descendants() {
+            var descendants = this.descendants;
+            if (descendants == null) {
+                descendants = moduleRoot.flatten(code);
+                this.descendants = descendants;
+            }
+            return descendants;
+        }
+    }
+
+    private static Map<Key, Node[]> index(List<MappingTreeModuleRoot> moduleRoots) {
+        var index = new HashMap<Key, Node[]>();
+        for (var moduleRoot : moduleRoots) {
+            for (var code : moduleRoot.entries().keySet()) {
+                var node = new Node(moduleRoot, code);
+                index.merge(new Key(moduleRoot.context(), moduleRoot.system(), code), new Node[]{node},
+                        (a, b) -> {
+                            var nodes = Arrays.copyOf(a, a.length + 1);
+                            nodes[a.length] = node;
+                            return nodes;
+                        });
+            }
+        }
+        return Map.copyOf(index);
+    }
+
+    public List<MappingTreeModuleRoot> moduleRoots() {
+        return moduleRoots;
+    }
+
+    /**
+     * Expands {@code termCode} into itself and all its descendants in the concept trees of the modules matching its
+     * context and system.
+     *
+     * @param termCode the term code to expand
+     * @return a stream of the term code and all its descendants or an empty stream if no module knows the term code
+     */
     public Stream<ContextualTermCode> expand(ContextualTermCode termCode) {
-        var key = termCode.termCode().code();
+        var nodes = index.get(new Key(termCode.context(), termCode.termCode().system(), termCode.termCode().code()));
+        if (nodes == null) {
+            return Stream.empty();
+        }
+        return nodes.length == 1
+                ? Arrays.stream(nodes[0].descendants())
+                : Arrays.stream(nodes).flatMap(node -> Arrays.stream(node.descendants()));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof MappingTreeBase that && moduleRoots.equals(that.moduleRoots);
+    }
+
+    @Override
+    public int hashCode() {
+        return moduleRoots.hashCode();
+    }
 
-        return moduleRoots.stream().flatMap(moduleRoot ->
-                moduleRoot.isModuleMatching(termCode) ? moduleRoot.expand(key) : Stream.empty());
+    @Override
+    public String toString() {
+        return "MappingTreeBase[moduleRoots=%s]".formatted(moduleRoots);
     }
 }
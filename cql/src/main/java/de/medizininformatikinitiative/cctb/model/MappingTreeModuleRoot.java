@@ -5,8 +5,12 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
+import de.medizininformatikinitiative.cctb.model.common.TermCodes;
 import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -16,6 +20,12 @@ import static java.util.function.Function.identity;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record MappingTreeModuleRoot(TermCode context, String system, Map<String, MappingTreeModuleEntry> entries) {
+
+    public MappingTreeModuleRoot {
+        context = TermCodes.intern(context);
+        system = TermCodes.intern(system);
+    }
+
     @JsonCreator
     static MappingTreeModuleRoot fromJson(@JsonProperty("context") TermCode context,
                                           @JsonProperty("system") String system,
@@ -27,14 +37,37 @@ public record MappingTreeModuleRoot(TermCode context, String system, Map<String,
     }
 
     public Stream<ContextualTermCode> expand(String key) {
-        var newTermCode = new ContextualTermCode(context, new TermCode(system, key, ""));
-
-        return Stream.concat(Stream.of(newTermCode), entries.get(key).children().stream().flatMap(this::expand));
+        return Arrays.stream(flatten(key));
     }
 
-    boolean isModuleMatching(ContextualTermCode contextualTermCode) {
-        return context.equals(contextualTermCode.context()) &&
-                system.equals(contextualTermCode.termCode().system()) &&
-                entries.containsKey(contextualTermCode.termCode().code());
+    /**
+     * Returns {@code key} and all its descendants in depth-first pre-order. Codes reachable over more than one path
+     * are returned only once.
+     * <p>
+     * The returned term codes share their context, system and code with the {@link TermCodes#intern(TermCode)
+     * interned} keys of the mappings.
+     * <p>
+     * The tree is walked with an explicit stack, so deep trees don't overflow the call stack.
+     *
+     * @param key the code of the entry to flatten
+     * @return an array of {@code key} and all its descendants
+     * @throws NullPointerException if {@code key} or one of its descendants has no entry
+     */
+    ContextualTermCode[] flatten(String key) {
+        var seen = new LinkedHashSet<String>();
+        var stack = new ArrayDeque<String>();
+        stack.push(key);
+        while (!stack.isEmpty()) {
+            var code = stack.pop();
+            if (seen.add(code)) {
+                var children = entries.get(code).children();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+        return seen.stream()
+                .map(code -> new ContextualTermCode(context, new TermCode(system, TermCodes.intern(code), "")))
+                .toArray(ContextualTermCode[]::new);
     }
 }
@@ -5,15 +5,14 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import tools.jackson.databind.JsonNode;
 
-import java.util.Objects;
-
 import static java.util.Objects.requireNonNull;
 
 /**
  * A terminology code, coding a concept.
  * <p>
  * Instances are immutable and implement {@code equals} and {@code hashCode} based on {@link #system() system} and
- * {@link #code() code}.
+ * {@link #code() code}. The hash code is derived from the cached hash codes of the strings, so it's
+ * computed without allocation. Term codes of mappings are {@link TermCodes#intern(TermCode) interned}.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public record TermCode(String system, String code, String display) {
@@ -52,6 +51,6 @@ public record TermCode(String system, String code, String display) {
 
     @Override
     public int hashCode() {
-        return Objects.hash(system, code);
+        return 31 * system.hashCode() + code.hashCode();
     }
 }
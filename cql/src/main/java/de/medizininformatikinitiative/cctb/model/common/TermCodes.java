@@ -0,0 +1,56 @@
+package de.medizininformatikinitiative.cctb.model.common;
+
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The table of canonical {@link TermCode TermCodes} and their strings.
+ * <p>
+ * Mappings and concept trees intern their term codes when they are loaded, so equal term codes of both share one
+ * instance and all systems and codes share one string. Comparing such term codes during concept expansion and mapping
+ * lookup stops at the identity checks of {@link String#equals(Object)}, and the resident mappings hold every system
+ * URL only once.
+ * <p>
+ * The canonical instances are only weakly referenced, so they are dropped together with the mappings and concept trees
+ * using them, like the ones of an ontology release replaced by a reload. Term codes of Structured Queries aren't
+ * interned, so the table doesn't churn with the queries translated.
+ * <p>
+ * The table is thread-safe.
+ */
+public final class TermCodes {
+
+    private static final WeakInterner<String> strings = new WeakInterner<>(String::hashCode, String::equals);
+
+    /**
+     * Term codes are only equivalent if their displays are equal too, so interning doesn't change the display of a
+     * term code.
+     */
+    private static final WeakInterner<TermCode> termCodes = new WeakInterner<>(
+            termCode -> 31 * termCode.hashCode() + termCode.display().hashCode(),
+            (a, b) -> a.equals(b) && a.display().equals(b.display()));
+
+    private TermCodes() {
+    }
+
+    /**
+     * Returns the canonical instance of {@code s}.
+     *
+     * @param s the string to intern
+     * @return the canonical instance, which is equal to {@code s}
+     */
+    public static String intern(String s) {
+        return strings.intern(requireNonNull(s), UnaryOperator.identity());
+    }
+
+    /**
+     * Returns the canonical instance of {@code termCode}. The system, code and display of the canonical instance are
+     * {@link #intern(String) interned} strings.
+     *
+     * @param termCode the term code to intern
+     * @return the canonical instance, which has the same system, code and display as {@code termCode}
+     */
+    public static TermCode intern(TermCode termCode) {
+        return termCodes.intern(termCode, t -> new TermCode(intern(t.system()), intern(t.code()), intern(t.display())));
+    }
+}
@@ -0,0 +1,113 @@
+package de.medizininformatikinitiative.cctb.model.common;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A thread-safe table of canonical instances that are only weakly referenced.
+ * <p>
+ * A canonical instance stays in the table as long as it's reachable from elsewhere, so values of mappings that are no
+ * longer used, like the ones of a replaced ontology release, are dropped by the garbage collector. Entries of
+ * collected instances are removed on the next {@link #intern(Object, UnaryOperator) intern}.
+ *
+ * @param <T> the type of the instances
+ */
+final class WeakInterner<T> {
+
+    private final ConcurrentMap<Entry<T>, Entry<T>> table = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> queue = new ReferenceQueue<>();
+    private final ToIntFunction<T> hash;
+    private final BiPredicate<T, T> equivalence;
+
+    /**
+     * @param hash        the hash of instances consistent with {@code equivalence}
+     * @param equivalence whether two instances share a canonical instance
+     */
+    WeakInterner(ToIntFunction<T> hash, BiPredicate<T, T> equivalence) {
+        this.hash = requireNonNull(hash);
+        this.equivalence = requireNonNull(equivalence);
+    }
+
+    /**
+     * Returns the canonical instance equivalent to {@code value}, which is created by {@code canonicalize} if there is
+     * none yet.
+     *
+     * @param value        the instance to intern
+     * @param canonicalize creates the canonical instance from {@code value}
+     * @return the canonical instance
+     */
+    T intern(T value, UnaryOperator<T> canonicalize) {
+        expunge();
+        var existing = table.get(new Entry<>(value, this, null));
+        var canonical = existing == null ? null : existing.get();
+        if (canonical != null) {
+            return canonical;
+        }
+        canonical = canonicalize.apply(value);
+        var entry = new Entry<>(canonical, this, queue);
+        while (true) {
+            existing = table.putIfAbsent(entry, entry);
+            if (existing == null) {
+                return canonical;
+            }
+            var other = existing.get();
+            if (other != null) {
+                return other;
+            }
+            table.remove(existing, existing);
+        }
+    }
+
+    /**
+     * Returns the number of entries, including the ones of collected instances not removed yet.
+     */
+    int size() {
+        expunge();
+        return table.size();
+    }
+
+    private void expunge() {
+        for (var reference = queue.poll(); reference != null; reference = queue.poll()) {
+            var entry = (Entry<?>) reference;
+            table.remove(entry, entry);
+        }
+    }
+
+    /**
+     * A weak reference to an instance with its hash kept, so the entry can be removed after the instance is collected.
+     * Entries of collected instances are only equal to themselves.
+     */
+    private static final class Entry<T> extends WeakReference<T> {
+
+        private final WeakInterner<T> interner;
+        private final int hash;
+
+        private Entry(T value, WeakInterner<T> interner, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.interner = interner;
+            this.hash = interner.hash.applyAsInt(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry<?> that) || hash != that.hash) return false;
+            @SuppressWarnings("unchecked")
+            var other = ((Entry<T>) that).get();
+            var value = get();
+            return value != null && other != null && interner.equivalence.test(value, other);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,25 +1,23 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import java.util.List;
-import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 
 public record AdditionExpressionTerm(List<? extends DefaultExpression> expressions) implements
         DefaultExpression {
 
     public static final int PRECEDENCE = 16;
 
-
     public AdditionExpressionTerm {
         expressions = List.copyOf(expressions);
     }
 
-
     public static DefaultExpression of(DefaultExpression e1, DefaultExpression e2) {
         if (e1 instanceof AdditionExpressionTerm) {
             return new AdditionExpressionTerm(
@@ -32,13 +30,25 @@ public record AdditionExpressionTerm(List<? extends DefaultExpression> expressio
 
     @Override
     public String print(PrintContext printContext) {
-        return printContext.parenthesize(PRECEDENCE, expressions.stream()
-                .map(printContext.withPrecedence(PRECEDENCE)::print)
-                .collect(joining(" + ")));
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
+        var childPrintContext = printContext.withPrecedence(PRECEDENCE);
+        printer.openParen(printContext, PRECEDENCE);
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                printer.append(" + ");
+            }
+            printer.print(expressions.get(i), childPrintContext);
+        }
+        printer.closeParen(printContext, PRECEDENCE);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new AdditionExpressionTerm(expressions.stream().map(e -> e.withIncrementedSuffixes(increments)).toList());
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = Children.map(expressions, mapper);
+        return mapped == expressions ? this : new AdditionExpressionTerm(mapped);
     }
 }
@@ -1,8 +1,7 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
-
-import java.util.Map;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -18,12 +17,13 @@ public record AliasedQuerySource(Expression<?> querySource, IdentifierExpression
     }
 
     public String print(PrintContext printContext) {
-        assert printContext.precedence() == 0;
-        return "%s %s".formatted(querySource.print(printContext.increase()), alias.print(printContext));
+        return Printer.printToString(this, printContext);
     }
 
-    public AliasedQuerySource withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new AliasedQuerySource(querySource.withIncrementedSuffixes(increments),
-                alias.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        assert printContext.precedence() == 0;
+        printer.print(querySource, printContext.increase())
+                .append(' ')
+                .print(alias, printContext);
     }
 }
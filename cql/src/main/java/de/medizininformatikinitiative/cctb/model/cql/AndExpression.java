@@ -1,13 +1,12 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import java.util.List;
-import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.joining;
-
 /**
  * Expression1 AND Expression2 AND Expression ... AND ExpressionN
  */
@@ -26,21 +25,48 @@ public record AndExpression(List<DefaultExpression> expressions) implements Defa
             return e1;
         } else if (e1 instanceof AndExpression) {
             return new AndExpression(Stream.concat(((AndExpression) e1).expressions.stream(),
-                    Stream.of(new WrapperExpression(e2))).toList());
+                    Stream.of(WrapperExpression.of(e2))).toList());
         } else {
-            return new AndExpression(List.of(new WrapperExpression(e1), new WrapperExpression(e2)));
+            return new AndExpression(List.of(WrapperExpression.of(e1), WrapperExpression.of(e2)));
+        }
+    }
+
+    /**
+     * Returns the conjunction of all {@code expressions} in one pass, leaving out {@link Expression#TRUE} operands.
+     */
+    public static DefaultExpression of(List<? extends DefaultExpression> expressions) {
+        var conjuncts = expressions.stream().filter(expression -> expression != Expression.TRUE).toList();
+        if (conjuncts.isEmpty()) {
+            return Expression.TRUE;
+        }
+        if (conjuncts.size() == 1) {
+            return conjuncts.get(0);
         }
+        return new AndExpression(Children.combine(conjuncts,
+                expression -> expression instanceof AndExpression and ? and.expressions : null));
     }
 
     @Override
     public String print(PrintContext printContext) {
-        return printContext.parenthesize(PRECEDENCE, expressions.stream()
-                .map(printContext.withPrecedence(PRECEDENCE)::print)
-                .collect(joining(" and\n" + printContext.getIndent())));
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
+        var childPrintContext = printContext.withPrecedence(PRECEDENCE);
+        printer.openParen(printContext, PRECEDENCE);
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                printer.append(" and").newline(printContext);
+            }
+            printer.print(expressions.get(i), childPrintContext);
+        }
+        printer.closeParen(printContext, PRECEDENCE);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new AndExpression(expressions.stream().map(e -> e.withIncrementedSuffixes(increments)).toList());
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = Children.map(expressions, mapper);
+        return mapped == expressions ? this : new AndExpression(mapped);
     }
 }
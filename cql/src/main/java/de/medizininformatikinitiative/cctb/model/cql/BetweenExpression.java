@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -24,14 +25,28 @@ public record BetweenExpression(Expression<?> value,
 
     @Override
     public String print(PrintContext printContext) {
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
         var childPrintContext = printContext.withPrecedence(PRECEDENCE);
-        return printContext.parenthesize(PRECEDENCE, "%s between %s and %s".formatted(value.print(childPrintContext),
-                lowerBound.print(childPrintContext), upperBound.print(childPrintContext)));
+        printer.openParen(printContext, PRECEDENCE)
+                .print(value, childPrintContext)
+                .append(" between ")
+                .print(lowerBound, childPrintContext)
+                .append(" and ")
+                .print(upperBound, childPrintContext)
+                .closeParen(printContext, PRECEDENCE);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new BetweenExpression(value.withIncrementedSuffixes(increments),
-                lowerBound.withIncrementedSuffixes(increments), upperBound.withIncrementedSuffixes(increments));
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mappedValue = mapper.apply(value);
+        var mappedLowerBound = mapper.apply(lowerBound);
+        var mappedUpperBound = mapper.apply(upperBound);
+        return mappedValue == value && mappedLowerBound == lowerBound && mappedUpperBound == upperBound
+                ? this
+                : new BetweenExpression(mappedValue, mappedLowerBound, mappedUpperBound);
     }
 }
@@ -0,0 +1,218 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Simplifies the boolean structure of expression definitions.
+ * <p>
+ * The rules hold in the three-valued logic of CQL:
+ * <ul>
+ *     <li>nested {@code and} and {@code or} expressions are flattened,</li>
+ *     <li>{@code true} and {@code false} operands are folded, so {@code A and false} becomes {@code false} and
+ *     {@code A and true} becomes {@code A},</li>
+ *     <li>duplicate operands are removed, so {@code A or A} becomes {@code A},</li>
+ *     <li>absorbed operands are removed, so {@code A and (A or B)} becomes {@code A} and {@code A or (A and B)}
+ *     becomes {@code A},</li>
+ *     <li>{@code not true}, {@code not false} and {@code not not A} are folded,</li>
+ *     <li>{@code exists (from R X)} becomes {@code exists R} and {@code exists (from R X where false)} becomes
+ *     {@code false}.</li>
+ * </ul>
+ * Definitions that are only an alias of another identifier, like an {@code Inclusion} of a single criterion, or a
+ * constant are inlined into the definitions referring to them and removed. Definitions with the same expression as an
+ * earlier definition, like the definitions of a criterion used twice, are replaced by that definition, so their
+ * references become duplicate operands. Only definitions with
+ * {@link SuffixedIdentifierExpression suffixed} names are inlined, because they are compared by identity and so can't
+ * be confused with other identifiers of the same name.
+ * <p>
+ * Expressions are compared by their {@link ExpressionInterner interned} instances, so finding duplicate definitions and
+ * operands doesn't hash and compare whole subtrees, which would take time quadratic in, and stack proportional to, the
+ * depth of the expressions.
+ */
+final class BooleanExpressions {
+
+    private BooleanExpressions() {
+    }
+
+    /**
+     * Returns {@code definitions} simplified or {@code definitions} itself if nothing was simplified.
+     * <p>
+     * Definitions whose names are in {@code referenced} are referred to from outside and so are never inlined.
+     */
+    static List<ExpressionDefinition> simplify(List<ExpressionDefinition> definitions, Set<Expression<?>> referenced) {
+        var substitutions = new HashMap<Expression<?>, DefaultExpression>();
+        var interner = ExpressionInterner.of();
+        var current = definitions;
+        var changed = false;
+        while (true) {
+            var inlined = substitutions.size();
+            var result = new ArrayList<ExpressionDefinition>(current.size());
+            var names = new IdentityHashMap<Expression<?>, IdentifierExpression>();
+            for (var definition : current) {
+                var expression = simplify(definition.expression(), substitutions, interner);
+                var inlinable = definition.name() instanceof SuffixedIdentifierExpression &&
+                        !referenced.contains(definition.name());
+                var name = names.putIfAbsent(interner.intern(expression), definition.name());
+                if (inlinable && name != null) {
+                    substitutions.put(definition.name(), WrapperExpression.of(name));
+                    changed = true;
+                } else if (inlinable && isInlinable(expression)) {
+                    substitutions.put(definition.name(), (DefaultExpression) expression);
+                    changed = true;
+                } else if (expression == definition.expression()) {
+                    result.add(definition);
+                } else {
+                    result.add(ExpressionDefinition.of(definition.name(), expression));
+                    changed = true;
+                }
+            }
+            // definitions inlined in this pass may be referred to by definitions already visited
+            if (substitutions.size() == inlined) {
+                return changed ? result : definitions;
+            }
+            current = result;
+        }
+    }
+
+    private static Expression<?> simplify(Expression<?> expression, Map<Expression<?>, DefaultExpression> substitutions,
+                                          ExpressionInterner interner) {
+        return Traversal.rewrite(expression, child -> null,
+                child -> simplifyChildren(substitute(child, substitutions), interner));
+    }
+
+    private static Expression<?> substitute(Expression<?> expression,
+                                            Map<Expression<?>, DefaultExpression> substitutions) {
+        // only suffixed identifiers are inlined, and looking them up doesn't hash whole subtrees
+        while (expression instanceof SuffixedIdentifierExpression identifier &&
+                substitutions.containsKey(identifier)) {
+            expression = unwrap(substitutions.get(identifier));
+        }
+        return expression;
+    }
+
+    private static boolean isInlinable(Expression<?> expression) {
+        return expression == Expression.TRUE || expression == Expression.FALSE ||
+                unwrap(expression) instanceof IdentifierExpression;
+    }
+
+    /**
+     * Simplifies {@code mapped} whose children are already simplified.
+     */
+    private static Expression<?> simplifyChildren(Expression<?> mapped, ExpressionInterner interner) {
+        if (mapped instanceof WrapperExpression wrapper && wrapper.expression() instanceof DefaultExpression expression) {
+            return expression;
+        }
+        if (mapped instanceof AndExpression and) {
+            return simplifyOperands(and, and.expressions(), Expression.TRUE, Expression.FALSE,
+                    expression -> expression instanceof AndExpression nested ? nested.expressions() : null,
+                    expression -> expression instanceof OrExpression nested ? nested.expressions() : null,
+                    AndExpression::new, interner);
+        }
+        if (mapped instanceof OrExpression or) {
+            return simplifyOperands(or, or.expressions(), Expression.FALSE, Expression.TRUE,
+                    expression -> expression instanceof OrExpression nested ? nested.expressions() : null,
+                    expression -> expression instanceof AndExpression nested ? nested.expressions() : null,
+                    OrExpression::new, interner);
+        }
+        if (mapped instanceof NotExpression not) {
+            var operand = unwrap(not.expression());
+            if (operand == Expression.TRUE) {
+                return Expression.FALSE;
+            }
+            if (operand == Expression.FALSE) {
+                return Expression.TRUE;
+            }
+            if (operand instanceof NotExpression inner) {
+                return WrapperExpression.of(inner.expression());
+            }
+            return not;
+        }
+        if (mapped instanceof ExistsExpression exists && unwrap(exists.expression()) instanceof QueryExpression query &&
+                query.queryInclusionClauses().isEmpty() && query.returnClause() == null) {
+            var where = query.whereClause().expression();
+            if (where == Expression.FALSE) {
+                return Expression.FALSE;
+            }
+            if (where == Expression.TRUE) {
+                return ExistsExpression.of(query.sourceClause().source().querySource());
+            }
+        }
+        return mapped;
+    }
+
+    /**
+     * Simplifies the {@code operands} of an {@code and} or an {@code or} expression.
+     *
+     * @param expression the expression itself, returned if nothing is simplified
+     * @param neutral    the operand that can be left out
+     * @param dominant   the operand that determines the result
+     * @param same       returns the operands of an expression of the same kind or {@code null}
+     * @param dual       returns the operands of an expression of the dual kind or {@code null}
+     * @param combiner   creates an expression of the same kind
+     * @param interner   interns the operands to compare them by identity
+     */
+    private static DefaultExpression simplifyOperands(DefaultExpression expression, List<DefaultExpression> operands,
+                                                      DefaultExpression neutral, DefaultExpression dominant,
+                                                      Function<Expression<?>, List<DefaultExpression>> same,
+                                                      Function<Expression<?>, List<DefaultExpression>> dual,
+                                                      Function<List<DefaultExpression>, DefaultExpression> combiner,
+                                                      ExpressionInterner interner) {
+        // the distinct operands by their interned instances in the order of their first occurrence
+        var distinct = new IdentityHashMap<Expression<?>, DefaultExpression>();
+        var order = new ArrayList<Expression<?>>();
+        for (var operand : operands) {
+            var nested = same.apply(unwrap(operand));
+            for (var flat : nested == null ? List.of(operand) : nested) {
+                var normalized = WrapperExpression.of(unwrap(flat));
+                if (normalized == dominant) {
+                    return dominant;
+                }
+                if (normalized != neutral) {
+                    var key = interner.intern(unwrap(normalized));
+                    if (distinct.putIfAbsent(key, normalized) == null) {
+                        order.add(key);
+                    }
+                }
+            }
+        }
+        var result = new ArrayList<DefaultExpression>(order.size());
+        for (var key : order) {
+            var absorbing = dual.apply(key);
+            if (absorbing == null || absorbing.stream().map(o -> interner.intern(unwrap(o)))
+                    .noneMatch(o -> o != key && distinct.containsKey(o))) {
+                result.add(distinct.get(key));
+            }
+        }
+        if (result.isEmpty()) {
+            return neutral;
+        }
+        if (result.size() == 1) {
+            return result.get(0);
+        }
+        return sameElements(result, operands) ? expression : combiner.apply(result);
+    }
+
+    private static boolean sameElements(List<DefaultExpression> a, List<DefaultExpression> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Expression<?> unwrap(Expression<?> expression) {
+        while (expression instanceof WrapperExpression wrapper) {
+            expression = wrapper.expression();
+        }
+        return expression;
+    }
+}
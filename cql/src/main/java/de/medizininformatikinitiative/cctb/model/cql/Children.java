@@ -0,0 +1,66 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Helpers for {@link Expression#mapChildren(UnaryOperator) mapping children} that keep untouched expressions and for
+ * combining expressions into n-ary expressions.
+ */
+final class Children {
+
+    private Children() {
+    }
+
+    /**
+     * Returns {@code expressions} mapped by {@code mapper} or {@code expressions} itself if the mapper returns every
+     * expression unchanged. The list is only copied once the first expression changes.
+     * <p>
+     * The lists of expressions are immutable, so {@code expressions} can be returned as list of its supertype.
+     */
+    @SuppressWarnings("unchecked")
+    static List<DefaultExpression> map(List<? extends DefaultExpression> expressions,
+                                       UnaryOperator<Expression<?>> mapper) {
+        List<DefaultExpression> result = null;
+        for (int i = 0; i < expressions.size(); i++) {
+            var expression = expressions.get(i);
+            var mapped = (DefaultExpression) mapper.apply(expression);
+            if (result == null && mapped != expression) {
+                result = new ArrayList<>(expressions.size());
+                result.addAll(expressions.subList(0, i));
+            }
+            if (result != null) {
+                result.add(mapped);
+            }
+        }
+        return result == null ? (List<DefaultExpression>) expressions : result;
+    }
+
+    /**
+     * Returns the operands of the n-ary expression combining {@code expressions} built in one pass.
+     * <p>
+     * The operands are the same as reducing {@code expressions} with the binary factory of the expression, which copies
+     * the operands on every step and so takes quadratic time. The operands of the first expression are taken over if
+     * it is of the same kind, all other expressions are {@link WrapperExpression#of wrapped}.
+     *
+     * @param expressions the expressions to combine, at least two
+     * @param operands    returns the operands of an expression of the same kind or {@code null}
+     */
+    static List<DefaultExpression> combine(List<? extends DefaultExpression> expressions,
+                                           Function<DefaultExpression, List<DefaultExpression>> operands) {
+        var first = expressions.get(0);
+        var nested = operands.apply(first);
+        var result = new ArrayList<DefaultExpression>(expressions.size() + (nested == null ? 0 : nested.size()));
+        if (nested == null) {
+            result.add(WrapperExpression.of(first));
+        } else {
+            result.addAll(nested);
+        }
+        for (var expression : expressions.subList(1, expressions.size())) {
+            result.add(WrapperExpression.of(expression));
+        }
+        return result;
+    }
+}
@@ -1,12 +1,13 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
-
-import java.util.Map;
+import de.medizininformatikinitiative.cctb.Printer;
 
 public interface Clause {
 
     String print(PrintContext printContext);
 
-    Clause withIncrementedSuffixes(Map<String, Integer> increments);
+    default void print(PrintContext printContext, Printer printer) {
+        printer.append(print(printContext));
+    }
 }
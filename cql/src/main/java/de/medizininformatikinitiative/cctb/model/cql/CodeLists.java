@@ -0,0 +1,170 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Collapses the operands of {@code or} and {@code union} expressions that differ only in the codes of their retrieve
+ * into a single operand retrieving all codes at once.
+ * <p>
+ * The operands of an {@code or} have to be {@code exists} expressions over a query, the operands of a {@code union}
+ * have to be queries. Two operands are collapsed iff their queries are equal after removing the codes of their
+ * retrieves, so the queries only differ in the resources they start from and
+ * <pre>
+ * exists (from [Condition: Code 'a' from icd10] C where P) or
+ * exists (from [Condition: Code 'b' from icd10] C where P)
+ * </pre>
+ * becomes
+ * <pre>
+ * exists (from [Condition: { Code 'a' from icd10, Code 'b' from icd10 }] C where P)
+ * </pre>
+ */
+final class CodeLists {
+
+    private CodeLists() {
+    }
+
+    /**
+     * Returns {@code definitions} with collapsed operands or {@code definitions} itself if nothing was collapsed.
+     */
+    static List<ExpressionDefinition> collapse(List<ExpressionDefinition> definitions) {
+        List<ExpressionDefinition> result = null;
+        for (int i = 0; i < definitions.size(); i++) {
+            var definition = definitions.get(i);
+            var expression = collapse(definition.expression());
+            if (result == null && expression != definition.expression()) {
+                result = new ArrayList<>(definitions.subList(0, i));
+            }
+            if (result != null) {
+                result.add(expression == definition.expression()
+                        ? definition
+                        : ExpressionDefinition.of(definition.name(), expression));
+            }
+        }
+        return result == null ? definitions : result;
+    }
+
+    private static Expression<?> collapse(Expression<?> expression) {
+        return Traversal.rewrite(expression, child -> null, CodeLists::collapseChildren);
+    }
+
+    /**
+     * Collapses the operands of {@code mapped} whose children are already collapsed.
+     */
+    private static Expression<?> collapseChildren(Expression<?> mapped) {
+        if (mapped instanceof OrExpression or) {
+            return collapseOperands(or, or.expressions(), CodeLists::existsQuery, ExistsExpression::of,
+                    OrExpression::new);
+        }
+        if (mapped instanceof UnionExpression union) {
+            return collapseOperands(union, union.expressions(), CodeLists::query, WrapperExpression::new,
+                    UnionExpression::new);
+        }
+        return mapped;
+    }
+
+    /**
+     * Returns {@code expression} itself if none of its {@code operands} can be collapsed.
+     */
+    private static DefaultExpression collapseOperands(DefaultExpression expression, List<DefaultExpression> operands,
+                                                      Function<Expression<?>, QueryExpression> queryOf,
+                                                      Function<QueryExpression, DefaultExpression> operandOf,
+                                                      Function<List<DefaultExpression>, DefaultExpression> combiner) {
+        var groups = new LinkedHashMap<Object, Group>();
+        for (var operand : operands) {
+            var query = queryOf.apply(unwrap(operand));
+            var retrieve = query == null ? null : terminologyRetrieve(query);
+            if (retrieve == null) {
+                // operands that can't be collapsed are grouped by identity
+                groups.put(new Object(), new Group(operand));
+            } else {
+                var shape = new Shape(withRetrieve(query, RetrieveExpression.of(retrieve.resourceType())),
+                        searchPath(retrieve));
+                groups.computeIfAbsent(shape, key -> new Group(operand)).queries.add(query);
+            }
+        }
+        if (groups.size() == operands.size()) {
+            return expression;
+        }
+
+        var result = new ArrayList<DefaultExpression>(groups.size());
+        for (var group : groups.values()) {
+            result.add(group.queries.size() > 1 ? operandOf.apply(merge(group.queries)) : group.operand);
+        }
+        return result.size() == 1 ? result.get(0) : combiner.apply(result);
+    }
+
+    private static QueryExpression merge(List<QueryExpression> queries) {
+        var first = queries.get(0);
+        var retrieve = terminologyRetrieve(first);
+        var codes = new ArrayList<DefaultExpression>();
+        for (var query : queries) {
+            var terminology = terminology(terminologyRetrieve(query));
+            if (terminology instanceof ListSelector list) {
+                codes.addAll(list.items());
+            } else {
+                codes.add(terminology instanceof DefaultExpression code ? code : new WrapperExpression(terminology));
+            }
+        }
+        var path = searchPath(retrieve);
+        var terminology = ListSelector.of(codes.stream().distinct().toList());
+        return withRetrieve(first, path == null
+                ? RetrieveExpression.of(retrieve.resourceType(), terminology)
+                : RetrieveExpression.of(retrieve.resourceType(), terminology, path));
+    }
+
+    private static Expression<?> unwrap(Expression<?> expression) {
+        while (expression instanceof WrapperExpression wrapper) {
+            expression = wrapper.expression();
+        }
+        return expression;
+    }
+
+    private static QueryExpression existsQuery(Expression<?> expression) {
+        return expression instanceof ExistsExpression exists ? query(unwrap(exists.expression())) : null;
+    }
+
+    private static QueryExpression query(Expression<?> expression) {
+        return expression instanceof QueryExpression query ? query : null;
+    }
+
+    private static RetrieveExpression terminologyRetrieve(QueryExpression query) {
+        return query.sourceClause().source().querySource() instanceof RetrieveExpression retrieve &&
+                !(retrieve instanceof RetrieveExpression.Unfiltered) ? retrieve : null;
+    }
+
+    private static Expression<?> terminology(RetrieveExpression retrieve) {
+        if (retrieve instanceof RetrieveExpression.WithPrimaryCodeFilter filter) {
+            return filter.terminology();
+        }
+        return ((RetrieveExpression.WithSearchCodeFilter) retrieve).terminology();
+    }
+
+    private static String searchPath(RetrieveExpression retrieve) {
+        return retrieve instanceof RetrieveExpression.WithSearchCodeFilter filter ? filter.searchPath() : null;
+    }
+
+    private static QueryExpression withRetrieve(QueryExpression query, RetrieveExpression retrieve) {
+        var source = query.sourceClause().source();
+        return new QueryExpression(SourceClause.of(AliasedQuerySource.of(retrieve, source.alias())),
+                query.queryInclusionClauses(), query.whereClause(), query.returnClause());
+    }
+
+    /**
+     * The query without the codes of its retrieve, used to find queries that can be collapsed.
+     */
+    private record Shape(QueryExpression query, String searchPath) {
+    }
+
+    /**
+     * The first operand of a group and the queries of all operands of the group.
+     */
+    private record Group(DefaultExpression operand, List<QueryExpression> queries) {
+
+        private Group(DefaultExpression operand) {
+            this(operand, new ArrayList<>());
+        }
+    }
+}
@@ -2,8 +2,6 @@ package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
 
-import java.util.Map;
-
 import static java.util.Objects.requireNonNull;
 
 public record CodeSelector(String code, String codeSystemIdentifier) implements ExpressionTerm<CodeSelector> {
@@ -19,11 +17,6 @@ public record CodeSelector(String code, String codeSystemIdentifier) implements
 
     @Override
     public String print(PrintContext printContext) {
-        return "Code '%s' from %s".formatted(code, codeSystemIdentifier);
-    }
-
-    @Override
-    public CodeSelector withIncrementedSuffixes(Map<String, Integer> increments) {
-        return this;
+        return "Code '%s' from %s".formatted(code, printContext.codeSystemName(codeSystemIdentifier));
     }
 }
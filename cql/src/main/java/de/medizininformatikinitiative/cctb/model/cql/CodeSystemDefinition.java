@@ -1,5 +1,7 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
+import de.medizininformatikinitiative.cctb.PrintContext;
+
 import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
@@ -7,11 +9,15 @@ import static java.util.Objects.requireNonNull;
 /**
  * A definition of a code system identifier.
  * <p>
- * Instances are immutable and implement {@code equals} and {@code hashCode} based on {@link #name()} name}.
+ * Code systems without a configured alias are {@link #of(String) created} with their URL as name. Their actual name is
+ * only assigned by the {@link Container} that is printed, so it depends on the code systems of that library alone.
+ * <p>
+ * Instances are immutable and implement {@code equals} and {@code hashCode} based on {@link #name()} name} and whether
+ * the definition is {@link #aliased() aliased}.
  *
  * @author Alexander Kiel
  */
-public record CodeSystemDefinition(String name, String system) {
+public record CodeSystemDefinition(String name, String system, boolean aliased) {
 
     public CodeSystemDefinition {
         requireNonNull(name);
@@ -19,11 +25,35 @@ public record CodeSystemDefinition(String name, String system) {
     }
 
     public static CodeSystemDefinition of(String name, String system) {
-        return new CodeSystemDefinition(name, system);
+        return new CodeSystemDefinition(name, system, true);
+    }
+
+    /**
+     * Returns a definition of the code system with {@code system} URL that has no alias.
+     *
+     * @param system the URL of the code system
+     * @return a definition whose name is resolved when printed
+     */
+    public static CodeSystemDefinition of(String system) {
+        return new CodeSystemDefinition(system, system, false);
     }
 
     public String print() {
-        return "codesystem %s: '%s'".formatted(name, system);
+        return print(PrintContext.ZERO);
+    }
+
+    public String print(PrintContext printContext) {
+        return "codesystem %s: '%s'".formatted(printedName(printContext), system);
+    }
+
+    /**
+     * Returns the name this definition is printed with in {@code printContext}.
+     *
+     * @param printContext the context holding the generated names of code systems without alias
+     * @return the alias or the generated name
+     */
+    public String printedName(PrintContext printContext) {
+        return aliased ? name : printContext.codeSystemName(system);
     }
 
     @Override
@@ -31,11 +61,11 @@ public record CodeSystemDefinition(String name, String system) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         CodeSystemDefinition that = (CodeSystemDefinition) o;
-        return name.equals(that.name);
+        return aliased == that.aliased && name.equals(that.name);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name);
+        return Objects.hash(name, aliased);
     }
 }
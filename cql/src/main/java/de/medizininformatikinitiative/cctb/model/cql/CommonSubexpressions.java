@@ -0,0 +1,145 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * Shares queries and retrieves that occur more than once in a list of definitions by moving them into definitions of
+ * their own, which are referenced instead.
+ * <p>
+ * Only queries that aren't nested in other queries are counted, because nested queries can reference the aliases of
+ * enclosing queries. Queries that consist of a source only are shared as the retrieve they are.
+ * <p>
+ * Occurrences are counted by their {@link ExpressionInterner interned} instances, so counting doesn't hash and compare
+ * whole subtrees.
+ */
+final class CommonSubexpressions {
+
+    private CommonSubexpressions() {
+    }
+
+    /**
+     * Returns {@code definitions} with shared queries and retrieves. The definitions of the shared retrieves come
+     * first, followed by the definitions of the shared queries and the rewritten {@code definitions}.
+     *
+     * @param definitions the definitions to rewrite
+     * @return the rewritten definitions together with the definitions of the shared subexpressions
+     */
+    static List<ExpressionDefinition> share(List<ExpressionDefinition> definitions) {
+        var interner = ExpressionInterner.of();
+        var queries = new Occurrences(interner);
+        definitions.forEach(definition -> countQueries(definition.expression(), queries));
+        var queryNames = queries.names("Query");
+        var withQueries = append(queries.definitions(queryNames),
+                replace(definitions, queryNames, QueryExpression.class, interner));
+
+        var retrieves = new Occurrences(interner);
+        withQueries.forEach(definition -> countRetrieves(definition.expression(), retrieves));
+        var retrieveNames = retrieves.names("Retrieve");
+        if (queryNames.isEmpty() && retrieveNames.isEmpty()) {
+            return definitions;
+        }
+        return append(retrieves.definitions(retrieveNames),
+                replace(withQueries, retrieveNames, RetrieveExpression.class, interner));
+    }
+
+    private static void countQueries(Expression<?> expression, Occurrences occurrences) {
+        Traversal.forEach(expression, child -> {
+            if (child instanceof QueryExpression query) {
+                if (!query.isSourceOnly()) {
+                    occurrences.add(query);
+                }
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private static void countRetrieves(Expression<?> expression, Occurrences occurrences) {
+        Traversal.forEach(expression, child -> {
+            if (child instanceof RetrieveExpression) {
+                occurrences.add(child);
+                return false;
+            }
+            return true;
+        });
+    }
+
+    private static List<ExpressionDefinition> replace(List<ExpressionDefinition> definitions,
+                                                      Map<Expression<?>, IdentifierExpression> names,
+                                                      Class<?> kind, ExpressionInterner interner) {
+        if (names.isEmpty()) {
+            return definitions;
+        }
+        return definitions.stream()
+                .map(definition -> ExpressionDefinition.of(definition.name(),
+                        replace(definition.expression(), names, kind, interner)))
+                .toList();
+    }
+
+    private static Expression<?> replace(Expression<?> expression, Map<Expression<?>, IdentifierExpression> names,
+                                         Class<?> kind, ExpressionInterner interner) {
+        return Traversal.rewrite(expression, child -> {
+            var name = kind.isInstance(child) ? names.get(interner.intern(child)) : null;
+            return name == null ? null : new WrapperExpression(name);
+        }, UnaryOperator.identity());
+    }
+
+    private static List<ExpressionDefinition> append(List<ExpressionDefinition> a, List<ExpressionDefinition> b) {
+        var result = new ArrayList<ExpressionDefinition>(a.size() + b.size());
+        result.addAll(a);
+        result.addAll(b);
+        return result;
+    }
+
+    /**
+     * The number of occurrences of expressions by their interned instances in the order of their first occurrence.
+     */
+    private static final class Occurrences {
+
+        private final ExpressionInterner interner;
+        private final Map<Expression<?>, Integer> counts = new IdentityHashMap<>();
+        private final List<Expression<?>> order = new ArrayList<>();
+
+        private Occurrences(ExpressionInterner interner) {
+            this.interner = interner;
+        }
+
+        private void add(Expression<?> expression) {
+            var canonical = interner.intern(expression);
+            if (counts.merge(canonical, 1, Integer::sum) == 1) {
+                order.add(canonical);
+            }
+        }
+
+        /**
+         * Names the expressions occurring more than once by their interned instances.
+         */
+        private Map<Expression<?>, IdentifierExpression> names(String prefix) {
+            var names = new IdentityHashMap<Expression<?>, IdentifierExpression>();
+            for (var expression : order) {
+                if (counts.get(expression) > 1) {
+                    names.put(expression, SuffixedIdentifierExpression.of(prefix));
+                }
+            }
+            return names;
+        }
+
+        /**
+         * Returns the definitions of the {@code names} in the order of the first occurrence of their expressions.
+         */
+        private List<ExpressionDefinition> definitions(Map<Expression<?>, IdentifierExpression> names) {
+            var definitions = new ArrayList<ExpressionDefinition>(names.size());
+            for (var expression : order) {
+                var name = names.get(expression);
+                if (name != null) {
+                    definitions.add(ExpressionDefinition.of(name, expression));
+                }
+            }
+            return definitions;
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 import de.medizininformatikinitiative.cctb.model.common.Comparator;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -30,15 +31,24 @@ public record ComparatorExpression(Expression<?> a, Comparator comparator,
 
     @Override
     public String print(PrintContext printContext) {
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
         var precedence = comparator.getPrecedence();
         var childPrintContext = printContext.withPrecedence(precedence);
-        return printContext.parenthesize(precedence, "%s %s %s".formatted(a.print(childPrintContext), comparator,
-                b.print(childPrintContext)));
+        printer.openParen(printContext, precedence)
+                .print(a, childPrintContext)
+                .append(' ').append(comparator.toString()).append(' ')
+                .print(b, childPrintContext)
+                .closeParen(printContext, precedence);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new ComparatorExpression(a.withIncrementedSuffixes(increments), comparator,
-                b.withIncrementedSuffixes(increments));
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mappedA = mapper.apply(a);
+        var mappedB = mapper.apply(b);
+        return mappedA == a && mappedB == b ? this : new ComparatorExpression(mappedA, comparator, mappedB);
     }
 }
@@ -1,17 +1,25 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
-import de.medizininformatikinitiative.cctb.Maps;
+import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 import de.medizininformatikinitiative.cctb.Sets;
+import de.medizininformatikinitiative.cctb.TranslationMetrics;
+import tools.jackson.core.ObjectWriteContext;
+import tools.jackson.core.StreamWriteConstraints;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.core.json.JsonFactory;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.*;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.function.Supplier;
-import java.util.stream.Stream;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 
 /**
  * A container holds an expression, all its referenced definitions and the code system definitions
@@ -20,13 +28,16 @@ import static java.util.stream.Collectors.joining;
  * Containers can be {@link #combiner combined}, collecting all code system definitions the
  * individual contains use.
  * <p>
+ * The names of patient definitions are {@link SuffixedIdentifierExpression symbolic}. Their numerical suffixes are
+ * resolved only once when the container is printed, so combining containers never has to rename definitions.
+ * <p>
  * Instances are immutable.
  *
  * @author Alexander Kiel
  */
 public final class Container<T extends Expression<T>> {
 
-    private static final Container<DefaultExpression> EMPTY = new Container<>(null, Set.of(), Set.of(), List.of());
+    private static final Container<DefaultExpression> EMPTY = new Container<>(null, Set.of(), Set.of(), ExpressionDefinitions.of());
     public static final BinaryOperator<Container<DefaultExpression>> AND = combiner(AndExpression::of);
     public static final BinaryOperator<Container<DefaultExpression>> AND_NOT = combiner((a, b) -> a.and(NotExpression.of(b)));
     public static final BinaryOperator<Container<DefaultExpression>> OR = combiner(OrExpression::of);
@@ -36,14 +47,21 @@ public final class Container<T extends Expression<T>> {
             using FHIR version '4.0.0'
             include FHIRHelpers version '4.0.0'
             """;
+    /**
+     * The factory of ELM generators, which allows any nesting depth, because the nesting of expressions isn't bounded.
+     */
+    private static final JsonFactory ELM_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .streamWriteConstraints(StreamWriteConstraints.builder().maxNestingDepth(Integer.MAX_VALUE).build())
+            .build();
     private final T expression;
     private final Set<CodeSystemDefinition> codeSystemDefinitions;
     private final Set<ExpressionDefinition> unfilteredDefinitions;
-    private final List<ExpressionDefinition> patientDefinitions;
+    private final ExpressionDefinitions patientDefinitions;
 
     private Container(T expression, Set<CodeSystemDefinition> codeSystemDefinitions,
                       Set<ExpressionDefinition> unfilteredDefinitions,
-                      List<ExpressionDefinition> patientDefinitions) {
+                      ExpressionDefinitions patientDefinitions) {
         this.expression = expression;
         this.codeSystemDefinitions = codeSystemDefinitions;
         this.unfilteredDefinitions = unfilteredDefinitions;
@@ -74,7 +92,7 @@ public final class Container<T extends Expression<T>> {
      * @throws NullPointerException if {@code expression} is null
      */
     public static <T extends Expression<T>> Container<T> of(T expression, CodeSystemDefinition... codeSystemDefinitions) {
-        return new Container<>(requireNonNull(expression), Set.of(codeSystemDefinitions), Set.of(), List.of());
+        return new Container<>(requireNonNull(expression), Set.of(codeSystemDefinitions), Set.of(), ExpressionDefinitions.of());
     }
 
     /**
@@ -94,45 +112,84 @@ public final class Container<T extends Expression<T>> {
         return (a, b) -> {
             if (a == EMPTY) return b;
             if (b == EMPTY) return a;
-            var aSuffixes = a.suffixes();
-            var bSuffixes = b.suffixes();
-            // create increments of suffixes in A that were zero but are also in B
-            var aIncrements = new HashMap<String, Integer>();
-            var bIncrements = new HashMap<String, Integer>();
-            aSuffixes.entrySet().stream()
-                    .filter(e -> e.getValue() == 0)
-                    .map(Map.Entry::getKey)
-                    .filter(bSuffixes::containsKey)
-                    .forEach(k -> {
-                        aIncrements.put(k, 1);
-                        bIncrements.put(k, bSuffixes.get(k) == 0 ? 2 : 1);
-                    });
-            aSuffixes.entrySet().stream()
-                    .filter(e -> e.getValue() > 0)
-                    .forEach(e -> bIncrements.put(e.getKey(), e.getValue() + (bSuffixes.get(e.getKey()) == 0 ? 1 : 0)));
-
-            return new Container<>(combiner.apply(a.expression.withIncrementedSuffixes(aIncrements),
-                    b.expression.withIncrementedSuffixes(bIncrements)),
+            return new Container<>(combiner.apply(a.expression, b.expression),
                     Sets.union(a.codeSystemDefinitions, b.codeSystemDefinitions),
                     Sets.union(a.unfilteredDefinitions, b.unfilteredDefinitions),
-                    ExpressionDefinitions.unionByName(a.withIncrementedSuffixes(aIncrements),
-                            b.withIncrementedSuffixes(bIncrements)));
+                    a.patientDefinitions.unionByName(b.patientDefinitions));
         };
     }
 
     /**
-     * Returns a map of patient definitions name identifier prefixes to their maximum numerical suffixes.
+     * Returns a collector that combines all containers at once, using {@code combiner} for their expressions.
+     * <p>
+     * The result is the same as reducing the containers with a {@link #combiner(BinaryOperator) combiner} starting
+     * with the {@link #empty() empty container}, but the code system definitions and the definitions of all containers
+     * are merged in one pass and {@code combiner} is called only once with the expressions of all non-empty containers.
+     * So combining the containers of a large concept expansion takes linear time, if {@code combiner} does. A single
+     * non-empty container is returned as is.
      *
-     * @return a map of identifier prefixes to numerical suffixes
+     * @param combiner the function to combine the expressions of at least two containers
+     * @param <T>      the type of the expressions
+     * @return a collector combining all containers
      */
-    private Map<String, Integer> suffixes() {
-        return patientDefinitions.stream()
-                .map(ExpressionDefinition::suffixes)
-                .reduce(Map.of(), Maps.merge(Integer::max));
+    public static <T extends Expression<T>> Collector<Container<T>, ?, Container<T>> collector(
+            Function<List<T>, T> combiner) {
+        requireNonNull(combiner);
+        return Collector.<Container<T>, List<Container<T>>, Container<T>>of(ArrayList::new, (containers, container) -> {
+            if (!container.isEmpty()) {
+                containers.add(container);
+            }
+        }, (a, b) -> {
+            a.addAll(b);
+            return a;
+        }, containers -> combineAll(containers, combiner));
+    }
+
+    private static <T extends Expression<T>> Container<T> combineAll(List<Container<T>> containers,
+                                                                     Function<List<T>, T> combiner) {
+        if (containers.isEmpty()) {
+            return empty();
+        }
+        if (containers.size() == 1) {
+            return containers.get(0);
+        }
+        var expressions = new ArrayList<T>(containers.size());
+        var codeSystemDefinitions = new HashSet<CodeSystemDefinition>();
+        var unfilteredDefinitions = new HashSet<ExpressionDefinition>();
+        var patientDefinitions = ExpressionDefinitions.of();
+        for (var container : containers) {
+            expressions.add(container.expression);
+            codeSystemDefinitions.addAll(container.codeSystemDefinitions);
+            unfilteredDefinitions.addAll(container.unfilteredDefinitions);
+            patientDefinitions = patientDefinitions.unionByName(container.patientDefinitions);
+        }
+        return new Container<>(requireNonNull(combiner.apply(expressions)), Set.copyOf(codeSystemDefinitions),
+                Set.copyOf(unfilteredDefinitions), patientDefinitions);
     }
 
-    private List<ExpressionDefinition> withIncrementedSuffixes(Map<String, Integer> increments) {
-        return patientDefinitions.stream().map(d -> d.withIncrementedSuffixes(increments)).toList();
+    /**
+     * Resolves the numerical suffixes of all {@link SuffixedIdentifierExpression suffixed} patient definition names.
+     * <p>
+     * Names with a prefix that is used only once get no suffix. Otherwise the names with the same prefix are numbered
+     * starting with one in the order of the patient definitions.
+     *
+     * @return a map of identifiers to their numerical suffixes
+     */
+    private static Map<IdentifierExpression, Integer> suffixes(List<ExpressionDefinition> patientDefinitions) {
+        var counts = new HashMap<String, Integer>();
+        for (var definition : patientDefinitions) {
+            if (definition.name() instanceof SuffixedIdentifierExpression name) {
+                counts.merge(name.prefix(), 1, Integer::sum);
+            }
+        }
+        var suffixes = new HashMap<IdentifierExpression, Integer>();
+        var lastSuffixes = new HashMap<String, Integer>();
+        for (var definition : patientDefinitions) {
+            if (definition.name() instanceof SuffixedIdentifierExpression name && counts.get(name.prefix()) > 1) {
+                suffixes.put(name, lastSuffixes.merge(name.prefix(), 1, Integer::sum));
+            }
+        }
+        return suffixes;
     }
 
     /**
@@ -165,7 +222,7 @@ public final class Container<T extends Expression<T>> {
     private Optional<Context> getPatientContext() {
         return patientDefinitions.isEmpty()
                 ? Optional.empty() :
-                Optional.of(Context.of("Patient", patientDefinitions));
+                Optional.of(Context.of("Patient", patientDefinitions.toList()));
     }
 
     /**
@@ -179,7 +236,7 @@ public final class Container<T extends Expression<T>> {
      */
     public Container<DefaultExpression> moveToUnfilteredContext(String name) {
         if (expression == null || expression.isIdentifier()) {
-            return map(WrapperExpression::new);
+            return map(WrapperExpression::of);
         }
 
         var identifier = StandardIdentifierExpression.of(name);
@@ -201,9 +258,9 @@ public final class Container<T extends Expression<T>> {
         if (expression == null) {
             return map(WrapperExpression::new);
         }
-        var identifier = SuffixedIdentifierExpression.of(name, suffixes().getOrDefault(name, 0));
+        var identifier = SuffixedIdentifierExpression.of(name);
         return new Container<>(new WrapperExpression(identifier), codeSystemDefinitions, unfilteredDefinitions,
-                ExpressionDefinitions.appendByUniqueName(patientDefinitions, ExpressionDefinition.of(identifier, expression)));
+                patientDefinitions.appendByUniqueName(ExpressionDefinition.of(identifier, expression)));
     }
 
     /**
@@ -225,7 +282,7 @@ public final class Container<T extends Expression<T>> {
         }
         var identifier = StandardIdentifierExpression.of(name);
         return new Container<>(new WrapperExpression(identifier), codeSystemDefinitions, unfilteredDefinitions,
-                ExpressionDefinitions.appendByUniqueName(patientDefinitions, ExpressionDefinition.of(identifier, expression)));
+                patientDefinitions.appendByUniqueName(ExpressionDefinition.of(identifier, expression)));
     }
 
     /**
@@ -250,40 +307,263 @@ public final class Container<T extends Expression<T>> {
         if (container.expression == null) {
             return empty();
         } else {
-            var increments = suffixes();
-            return new Container<>(container.expression.withIncrementedSuffixes(increments),
+            return new Container<>(container.expression,
                     Sets.union(codeSystemDefinitions, container.codeSystemDefinitions),
                     Sets.union(unfilteredDefinitions, container.unfilteredDefinitions),
-                    ExpressionDefinitions.unionByName(patientDefinitions, container.patientDefinitions.stream()
-                            .map(d -> d.withIncrementedSuffixes(increments))
-                            .toList()));
+                    patientDefinitions.unionByName(container.patientDefinitions));
         }
     }
 
+    /**
+     * Returns a container in which retrieves and queries that occur more than once in the patient context are moved
+     * into definitions of their own and referenced by name, so the CQL gets smaller and each of them is evaluated only
+     * once.
+     * <p>
+     * The expression of the container itself isn't rewritten, so this should be called after the expression was
+     * {@link #moveToPatientContext(String) moved to the patient context}.
+     *
+     * @return a container with shared retrieves and queries or this container if nothing is shared
+     */
+    public Container<T> shareCommonSubexpressions() {
+        var definitions = patientDefinitions.toList();
+        var shared = CommonSubexpressions.share(definitions);
+        return shared == definitions ? this : withPatientDefinitions(shared);
+    }
+
+    /**
+     * Returns a container in which {@code or} and {@code union} operands of the patient context that differ only in
+     * the codes of their retrieves are collapsed into a single operand retrieving a list of all their codes.
+     * <p>
+     * Expanded concepts are translated into one operand per code, so collapsing them saves the FHIR server
+     * to run a retrieve per code. Like {@link #shareCommonSubexpressions()} only the patient definitions are
+     * rewritten.
+     *
+     * @return a container with collapsed code lists or this container if nothing is collapsed
+     */
+    public Container<T> collapseCodeLists() {
+        var definitions = patientDefinitions.toList();
+        var collapsed = CodeLists.collapse(definitions);
+        return collapsed == definitions ? this : withPatientDefinitions(collapsed);
+    }
+
+    /**
+     * Returns a container in which the boolean expressions of the patient context are simplified.
+     * <p>
+     * Constant operands are folded and duplicate or absorbed operands of {@code and} and {@code or} expressions are
+     * removed. Definitions that are only an alias of another definition, like the {@code Inclusion} of a single
+     * criterion, or a constant are inlined, unless the expression of the container refers to them. Like
+     * {@link #shareCommonSubexpressions()} only the patient definitions are rewritten.
+     *
+     * @return a container with simplified expressions or this container if nothing is simplified
+     */
+    public Container<T> simplify() {
+        if (isEmpty()) {
+            return this;
+        }
+        var referenced = new HashSet<Expression<?>>();
+        Traversal.forEach(expression, child -> {
+            if (child instanceof IdentifierExpression) {
+                referenced.add(child);
+            }
+            return true;
+        });
+        var definitions = patientDefinitions.toList();
+        var simplified = BooleanExpressions.simplify(definitions, referenced);
+        return simplified == definitions ? this : withPatientDefinitions(simplified);
+    }
+
+    /**
+     * Returns a container in which all structurally equal subtrees of the expression and the definitions are the same
+     * instance.
+     * <p>
+     * Criteria are translated independently, so equal codes, retrieves and invocations are allocated once per
+     * criterion. Interning them with one {@link ExpressionInterner} keeps only one instance of each alive until the
+     * container is printed and lets rewrites like {@link #shareCommonSubexpressions()} compare them by identity.
+     *
+     * @return a container with interned expressions
+     */
+    public Container<T> internExpressions() {
+        if (isEmpty()) {
+            return this;
+        }
+        var interner = ExpressionInterner.of();
+        return new Container<>(interner.intern(expression), codeSystemDefinitions,
+                unfilteredDefinitions.stream().map(interner::intern).collect(Collectors.toUnmodifiableSet()),
+                ExpressionDefinitions.of(patientDefinitions.toList().stream().map(interner::intern).toList()));
+    }
+
+    private Container<T> withPatientDefinitions(List<ExpressionDefinition> definitions) {
+        return new Container<>(expression, codeSystemDefinitions, unfilteredDefinitions,
+                ExpressionDefinitions.of(definitions));
+    }
+
     public Container<T> or(Supplier<T> expressionSupplier) {
         return isEmpty() ? of(expressionSupplier.get()) : this;
     }
 
-    private String printCodeSystemDefinitions() {
-        return codeSystemDefinitions.stream()
-                .sorted(Comparator.comparing(CodeSystemDefinition::name))
-                .map(CodeSystemDefinition::print).collect(joining("\n")) + "\n";
+    /**
+     * Resolves the names of all code system definitions without alias.
+     * <p>
+     * The code systems are numbered starting with one in the order of their URLs, skipping names that are already
+     * taken by an alias. So the names only depend on the code systems used in this container.
+     *
+     * @return a map of code system URLs to their generated names
+     */
+    private static Map<String, String> codeSystemNames(Set<CodeSystemDefinition> codeSystemDefinitions) {
+        var aliases = new HashSet<String>();
+        var systems = new ArrayList<String>();
+        for (var definition : codeSystemDefinitions) {
+            if (definition.aliased()) {
+                aliases.add(definition.name());
+            } else {
+                systems.add(definition.system());
+            }
+        }
+        if (systems.isEmpty()) {
+            return Map.of();
+        }
+        systems.sort(Comparator.naturalOrder());
+        var names = new HashMap<String, String>();
+        var id = 0;
+        for (var system : systems) {
+            String name;
+            do {
+                name = "codeSystem%d".formatted(++id);
+            } while (aliases.contains(name));
+            names.put(system, name);
+        }
+        return names;
     }
 
-    private String printUnfilteredContext() {
-        return getUnfilteredContext().map(Context::print).orElse("");
+    private PrintContext printContext(Optional<Context> patientContext) {
+        var printContext = PrintContext.ZERO.withCodeSystemNames(codeSystemNames(codeSystemDefinitions));
+        return patientContext
+                .map(context -> printContext.withSuffixes(suffixes(context.expressionDefinitions())))
+                .orElse(printContext);
     }
 
     public String printPatientContext() {
-        return getPatientContext().map(Context::print).orElse("");
+        var patientContext = getPatientContext();
+        return patientContext.map(context -> context.print(printContext(patientContext))).orElse("");
     }
 
     public String print() {
-        return Stream.of(HEADER,
-                        printCodeSystemDefinitions(),
-                        printUnfilteredContext(),
-                        printPatientContext())
-                .filter(Predicate.not(String::isBlank))
-                .collect(joining("\n"));
+        var builder = new StringBuilder();
+        print(builder);
+        return builder.toString();
+    }
+
+    /**
+     * Prints the library this container represents into {@code out} in a single pass.
+     * <p>
+     * The printing is measured by the {@link TranslationMetrics#installed() installed} metrics.
+     *
+     * @param out the appendable to print into
+     * @throws java.io.UncheckedIOException if {@code out} throws an {@link java.io.IOException}
+     */
+    public void print(Appendable out) {
+        print(out, TranslationMetrics.installed());
+    }
+
+    /**
+     * Prints the library this container represents into {@code out} in a single pass, measured by {@code metrics}.
+     *
+     * @param out     the appendable to print into
+     * @param metrics the metrics to report the printing to
+     * @throws java.io.UncheckedIOException if {@code out} throws an {@link java.io.IOException}
+     */
+    public void print(Appendable out, TranslationMetrics metrics) {
+        if (metrics == TranslationMetrics.NOOP) {
+            printLibrary(out);
+            return;
+        }
+        var start = System.nanoTime();
+        var counter = new CountingAppendable(out);
+        printLibrary(counter);
+        var definitions = unfilteredDefinitions.size() + patientDefinitions.size();
+        metrics.printed(definitions, counter.count, System.nanoTime() - start);
+    }
+
+    private void printLibrary(Appendable out) {
+        var printer = Printer.of(out).append(HEADER);
+        var patientContext = getPatientContext();
+        var printContext = printContext(patientContext);
+        if (!codeSystemDefinitions.isEmpty()) {
+            printer.append('\n');
+            codeSystemDefinitions.stream()
+                    .sorted(Comparator.comparing(definition -> definition.printedName(printContext)))
+                    .forEach(definition -> printer.append(definition.print(printContext)).append('\n'));
+        }
+        getUnfilteredContext().ifPresent(context -> context.print(printContext, printer.append('\n')));
+        patientContext.ifPresent(context -> context.print(printContext, printer.append('\n')));
+    }
+
+    /**
+     * Returns the library this container represents as ELM JSON.
+     *
+     * @return the library as ELM JSON
+     * @see #printElm(Writer)
+     */
+    public String printElm() {
+        var writer = new StringWriter();
+        printElm(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Writes the library this container represents as ELM JSON into {@code out}.
+     * <p>
+     * The ELM has the same definitions and names as the {@link #print() printed} CQL, so servers accepting ELM can
+     * evaluate the library without compiling CQL first. {@code out} is flushed but not closed.
+     *
+     * @param out the writer to write into
+     * @throws tools.jackson.core.JacksonException if {@code out} throws an {@link IOException}
+     * @throws IllegalArgumentException if the library contains an expression without ELM representation
+     */
+    public void printElm(Writer out) {
+        var patientContext = getPatientContext();
+        var printContext = printContext(patientContext);
+        var codeSystems = codeSystemDefinitions.stream()
+                .sorted(Comparator.comparing(definition -> definition.printedName(printContext)))
+                .toList();
+        try (var generator = ELM_FACTORY.createGenerator(ObjectWriteContext.empty(), out)) {
+            new ElmWriter(generator, printContext).writeLibrary(codeSystems,
+                    getUnfilteredContext().map(Context::expressionDefinitions).orElse(List.of()),
+                    patientContext.map(Context::expressionDefinitions).orElse(List.of()));
+        }
+    }
+
+    /**
+     * Counts the characters appended to the delegate.
+     */
+    private static final class CountingAppendable implements Appendable {
+
+        private final Appendable out;
+        private long count;
+
+        private CountingAppendable(Appendable out) {
+            this.out = requireNonNull(out);
+        }
+
+        @Override
+        public Appendable append(CharSequence s) throws IOException {
+            out.append(s);
+            count += s == null ? 4 : s.length();
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence s, int start, int end) throws IOException {
+            out.append(s, start, end);
+            count += end - start;
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            out.append(c);
+            count++;
+            return this;
+        }
     }
 }
@@ -1,11 +1,11 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import java.util.List;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 
 /**
  * A context inside a {@link Container}.
@@ -13,7 +13,7 @@ import static java.util.stream.Collectors.joining;
  * @param name                  the name of the context like {@literal Patient} or {@literal Unfiltered}
  * @param expressionDefinitions the list of expression definitions of the context
  */
-public record Context(String name, List<ExpressionDefinition> expressionDefinitions) {
+public record Context(String name, List<ExpressionDefinition> expressionDefinitions) implements Statement {
 
     public Context {
         requireNonNull(name);
@@ -25,10 +25,23 @@ public record Context(String name, List<ExpressionDefinition> expressionDefiniti
     }
 
     public String print() {
-        return """
-                context %s
-                        
-                %s
-                """.formatted(name, expressionDefinitions.stream().map(d -> d.print(PrintContext.ZERO)).collect(joining("\n\n")));
+        return print(PrintContext.ZERO);
+    }
+
+    @Override
+    public String print(PrintContext printContext) {
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
+        printer.append("context ").append(name).append("\n\n");
+        for (int i = 0; i < expressionDefinitions.size(); i++) {
+            if (i > 0) {
+                printer.append("\n\n");
+            }
+            expressionDefinitions.get(i).print(printContext, printer);
+        }
+        printer.append('\n');
     }
 }
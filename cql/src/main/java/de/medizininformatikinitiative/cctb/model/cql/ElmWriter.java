@@ -0,0 +1,801 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.model.common.Comparator;
+import de.medizininformatikinitiative.cctb.util.FhirModelInfo;
+import de.medizininformatikinitiative.cctb.util.FhirModelInfo.ElementType;
+import tools.jackson.core.JsonGenerator;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes a library as ELM JSON, the representation CQL is compiled to, so servers accepting ELM can evaluate it
+ * without compiling CQL first.
+ * <p>
+ * The expressions are written as the CQL compiler would translate their printed CQL with a few differences:
+ * <ul>
+ *     <li>{@code and}, {@code or} and {@code union} expressions with more than two operands are nested as balanced
+ *     binary trees instead of to the left, so expanded concepts with many codes don't nest deeply,</li>
+ *     <li>conversions of FHIR types to System types are only written for values whose type is known from the FHIR
+ *     model info, which are {@code as} expressions and properties of aliases and definitions of known type, other
+ *     values, like properties of choice types not compared to a code, quantity or string, are left to the implicit
+ *     conversion of the server and</li>
+ *     <li>no result types are annotated.</li>
+ * </ul>
+ * Names of identifiers and code systems are resolved by the {@link PrintContext} of the library, so the ELM uses the
+ * same names as the printed CQL.
+ * <p>
+ * Expressions are written without recursion: writing an expression writes its own tokens and schedules the writing of
+ * its children and closing tokens as tasks, which run from an explicit stack. So deeply nested expressions, like long
+ * chains of {@code not} expressions, don't overflow the stack.
+ */
+final class ElmWriter {
+
+    private static final String FHIR = "{http://hl7.org/fhir}";
+    private static final String FHIR_NAMESPACE = "FHIR.";
+    private static final String SYSTEM = "{urn:hl7-org:elm-types:r1}";
+
+    private static final Map<String, String> AGE_PRECISIONS = Map.of(
+            "AgeInYears", "Year",
+            "AgeInMonths", "Month",
+            "AgeInWeeks", "Week",
+            "AgeInDays", "Day",
+            "AgeInHours", "Hour");
+
+    /**
+     * The FHIRHelpers functions converting complex FHIR types to System types, keyed by the FHIR type.
+     */
+    private static final Map<String, String> CONVERSIONS = Map.of(
+            "FHIR.Quantity", "ToQuantity",
+            "FHIR.CodeableConcept", "ToConcept",
+            "FHIR.Coding", "ToCode",
+            "FHIR.Period", "ToInterval");
+
+    /**
+     * The FHIRHelpers functions converting primitive FHIR types, keyed by the System type of their value.
+     */
+    private static final Map<String, String> PRIMITIVE_CONVERSIONS = Map.of(
+            "System.String", "ToString",
+            "System.Boolean", "ToBoolean",
+            "System.Integer", "ToInteger",
+            "System.Decimal", "ToDecimal",
+            "System.Date", "ToDate",
+            "System.DateTime", "ToDateTime",
+            "System.Time", "ToTime");
+
+    private final JsonGenerator generator;
+    private final PrintContext printContext;
+    private final List<Alias> aliases = new ArrayList<>();
+    private final Map<IdentifierExpression, ElementType> definitionTypes = new HashMap<>();
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    ElmWriter(JsonGenerator generator, PrintContext printContext) {
+        this.generator = requireNonNull(generator);
+        this.printContext = requireNonNull(printContext);
+    }
+
+    /**
+     * Writes the library with {@code codeSystemDefinitions} and the definitions of both contexts.
+     */
+    void writeLibrary(List<CodeSystemDefinition> codeSystemDefinitions,
+                      List<ExpressionDefinition> unfilteredDefinitions,
+                      List<ExpressionDefinition> patientDefinitions) {
+        generator.writeStartObject();
+        generator.writeObjectPropertyStart("library");
+
+        generator.writeObjectPropertyStart("identifier");
+        generator.writeStringProperty("id", "Retrieve");
+        generator.writeStringProperty("version", "1.0.0");
+        generator.writeEndObject();
+        generator.writeObjectPropertyStart("schemaIdentifier");
+        generator.writeStringProperty("id", "urn:hl7-org:elm");
+        generator.writeStringProperty("version", "r1");
+        generator.writeEndObject();
+
+        generator.writeObjectPropertyStart("usings");
+        generator.writeArrayPropertyStart("def");
+        generator.writeStartObject();
+        generator.writeStringProperty("localIdentifier", "System");
+        generator.writeStringProperty("uri", "urn:hl7-org:elm-types:r1");
+        generator.writeEndObject();
+        generator.writeStartObject();
+        generator.writeStringProperty("localIdentifier", "FHIR");
+        generator.writeStringProperty("uri", "http://hl7.org/fhir");
+        generator.writeStringProperty("version", "4.0.0");
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        generator.writeObjectPropertyStart("includes");
+        generator.writeArrayPropertyStart("def");
+        generator.writeStartObject();
+        generator.writeStringProperty("localIdentifier", "FHIRHelpers");
+        generator.writeStringProperty("path", "FHIRHelpers");
+        generator.writeStringProperty("version", "4.0.0");
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        if (!codeSystemDefinitions.isEmpty()) {
+            generator.writeObjectPropertyStart("codeSystems");
+            generator.writeArrayPropertyStart("def");
+            for (var definition : codeSystemDefinitions) {
+                generator.writeStartObject();
+                generator.writeStringProperty("name", definition.printedName(printContext));
+                generator.writeStringProperty("id", definition.system());
+                generator.writeStringProperty("accessLevel", "Public");
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        generator.writeObjectPropertyStart("contexts");
+        generator.writeArrayPropertyStart("def");
+        if (!unfilteredDefinitions.isEmpty()) {
+            generator.writeStartObject();
+            generator.writeStringProperty("name", "Unfiltered");
+            generator.writeEndObject();
+        }
+        generator.writeStartObject();
+        generator.writeStringProperty("name", "Patient");
+        generator.writeEndObject();
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        generator.writeObjectPropertyStart("statements");
+        generator.writeArrayPropertyStart("def");
+        writePatientDefinition();
+        for (var definition : unfilteredDefinitions) {
+            writeDefinition(definition, "Unfiltered");
+        }
+        for (var definition : patientDefinitions) {
+            writeDefinition(definition, "Patient");
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes the definition of {@code Patient} every library in the patient context has implicitly.
+     */
+    private void writePatientDefinition() {
+        generator.writeStartObject();
+        generator.writeStringProperty("name", "Patient");
+        generator.writeStringProperty("context", "Patient");
+        generator.writeObjectPropertyStart("expression");
+        generator.writeStringProperty("type", "SingletonFrom");
+        generator.writeName("operand");
+        run(() -> writeRetrieve(RetrieveExpression.of("Patient")));
+        generator.writeEndObject();
+        generator.writeEndObject();
+        definitionTypes.put(StandardIdentifierExpression.of("Patient"),
+                new ElementType(List.of(FHIR_NAMESPACE + "Patient"), false));
+    }
+
+    private void writeDefinition(ExpressionDefinition definition, String context) {
+        generator.writeStartObject();
+        generator.writeStringProperty("name", name(definition.name()));
+        generator.writeStringProperty("context", context);
+        generator.writeStringProperty("accessLevel", "Public");
+        generator.writeName("expression");
+        run(() -> write(definition.expression()));
+        generator.writeEndObject();
+        var type = type(definition.expression());
+        if (type != null) {
+            definitionTypes.put(definition.name(), type);
+        }
+    }
+
+    /**
+     * Runs {@code task} and all tasks scheduled by it and by the tasks it scheduled.
+     */
+    private void run(Runnable task) {
+        tasks.push(task);
+        while (!tasks.isEmpty()) {
+            tasks.pop().run();
+            for (int i = scheduled.size() - 1; i >= 0; i--) {
+                tasks.push(scheduled.get(i));
+            }
+            scheduled.clear();
+        }
+    }
+
+    /**
+     * Schedules {@code task} to run after the current task and the tasks scheduled before it.
+     * <p>
+     * Once a task has scheduled something, all of its remaining output has to be scheduled as well to keep the order.
+     */
+    private void then(Runnable task) {
+        scheduled.add(task);
+    }
+
+    private void thenWrite(Expression<?> expression) {
+        then(() -> write(expression));
+    }
+
+    /**
+     * Writes {@code expression} converted to its System type if it's a FHIR value of known type.
+     */
+    private void write(Expression<?> expression) {
+        var conversion = conversion(type(expression));
+        if (conversion == null) {
+            writeUnconverted(expression);
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "FunctionRef");
+        generator.writeStringProperty("libraryName", "FHIRHelpers");
+        generator.writeStringProperty("name", conversion);
+        generator.writeArrayPropertyStart("operand");
+        then(() -> writeUnconverted(expression));
+        then(generator::writeEndArray);
+        then(generator::writeEndObject);
+    }
+
+    /**
+     * Returns the name of the FHIRHelpers function converting values of {@code type} to System values or
+     * {@code null} if there is none, like for lists and choice types.
+     */
+    private static String conversion(ElementType type) {
+        if (type == null || type.list() || type.types().size() != 1) {
+            return null;
+        }
+        return conversion(type.types().get(0));
+    }
+
+    private static String conversion(String type) {
+        var conversion = CONVERSIONS.get(type);
+        if (conversion != null || !type.startsWith(FHIR_NAMESPACE)) {
+            return conversion;
+        }
+        return FhirModelInfo.elementType(type.substring(FHIR_NAMESPACE.length()), "value")
+                .filter(value -> !value.list() && value.types().size() == 1)
+                .map(value -> PRIMITIVE_CONVERSIONS.get(value.types().get(0)))
+                .orElse(null);
+    }
+
+    /**
+     * Writes the tokens of {@code expression} and schedules the writing of its children.
+     */
+    private void writeUnconverted(Expression<?> expression) {
+        expression = unwrap(expression);
+        if (expression == Expression.TRUE || expression == Expression.FALSE) {
+            writeLiteral("Boolean", Boolean.toString(expression == Expression.TRUE));
+        } else if (expression instanceof AndExpression and) {
+            writeBinary("And", and.expressions(), 0, and.expressions().size());
+        } else if (expression instanceof OrExpression or) {
+            writeBinary("Or", or.expressions(), 0, or.expressions().size());
+        } else if (expression instanceof UnionExpression union) {
+            writeBinary("Union", union.expressions(), 0, union.expressions().size());
+        } else if (expression instanceof NotExpression not) {
+            writeUnary("Not", not.expression());
+        } else if (expression instanceof ExistsExpression exists) {
+            writeUnary("Exists", exists.expression());
+        } else if (expression instanceof ComparatorExpression comparator) {
+            writeComparison(type(comparator.comparator()), comparator.a(), comparator.b());
+        } else if (expression instanceof MembershipExpression membership) {
+            writeComparison(membership.op().equals("in") ? "In" : "Contains", membership.a(), membership.b());
+        } else if (expression instanceof BetweenExpression between) {
+            writeBetween(between);
+        } else if (expression instanceof OverlapsIntervalOperatorPhrase overlaps) {
+            writeOperands("Overlaps", List.of(overlaps.leftInterval(), overlaps.rightInterval()));
+        } else if (expression instanceof IntervalSelector interval) {
+            writeInterval(interval);
+        } else if (expression instanceof ListSelector list) {
+            writeList(list.items());
+        } else if (expression instanceof CodeSelector code) {
+            writeCode(code);
+        } else if (expression instanceof QuantityExpression quantity) {
+            writeQuantity(quantity);
+        } else if (expression instanceof StringLiteralExpression string) {
+            writeLiteral("String", string.value());
+        } else if (expression instanceof DateExpression date) {
+            writeDate("Date", date.date());
+        } else if (expression instanceof DateTimeExpression dateTime) {
+            writeDate("DateTime", dateTime.date());
+        } else if (expression instanceof TypeExpression type) {
+            writeType(type);
+        } else if (expression instanceof InvocationExpression invocation) {
+            var segments = invocation.invocation().split("\\.");
+            writeProperty(invocation.expression(), segments, segments.length - 1);
+        } else if (expression instanceof FunctionInvocation function) {
+            writeFunction(function);
+        } else if (expression instanceof AdditionExpressionTerm addition) {
+            writeAddition(addition);
+        } else if (expression instanceof RetrieveExpression retrieve) {
+            writeRetrieve(retrieve);
+        } else if (expression instanceof QueryExpression query) {
+            writeQuery(query);
+        } else if (expression instanceof IdentifierExpression identifier) {
+            generator.writeStartObject();
+            generator.writeStringProperty("type", alias(identifier) != null ? "AliasRef" : "ExpressionRef");
+            generator.writeStringProperty("name", name(identifier));
+            generator.writeEndObject();
+        } else {
+            throw new IllegalArgumentException("Can't write the expression `%s` as ELM."
+                    .formatted(expression.print(printContext)));
+        }
+    }
+
+    private static String type(Comparator comparator) {
+        return switch (comparator) {
+            case EQUAL -> "Equal";
+            case EQUIVALENT -> "Equivalent";
+            case LESS_EQUAL -> "LessOrEqual";
+            case LESS_THAN -> "Less";
+            case GREATER_EQUAL -> "GreaterOrEqual";
+            case GREATER_THAN -> "Greater";
+        };
+    }
+
+    private void writeUnary(String type, Expression<?> operand) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", type);
+        generator.writeName("operand");
+        thenWrite(operand);
+        then(generator::writeEndObject);
+    }
+
+    /**
+     * Writes the comparison of {@code a} and {@code b} with the implicit conversions of the CQL compiler.
+     * <p>
+     * A property of a choice type is cast to the choice matching the other operand and a code compared to a concept
+     * is converted to a concept.
+     */
+    private void writeComparison(String type, Expression<?> a, Expression<?> b) {
+        var left = choose(a, b);
+        var right = choose(b, a);
+        generator.writeStartObject();
+        generator.writeStringProperty("type", type);
+        generator.writeArrayPropertyStart("operand");
+        then(() -> writeComparand(left, right));
+        then(() -> writeComparand(right, left));
+        then(generator::writeEndArray);
+        then(generator::writeEndObject);
+    }
+
+    private void writeComparand(Expression<?> operand, Expression<?> other) {
+        if (unwrap(operand) instanceof CodeSelector code && isConcept(other)) {
+            generator.writeStartObject();
+            generator.writeStringProperty("type", "ToConcept");
+            generator.writeName("operand");
+            writeCode(code);
+            generator.writeEndObject();
+        } else {
+            write(operand);
+        }
+    }
+
+    private boolean isConcept(Expression<?> expression) {
+        if (unwrap(expression) instanceof TypeExpression type) {
+            return type.typeSpecifier().equals("CodeableConcept");
+        }
+        var type = type(expression);
+        return type != null && !type.list() && type.types().equals(List.of(FHIR_NAMESPACE + "CodeableConcept"));
+    }
+
+    /**
+     * Returns {@code operand} cast to the choice of its type matching {@code other} or {@code operand} itself if its
+     * type isn't a choice type or no choice matches.
+     */
+    private Expression<?> choose(Expression<?> operand, Expression<?> other) {
+        var type = type(operand);
+        if (type == null || type.list() || type.types().size() < 2) {
+            return operand;
+        }
+        var value = unwrap(other);
+        if (value instanceof ListSelector list && !list.items().isEmpty()) {
+            value = unwrap(list.items().get(0));
+        }
+        List<String> candidates;
+        if (value instanceof CodeSelector) {
+            candidates = List.of("CodeableConcept", "Coding");
+        } else if (value instanceof QuantityExpression quantity && quantity.unit() != null) {
+            candidates = List.of("Quantity");
+        } else if (value instanceof StringLiteralExpression) {
+            candidates = List.of("string", "code");
+        } else {
+            return operand;
+        }
+        for (var candidate : candidates) {
+            if (type.types().contains(FHIR_NAMESPACE + candidate)) {
+                return TypeExpression.of(operand, candidate);
+            }
+        }
+        return operand;
+    }
+
+    private void writeOperands(String type, List<? extends Expression<?>> operands) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", type);
+        generator.writeArrayPropertyStart("operand");
+        for (var operand : operands) {
+            thenWrite(operand);
+        }
+        then(generator::writeEndArray);
+        then(generator::writeEndObject);
+    }
+
+    /**
+     * Writes the {@code operands} from {@code from} inclusive to {@code to} exclusive as balanced binary tree of
+     * {@code type} expressions.
+     */
+    private void writeBinary(String type, List<? extends Expression<?>> operands, int from, int to) {
+        if (to - from == 1) {
+            write(operands.get(from));
+            return;
+        }
+        var middle = (from + to) >>> 1;
+        generator.writeStartObject();
+        generator.writeStringProperty("type", type);
+        generator.writeArrayPropertyStart("operand");
+        then(() -> writeBinary(type, operands, from, middle));
+        then(() -> writeBinary(type, operands, middle, to));
+        then(generator::writeEndArray);
+        then(generator::writeEndObject);
+    }
+
+    private void writeBetween(BetweenExpression between) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "And");
+        generator.writeArrayPropertyStart("operand");
+        then(() -> writeOperands("GreaterOrEqual", List.of(between.value(), between.lowerBound())));
+        then(() -> writeOperands("LessOrEqual", List.of(between.value(), between.upperBound())));
+        then(generator::writeEndArray);
+        then(generator::writeEndObject);
+    }
+
+    private void writeInterval(IntervalSelector interval) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "Interval");
+        generator.writeBooleanProperty("lowClosed", true);
+        generator.writeBooleanProperty("highClosed", true);
+        generator.writeName("low");
+        thenWrite(interval.intervalStart());
+        then(() -> generator.writeName("high"));
+        thenWrite(interval.intervalEnd());
+        then(generator::writeEndObject);
+    }
+
+    private void writeList(List<? extends Expression<?>> items) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "List");
+        generator.writeArrayPropertyStart("element");
+        for (var item : items) {
+            thenWrite(item);
+        }
+        then(generator::writeEndArray);
+        then(generator::writeEndObject);
+    }
+
+    private void writeCode(CodeSelector code) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "Code");
+        generator.writeStringProperty("code", code.code());
+        generator.writeObjectPropertyStart("system");
+        generator.writeStringProperty("name", printContext.codeSystemName(code.codeSystemIdentifier()));
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+
+    private void writeQuantity(QuantityExpression quantity) {
+        if (quantity.unit() == null) {
+            writeNumber(quantity.value());
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "Quantity");
+        generator.writeName("value");
+        generator.writeNumber(quantity.value());
+        generator.writeStringProperty("unit", quantity.unit());
+        generator.writeEndObject();
+    }
+
+    private void writeNumber(BigDecimal value) {
+        writeLiteral(value.scale() > 0 ? "Decimal" : "Integer", value.toPlainString());
+    }
+
+    private void writeLiteral(String type, String value) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "Literal");
+        generator.writeStringProperty("valueType", SYSTEM + type);
+        generator.writeStringProperty("value", value);
+        generator.writeEndObject();
+    }
+
+    private void writeDate(String type, LocalDate date) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", type);
+        generator.writeName("year");
+        writeLiteral("Integer", Integer.toString(date.getYear()));
+        generator.writeName("month");
+        writeLiteral("Integer", Integer.toString(date.getMonthValue()));
+        generator.writeName("day");
+        writeLiteral("Integer", Integer.toString(date.getDayOfMonth()));
+        generator.writeEndObject();
+    }
+
+    /**
+     * Writes {@code type} as {@code As} expression, converted to the System type if the FHIR type has a conversion.
+     */
+    private void writeType(TypeExpression type) {
+        var conversion = conversion(FHIR_NAMESPACE + type.typeSpecifier());
+        if (conversion != null) {
+            generator.writeStartObject();
+            generator.writeStringProperty("type", "FunctionRef");
+            generator.writeStringProperty("libraryName", "FHIRHelpers");
+            generator.writeStringProperty("name", conversion);
+            generator.writeArrayPropertyStart("operand");
+        }
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "As");
+        generator.writeName("operand");
+        then(() -> writeUnconverted(type.expression()));
+        then(() -> {
+            generator.writeObjectPropertyStart("asTypeSpecifier");
+            generator.writeStringProperty("type", "NamedTypeSpecifier");
+            generator.writeStringProperty("name", FHIR + type.typeSpecifier());
+            generator.writeEndObject();
+            generator.writeEndObject();
+            if (conversion != null) {
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        });
+    }
+
+    /**
+     * Writes the property at the path of {@code segments} up to {@code last} inclusive, starting at {@code source}.
+     * <p>
+     * Dotted paths are written as nested properties, with the last segment outermost.
+     */
+    private void writeProperty(Expression<?> source, String[] segments, int last) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "Property");
+        generator.writeStringProperty("path", segments[last]);
+        if (last > 0) {
+            generator.writeName("source");
+            writeProperty(source, segments, last - 1);
+        } else if (unwrap(source) instanceof IdentifierExpression identifier && alias(identifier) != null) {
+            generator.writeStringProperty("scope", name(identifier));
+        } else {
+            generator.writeName("source");
+            then(() -> writeUnconverted(source));
+        }
+        then(generator::writeEndObject);
+    }
+
+    private void writeFunction(FunctionInvocation function) {
+        var precision = AGE_PRECISIONS.get(function.identifier());
+        if (precision != null && function.paramList().isEmpty()) {
+            generator.writeStartObject();
+            generator.writeStringProperty("type", "CalculateAge");
+            generator.writeStringProperty("precision", precision);
+            generator.writeName("operand");
+            writeProperty(StandardIdentifierExpression.of("Patient"), new String[]{"birthDate", "value"}, 1);
+            then(generator::writeEndObject);
+        } else if (function.identifier().equals("ToDate") && function.paramList().size() == 1) {
+            writeUnary("ToDate", function.paramList().get(0));
+        } else {
+            generator.writeStartObject();
+            generator.writeStringProperty("type", "FunctionRef");
+            generator.writeStringProperty("name", function.identifier());
+            generator.writeArrayPropertyStart("operand");
+            for (var parameter : function.paramList()) {
+                thenWrite(parameter);
+            }
+            then(generator::writeEndArray);
+            then(generator::writeEndObject);
+        }
+    }
+
+    /**
+     * Writes {@code addition} as {@code Concatenate} if it adds strings and as balanced {@code Add} otherwise.
+     */
+    private void writeAddition(AdditionExpressionTerm addition) {
+        var operands = addition.expressions();
+        if (operands.stream().anyMatch(operand -> unwrap(operand) instanceof StringLiteralExpression)) {
+            writeOperands("Concatenate", operands);
+        } else {
+            writeBinary("Add", operands, 0, operands.size());
+        }
+    }
+
+    private void writeRetrieve(RetrieveExpression retrieve) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "Retrieve");
+        generator.writeStringProperty("dataType", FHIR + retrieve.resourceType());
+        FhirModelInfo.identifier(retrieve.resourceType())
+                .ifPresent(identifier -> generator.writeStringProperty("templateId", identifier));
+        Expression<?> terminology = null;
+        String codeProperty = null;
+        if (retrieve instanceof RetrieveExpression.WithPrimaryCodeFilter filter) {
+            terminology = filter.terminology();
+            codeProperty = FhirModelInfo.primaryCodePath(retrieve.resourceType()).orElse(null);
+        } else if (retrieve instanceof RetrieveExpression.WithSearchCodeFilter filter) {
+            terminology = filter.terminology();
+            codeProperty = filter.searchPath();
+        }
+        if (terminology != null) {
+            if (codeProperty != null) {
+                generator.writeStringProperty("codeProperty", codeProperty);
+            }
+            if (unwrap(terminology) instanceof CodeSelector code) {
+                generator.writeStringProperty("codeComparator", "~");
+                generator.writeObjectPropertyStart("codes");
+                generator.writeStringProperty("type", "ToList");
+                generator.writeName("operand");
+                writeCode(code);
+                generator.writeEndObject();
+            } else {
+                generator.writeStringProperty("codeComparator", "in");
+                generator.writeName("codes");
+                thenWrite(terminology);
+            }
+        }
+        then(generator::writeEndObject);
+    }
+
+    /**
+     * Writes {@code query} as {@code Query} or just its source if it consists of its source clause only, like it is
+     * printed.
+     */
+    private void writeQuery(QueryExpression query) {
+        var source = query.sourceClause().source();
+        if (query.isSourceOnly()) {
+            write(source.querySource());
+            return;
+        }
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "Query");
+        generator.writeArrayPropertyStart("source");
+        writeAliasedQuerySource(source);
+        then(() -> {
+            generator.writeEndArray();
+            aliases.add(alias(source));
+        });
+        if (!query.queryInclusionClauses().isEmpty()) {
+            then(() -> generator.writeArrayPropertyStart("relationship"));
+            for (var clause : query.queryInclusionClauses()) {
+                then(() -> writeWithClause((WithClause) clause));
+            }
+            then(generator::writeEndArray);
+        }
+        if (query.whereClause().expression() != Expression.TRUE) {
+            then(() -> generator.writeName("where"));
+            thenWrite(query.whereClause().expression());
+        }
+        if (query.returnClause() != null) {
+            then(() -> {
+                generator.writeObjectPropertyStart("return");
+                generator.writeName("expression");
+            });
+            then(() -> writeUnconverted(query.returnClause().expression()));
+            then(generator::writeEndObject);
+        }
+        then(() -> {
+            aliases.remove(aliases.size() - 1);
+            generator.writeEndObject();
+        });
+    }
+
+    private void writeAliasedQuerySource(AliasedQuerySource source) {
+        generator.writeStartObject();
+        generator.writeStringProperty("alias", name(source.alias()));
+        generator.writeName("expression");
+        then(() -> writeUnconverted(source.querySource()));
+        then(generator::writeEndObject);
+    }
+
+    private void writeWithClause(WithClause clause) {
+        generator.writeStartObject();
+        generator.writeStringProperty("type", "With");
+        generator.writeStringProperty("alias", name(clause.source().alias()));
+        generator.writeName("expression");
+        then(() -> writeUnconverted(clause.source().querySource()));
+        then(() -> {
+            aliases.add(alias(clause.source()));
+            generator.writeName("suchThat");
+        });
+        thenWrite(clause.expression());
+        then(() -> {
+            aliases.remove(aliases.size() - 1);
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Returns the alias of {@code source} with the type of the items of its source.
+     */
+    private Alias alias(AliasedQuerySource source) {
+        var type = type(source.querySource());
+        return new Alias(source.alias(), type == null ? null : new ElementType(type.types(), false));
+    }
+
+    /**
+     * Returns the innermost alias in scope named {@code identifier} or {@code null} if there is none.
+     */
+    private Alias alias(IdentifierExpression identifier) {
+        for (int i = aliases.size() - 1; i >= 0; i--) {
+            if (aliases.get(i).identifier().equals(identifier)) {
+                return aliases.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the FHIR type of {@code expression} or {@code null} if it isn't known.
+     * <p>
+     * Types are known for retrieves, for aliases and definitions of known type and for the properties of values of
+     * known type.
+     */
+    private ElementType type(Expression<?> expression) {
+        expression = unwrap(expression);
+        if (expression instanceof RetrieveExpression retrieve) {
+            return new ElementType(List.of(FHIR_NAMESPACE + retrieve.resourceType()), true);
+        }
+        if (expression instanceof QueryExpression query && query.isSourceOnly()) {
+            return type(query.sourceClause().source().querySource());
+        }
+        if (expression instanceof IdentifierExpression identifier) {
+            var alias = alias(identifier);
+            return alias == null ? definitionTypes.get(identifier) : alias.type();
+        }
+        if (expression instanceof InvocationExpression invocation) {
+            var type = type(invocation.expression());
+            for (var segment : invocation.invocation().split("\\.")) {
+                if (type == null || type.types().size() != 1 || !type.types().get(0).startsWith(FHIR_NAMESPACE)) {
+                    return null;
+                }
+                var list = type.list();
+                type = FhirModelInfo.elementType(type.types().get(0).substring(FHIR_NAMESPACE.length()), segment)
+                        .map(element -> new ElementType(element.types(), list || element.list()))
+                        .orElse(null);
+            }
+            return type;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the unquoted name of {@code identifier} including its suffix.
+     */
+    private String name(IdentifierExpression identifier) {
+        if (identifier instanceof SuffixedIdentifierExpression suffixed) {
+            var suffix = printContext.suffix(suffixed);
+            return suffix == 0 ? suffixed.prefix() : "%s %d".formatted(suffixed.prefix(), suffix);
+        }
+        return identifier.unquotedIdentifier();
+    }
+
+    /**
+     * An alias in scope.
+     *
+     * @param identifier the name of the alias
+     * @param type       the type of the alias or {@code null} if it isn't known
+     */
+    private record Alias(IdentifierExpression identifier, ElementType type) {
+    }
+
+    private static Expression<?> unwrap(Expression<?> expression) {
+        while (expression instanceof WrapperExpression wrapper) {
+            expression = wrapper.expression();
+        }
+        return expression;
+    }
+}
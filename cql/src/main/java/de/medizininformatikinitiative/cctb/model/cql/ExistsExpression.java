@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -20,12 +21,20 @@ public record ExistsExpression(Expression<?> expression) implements DefaultExpre
 
     @Override
     public String print(PrintContext printContext) {
-        return printContext.parenthesize(PRECEDENCE, "exists " + expression.print(printContext
-                .withPrecedence(PRECEDENCE)));
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new ExistsExpression(expression.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        printer.openParen(printContext, PRECEDENCE)
+                .append("exists ")
+                .print(expression, printContext.withPrecedence(PRECEDENCE))
+                .closeParen(printContext, PRECEDENCE);
+    }
+
+    @Override
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = mapper.apply(expression);
+        return mapped == expression ? this : new ExistsExpression(mapped);
     }
 }
@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 public interface Expression<T extends Expression<T>> {
 
@@ -19,15 +20,34 @@ public interface Expression<T extends Expression<T>> {
     String print(PrintContext printContext);
 
     /**
-     * Returns a map of identifier prefixes to numerical suffixes of this expression and all children.
+     * Prints this expression into {@code printer}.
+     * <p>
+     * Expressions with children should override this method and print their children directly into {@code printer}.
      *
-     * @return a map of identifier prefixes to numerical suffixes
+     * @param printContext the context to print with
+     * @param printer      the printer to print into
      */
-    default Map<String, Integer> suffixes() {
-        return Map.of();
+    default void print(PrintContext printContext, Printer printer) {
+        printer.append(print(printContext));
     }
 
-    T withIncrementedSuffixes(Map<String, Integer> increments);
+    /**
+     * Returns an expression of the same kind whose direct child expressions are replaced by the result of applying
+     * {@code mapper} to them.
+     * <p>
+     * Rewrites of the expression tree are built on this method. Expressions without children return themselves, and so
+     * do expressions whose children are all mapped to themselves, so rewrites only copy the paths to changed
+     * subtrees.
+     * The mapper has to return expressions that fit the place of the child, like a {@link DefaultExpression} for
+     * the operands of an {@link AndExpression}.
+     *
+     * @param mapper the function to apply to each direct child expression
+     * @return the expression with mapped children
+     */
+    @SuppressWarnings("unchecked")
+    default T mapChildren(UnaryOperator<Expression<?>> mapper) {
+        return (T) this;
+    }
 
     default boolean isIdentifier() {
         return false;
@@ -1,8 +1,7 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
-
-import java.util.Map;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -23,23 +22,17 @@ public record ExpressionDefinition(IdentifierExpression name, Expression<?> expr
 
     @Override
     public String print(PrintContext printContext) {
-        assert printContext.precedence() == 0;
-        var newPrintContext = printContext.increase();
-        return "define %s:\n%s%s".formatted(name.print(printContext), newPrintContext.getIndent(),
-                expression.print(newPrintContext));
-    }
-
-    /**
-     * Returns a map of the {@code name} identifier prefix to its numerical suffix if the name is suffixed.
-     *
-     * @return a map of identifier prefix to its numerical suffix
-     */
-    public Map<String, Integer> suffixes() {
-        return name.suffixes();
+        return Printer.printToString(this, printContext);
     }
 
-    public ExpressionDefinition withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new ExpressionDefinition(name.withIncrementedSuffixes(increments),
-                expression.withIncrementedSuffixes(increments));
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
+        assert printContext.precedence() == 0;
+        var newPrintContext = printContext.increase();
+        printer.append("define ")
+                .print(name, printContext)
+                .append(':')
+                .newline(newPrintContext)
+                .print(expression, newPrintContext);
     }
 }
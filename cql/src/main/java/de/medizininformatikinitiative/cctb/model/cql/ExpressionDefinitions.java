@@ -1,26 +1,213 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
-public interface ExpressionDefinitions {
+import static java.util.Objects.requireNonNull;
 
-    static List<ExpressionDefinition> appendByUniqueName(List<ExpressionDefinition> a, ExpressionDefinition b) {
-        if (a.stream().noneMatch(d -> d.name().equals(b.name()))) {
-            var newList = new ArrayList<>(a);
-            newList.add(b);
-            return List.copyOf(newList);
+/**
+ * An insertion-ordered collection of {@link ExpressionDefinition ExpressionDefinitions} with unique names.
+ * <p>
+ * The names are indexed in a persistent hash trie and the order is kept in a tree of concatenations, so collections
+ * derived from each other share their structure. {@link #appendByUniqueName(ExpressionDefinition) Appending} takes
+ * logarithmic time and a {@link #unionByName(ExpressionDefinitions) union} costs proportional to the smaller side,
+ * unless the smaller side comes first and shares names with the larger one. Only definitions with new names are
+ * appended, so every definition in the order has a distinct name.
+ * <p>
+ * Instances are immutable.
+ */
+public final class ExpressionDefinitions {
+
+    private static final ExpressionDefinitions EMPTY = new ExpressionDefinitions(HashTrieSet.of(), null);
+
+    private final HashTrieSet<IdentifierExpression> names;
+    private final Rope order;
+
+    private ExpressionDefinitions(HashTrieSet<IdentifierExpression> names, Rope order) {
+        this.names = names;
+        this.order = order;
+    }
+
+    /**
+     * Returns the empty collection.
+     *
+     * @return the empty collection
+     */
+    public static ExpressionDefinitions of() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a collection holding {@code definitions} of which only the first definition of each name is kept.
+     *
+     * @param definitions the definitions to hold
+     * @return a collection holding {@code definitions}
+     */
+    public static ExpressionDefinitions of(List<ExpressionDefinition> definitions) {
+        var result = EMPTY;
+        for (var definition : definitions) {
+            result = result.appendByUniqueName(definition);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of definitions.
+     *
+     * @return the number of definitions
+     */
+    public int size() {
+        return names.size();
+    }
+
+    public boolean isEmpty() {
+        return order == null;
+    }
+
+    /**
+     * Returns {@code true} iff this collection contains a definition with {@code name}.
+     *
+     * @param name the name to look for
+     * @return {@code true} iff a definition with {@code name} exists
+     */
+    public boolean containsName(IdentifierExpression name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Appends {@code definition} if there is no definition with the same name already.
+     *
+     * @param definition the definition to append
+     * @return a collection containing {@code definition} or this collection if the name is already taken
+     */
+    public ExpressionDefinitions appendByUniqueName(ExpressionDefinition definition) {
+        var newNames = names.add(definition.name());
+        return newNames == names ? this : new ExpressionDefinitions(newNames, Rope.concat(order, new Leaf(definition)));
+    }
+
+    /**
+     * Returns the union of this and {@code other} where the definitions of this collection come first and
+     * definitions of {@code other} are dropped if a definition with the same name exists in this collection.
+     *
+     * @param other the definitions to append
+     * @return the union of both collections
+     */
+    public ExpressionDefinitions unionByName(ExpressionDefinitions other) {
+        requireNonNull(other);
+        if (other.isEmpty()) return this;
+        if (isEmpty()) return other;
+
+        if (size() >= other.size()) {
+            var newNames = names;
+            Rope appended = null;
+            for (var definitions = new RopeIterator(other.order); definitions.hasNext(); ) {
+                var definition = definitions.next();
+                var added = newNames.add(definition.name());
+                if (added != newNames) {
+                    newNames = added;
+                    appended = Rope.concat(appended, new Leaf(definition));
+                }
+            }
+            if (appended == null) {
+                return this;
+            }
+            // keep sharing the order of other if none of its definitions was dropped
+            var tail = appended.leafCount() == other.size() ? other.order : appended;
+            return new ExpressionDefinitions(newNames, Rope.concat(order, tail));
+        }
+        var newNames = other.names;
+        var shared = false;
+        for (var definitions = new RopeIterator(order); definitions.hasNext(); ) {
+            var added = newNames.add(definitions.next().name());
+            shared |= added == newNames;
+            newNames = added;
+        }
+        if (!shared) {
+            return new ExpressionDefinitions(newNames, Rope.concat(order, other.order));
+        }
+        // the larger side has to be copied without the definitions this collection already has
+        Rope appended = null;
+        for (var definitions = new RopeIterator(other.order); definitions.hasNext(); ) {
+            var definition = definitions.next();
+            if (!names.contains(definition.name())) {
+                appended = Rope.concat(appended, new Leaf(definition));
+            }
         }
-        return a;
+        return new ExpressionDefinitions(newNames, Rope.concat(order, appended));
     }
 
-    static List<ExpressionDefinition> unionByName(List<ExpressionDefinition> a, List<ExpressionDefinition> b) {
-        var newList = new ArrayList<>(a);
-        for (var def : b) {
-            if (newList.stream().noneMatch(d -> d.name().equals(def.name()))) {
-                newList.add(def);
+    /**
+     * Returns the definitions in insertion order.
+     *
+     * @return an immutable list of the definitions
+     */
+    public List<ExpressionDefinition> toList() {
+        if (order == null) {
+            return List.of();
+        }
+        var list = new ArrayList<ExpressionDefinition>(size());
+        for (var definitions = new RopeIterator(order); definitions.hasNext(); ) {
+            list.add(definitions.next());
+        }
+        return List.copyOf(list);
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    private sealed interface Rope permits Leaf, Concat {
+
+        int leafCount();
+
+        static Rope concat(Rope left, Rope right) {
+            return left == null ? right : right == null ? left : new Concat(left, right, left.leafCount() + right.leafCount());
+        }
+    }
+
+    private record Leaf(ExpressionDefinition definition) implements Rope {
+
+        @Override
+        public int leafCount() {
+            return 1;
+        }
+    }
+
+    private record Concat(Rope left, Rope right, int leafCount) implements Rope {
+    }
+
+    /**
+     * Iterates the definitions of a rope in order using an explicit stack, because ropes built by repeated appending
+     * are as deep as they are long.
+     */
+    private static final class RopeIterator implements Iterator<ExpressionDefinition> {
+
+        private final ArrayDeque<Rope> stack = new ArrayDeque<>();
+
+        private RopeIterator(Rope rope) {
+            stack.push(rope);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public ExpressionDefinition next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            var node = stack.pop();
+            while (node instanceof Concat concat) {
+                stack.push(concat.right);
+                node = concat.left;
             }
+            return ((Leaf) node).definition;
         }
-        return List.copyOf(newList);
     }
 }
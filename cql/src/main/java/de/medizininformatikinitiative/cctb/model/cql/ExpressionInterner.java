@@ -0,0 +1,141 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A hash-consing factory for expressions.
+ * <p>
+ * Interning an expression interns its children first and then returns the canonical instance of the expression with
+ * interned children. So all structurally equal subtrees of the expressions interned by one interner are the same
+ * instance, and a library holds each distinct retrieve, code and invocation only once, no matter how many criteria
+ * produce it.
+ * <p>
+ * The table is keyed by the class of an expression and the identities of its already canonical children, so looking
+ * up an expression hashes only its own node instead of its whole subtree, and comparing it stops at the identity checks
+ * of its children. Interning takes time proportional to the number of expressions, whatever the depth of the tree.
+ * <p>
+ * Expressions that are already canonical aren't visited again, so interning subtrees that are shared by several
+ * expressions costs only one visit.
+ * <p>
+ * An interner is meant to be used for one library and discarded afterwards, so its table doesn't outlive the
+ * expressions. Instances are not thread-safe.
+ */
+public final class ExpressionInterner {
+
+    private final Map<Key, Expression<?>> canonical = new HashMap<>();
+    private final Map<Expression<?>, Expression<?>> interned = new IdentityHashMap<>();
+
+    private ExpressionInterner() {
+    }
+
+    /**
+     * Returns a new interner with an empty table.
+     *
+     * @return a new interner
+     */
+    public static ExpressionInterner of() {
+        return new ExpressionInterner();
+    }
+
+    /**
+     * Returns the canonical instance of {@code expression}.
+     *
+     * @param expression the expression to intern
+     * @param <E>        the type of the expression
+     * @return the canonical instance, which is equal to {@code expression}
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends Expression<?>> E intern(E expression) {
+        var result = interned.get(requireNonNull(expression));
+        if (result == null) {
+            result = Traversal.rewrite(expression, interned::get, this::canonicalize);
+            interned.put(expression, result);
+        }
+        return (E) result;
+    }
+
+    /**
+     * Returns the canonical instance of {@code expression} whose children are already canonical.
+     */
+    private Expression<?> canonicalize(Expression<?> expression) {
+        var result = canonical.putIfAbsent(new Key(expression), expression);
+        if (result == null) {
+            result = expression;
+        }
+        interned.put(result, result);
+        return result;
+    }
+
+    /**
+     * Returns {@code definition} with its expression {@link #intern(Expression) interned}.
+     *
+     * @param definition the definition whose expression to intern
+     * @return the definition with canonical expression
+     */
+    public ExpressionDefinition intern(ExpressionDefinition definition) {
+        var expression = intern(definition.expression());
+        return expression == definition.expression() ? definition : ExpressionDefinition.of(definition.name(), expression);
+    }
+
+    /**
+     * Returns the number of distinct expressions interned so far.
+     *
+     * @return the number of canonical expressions
+     */
+    public int size() {
+        return canonical.size();
+    }
+
+    /**
+     * The key of an expression whose children are canonical.
+     * <p>
+     * Expressions without children are hashed as a whole. Other expressions are hashed by their class and the identity
+     * hashes of their children. Two such expressions are equal only if their children are the same instances, in which
+     * case the {@code equals} of the records stops at the identity checks of the children.
+     */
+    private static final class Key {
+
+        private final Expression<?> expression;
+        private final List<Expression<?>> children;
+        private final int hash;
+
+        private Key(Expression<?> expression) {
+            this.expression = expression;
+            this.children = Traversal.children(expression);
+            if (children.isEmpty()) {
+                hash = expression.hashCode();
+            } else {
+                var h = expression.getClass().hashCode();
+                for (var child : children) {
+                    h = 31 * h + System.identityHashCode(child);
+                }
+                hash = h;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key that) || hash != that.hash || expression.getClass() != that.expression.getClass() ||
+                    children.size() != that.children.size()) {
+                return false;
+            }
+            for (int i = 0; i < children.size(); i++) {
+                if (children.get(i) != that.children.get(i)) {
+                    return false;
+                }
+            }
+            return expression.equals(that.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -22,13 +22,25 @@ public record FunctionInvocation(String identifier, List<DefaultExpression> para
 
     @Override
     public String print(PrintContext printContext) {
-        printContext.resetPrecedence();
-        return "%s(%s)".formatted(identifier, paramList.stream().map(printContext::print)
-                .collect(Collectors.joining(", ")));
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public FunctionInvocation withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new FunctionInvocation(identifier, paramList.stream().map(e -> e.withIncrementedSuffixes(increments)).toList());
+    public void print(PrintContext printContext, Printer printer) {
+        var paramPrintContext = printContext.resetPrecedence();
+        printer.append(identifier).append('(');
+        for (int i = 0; i < paramList.size(); i++) {
+            if (i > 0) {
+                printer.append(", ");
+            }
+            printer.print(paramList.get(i), paramPrintContext);
+        }
+        printer.append(')');
+    }
+
+    @Override
+    public FunctionInvocation mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = Children.map(paramList, mapper);
+        return mapped == paramList ? this : new FunctionInvocation(identifier, mapped);
     }
 }
@@ -0,0 +1,148 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A persistent set based on a hash array mapped trie.
+ * <p>
+ * Adding an element copies only the path from the root to the changed node, so sets derived from each other share
+ * most of their structure. Lookups and additions take at most seven steps.
+ * <p>
+ * Instances are immutable.
+ *
+ * @param <E> the type of the elements
+ */
+final class HashTrieSet<E> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final HashTrieSet<?> EMPTY = new HashTrieSet<>(BitmapNode.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private HashTrieSet(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static <E> HashTrieSet<E> of() {
+        @SuppressWarnings("unchecked")
+        HashTrieSet<E> empty = (HashTrieSet<E>) EMPTY;
+        return empty;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(E element) {
+        return root.contains(element, element.hashCode(), 0);
+    }
+
+    /**
+     * Returns a set containing all elements of this set and {@code element}.
+     *
+     * @param element the element to add
+     * @return this set if it already contains {@code element}, a new set otherwise
+     * @throws NullPointerException if {@code element} is null
+     */
+    HashTrieSet<E> add(E element) {
+        var newRoot = root.add(requireNonNull(element), element.hashCode(), 0);
+        return newRoot == root ? this : new HashTrieSet<>(newRoot, size + 1);
+    }
+
+    private sealed interface Node permits BitmapNode, CollisionNode {
+
+        boolean contains(Object element, int hash, int shift);
+
+        Node add(Object element, int hash, int shift);
+    }
+
+    /**
+     * A node holding up to 32 entries, which are either elements or sub nodes, indexed by five bits of the hash.
+     */
+    private record BitmapNode(int bitmap, Object[] entries) implements Node {
+
+        private static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public boolean contains(Object element, int hash, int shift) {
+            var bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return false;
+            }
+            var entry = entries[index(bit)];
+            return entry instanceof Node node ? node.contains(element, hash, shift + BITS) : entry.equals(element);
+        }
+
+        @Override
+        public Node add(Object element, int hash, int shift) {
+            var bit = bit(hash, shift);
+            var index = index(bit);
+            if ((bitmap & bit) == 0) {
+                var newEntries = new Object[entries.length + 1];
+                System.arraycopy(entries, 0, newEntries, 0, index);
+                newEntries[index] = element;
+                System.arraycopy(entries, index, newEntries, index + 1, entries.length - index);
+                return new BitmapNode(bitmap | bit, newEntries);
+            }
+            var entry = entries[index];
+            if (entry instanceof Node node) {
+                var newNode = node.add(element, hash, shift + BITS);
+                return newNode == node ? this : withEntry(index, newNode);
+            }
+            if (entry.equals(element)) {
+                return this;
+            }
+            return withEntry(index, split(entry, entry.hashCode(), element, hash, shift + BITS));
+        }
+
+        private BitmapNode withEntry(int index, Object entry) {
+            var newEntries = entries.clone();
+            newEntries[index] = entry;
+            return new BitmapNode(bitmap, newEntries);
+        }
+
+        private static Node split(Object a, int aHash, Object b, int bHash, int shift) {
+            return aHash == bHash
+                    ? new CollisionNode(aHash, new Object[]{a, b})
+                    : EMPTY.add(a, aHash, shift).add(b, bHash, shift);
+        }
+    }
+
+    /**
+     * A node holding elements with identical hashes.
+     */
+    private record CollisionNode(int hash, Object[] elements) implements Node {
+
+        @Override
+        public boolean contains(Object element, int hash, int shift) {
+            return this.hash == hash && Arrays.asList(elements).contains(element);
+        }
+
+        @Override
+        public Node add(Object element, int hash, int shift) {
+            if (this.hash != hash) {
+                return new BitmapNode(BitmapNode.bit(this.hash, shift), new Object[]{this}).add(element, hash, shift);
+            }
+            if (contains(element, hash, shift)) {
+                return this;
+            }
+            var newElements = Arrays.copyOf(elements, elements.length + 1);
+            newElements[elements.length] = element;
+            return new CollisionNode(hash, newElements);
+        }
+    }
+}
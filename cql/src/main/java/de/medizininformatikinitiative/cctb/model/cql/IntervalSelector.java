@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -19,12 +20,24 @@ public record IntervalSelector(Expression<?> intervalStart, Expression<?> interv
 
     @Override
     public String print(PrintContext printContext) {
-        return "Interval[%s, %s]".formatted(intervalStart.print(printContext), intervalEnd.print(printContext));
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new IntervalSelector(intervalStart.withIncrementedSuffixes(increments),
-                intervalEnd.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        printer.append("Interval[")
+                .print(intervalStart, printContext)
+                .append(", ")
+                .print(intervalEnd, printContext)
+                .append(']');
+    }
+
+    @Override
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mappedStart = mapper.apply(intervalStart);
+        var mappedEnd = mapper.apply(intervalEnd);
+        return mappedStart == intervalStart && mappedEnd == intervalEnd
+                ? this
+                : new IntervalSelector(mappedStart, mappedEnd);
     }
 }
@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -22,11 +23,17 @@ public record InvocationExpression(Expression<?> expression, String invocation)
 
     @Override
     public String print(PrintContext printContext) {
-        return "%s.%s".formatted(expression.print(printContext), invocation);
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new InvocationExpression(expression.withIncrementedSuffixes(suffixes()), invocation);
+    public void print(PrintContext printContext, Printer printer) {
+        printer.print(expression, printContext).append('.').append(invocation);
+    }
+
+    @Override
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = mapper.apply(expression);
+        return mapped == expression ? this : new InvocationExpression(mapped, invocation);
     }
 }
@@ -1,11 +1,10 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import java.util.List;
-import java.util.Map;
-
-import static java.util.stream.Collectors.joining;
+import java.util.function.UnaryOperator;
 
 public record ListSelector(List<? extends DefaultExpression> items) implements ExpressionTerm<ListSelector> {
 
@@ -19,11 +18,24 @@ public record ListSelector(List<? extends DefaultExpression> items) implements E
 
     @Override
     public String print(PrintContext printContext) {
-        return "{ %s }".formatted(items.stream().map(printContext::print).collect(joining(", ")));
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
+        printer.append("{ ");
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                printer.append(", ");
+            }
+            printer.print(items.get(i), printContext);
+        }
+        printer.append(" }");
     }
 
     @Override
-    public ListSelector withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new ListSelector(items.stream().map(e -> e.withIncrementedSuffixes(increments)).toList());
+    public ListSelector mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = Children.map(items, mapper);
+        return mapped == items ? this : new ListSelector(mapped);
     }
 }
@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -25,14 +26,23 @@ public record MembershipExpression(Expression<?> a, String op, Expression<?> b)
 
     @Override
     public String print(PrintContext printContext) {
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
         var childPrintContext = printContext.withPrecedence(PRECEDENCE);
-        return printContext.parenthesize(PRECEDENCE, "%s %s %s".formatted(a.print(childPrintContext), op,
-                b.print(childPrintContext)));
+        printer.openParen(printContext, PRECEDENCE)
+                .print(a, childPrintContext)
+                .append(' ').append(op).append(' ')
+                .print(b, childPrintContext)
+                .closeParen(printContext, PRECEDENCE);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new MembershipExpression(a.withIncrementedSuffixes(increments), op,
-                b.withIncrementedSuffixes(increments));
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mappedA = mapper.apply(a);
+        var mappedB = mapper.apply(b);
+        return mappedA == a && mappedB == b ? this : new MembershipExpression(mappedA, op, mappedB);
     }
 }
@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -22,14 +23,25 @@ public record OverlapsIntervalOperatorPhrase(Expression<?> leftInterval, Express
 
     @Override
     public String print(PrintContext printContext) {
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
         var operatorPrintContext = printContext.withPrecedence(PRECEDENCE);
-        return printContext.parenthesize(PRECEDENCE, "%s overlaps %s".formatted(leftInterval.print(operatorPrintContext),
-                rightInterval.print(operatorPrintContext)));
+        printer.openParen(printContext, PRECEDENCE)
+                .print(leftInterval, operatorPrintContext)
+                .append(" overlaps ")
+                .print(rightInterval, operatorPrintContext)
+                .closeParen(printContext, PRECEDENCE);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new OverlapsIntervalOperatorPhrase(leftInterval.withIncrementedSuffixes(increments),
-                rightInterval.withIncrementedSuffixes(increments));
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mappedLeft = mapper.apply(leftInterval);
+        var mappedRight = mapper.apply(rightInterval);
+        return mappedLeft == leftInterval && mappedRight == rightInterval
+                ? this
+                : new OverlapsIntervalOperatorPhrase(mappedLeft, mappedRight);
     }
 }
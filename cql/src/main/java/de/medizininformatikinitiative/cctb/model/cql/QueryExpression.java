@@ -1,15 +1,16 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 
 public record QueryExpression(SourceClause sourceClause, List<QueryInclusionClause> queryInclusionClauses,
                               WhereClause whereClause,
@@ -47,21 +48,88 @@ public record QueryExpression(SourceClause sourceClause, List<QueryInclusionClau
         return sourceClause.source().alias();
     }
 
+    /**
+     * Maps the query sources, the {@code such that} expressions of with clauses and the where and return expressions.
+     * Clauses whose expressions are all mapped to themselves are kept.
+     */
+    @Override
+    public QueryExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var source = mapSource(sourceClause.source(), mapper);
+        var clauses = mapClauses(queryInclusionClauses, mapper);
+        var where = mapper.apply(whereClause.expression());
+        var returnExpression = returnClause == null ? null : mapper.apply(returnClause.expression());
+        if (source == sourceClause.source() && clauses == queryInclusionClauses && where == whereClause.expression() &&
+                (returnClause == null || returnExpression == returnClause.expression())) {
+            return this;
+        }
+        return new QueryExpression(source == sourceClause.source() ? sourceClause : SourceClause.of(source), clauses,
+                where == whereClause.expression() ? whereClause : WhereClause.of((DefaultExpression) where),
+                returnClause == null || returnExpression == returnClause.expression()
+                        ? returnClause
+                        : ReturnClause.of(returnExpression));
+    }
+
+    private static AliasedQuerySource mapSource(AliasedQuerySource source, UnaryOperator<Expression<?>> mapper) {
+        var querySource = mapper.apply(source.querySource());
+        return querySource == source.querySource() ? source : AliasedQuerySource.of(querySource, source.alias());
+    }
+
+    private static List<QueryInclusionClause> mapClauses(List<QueryInclusionClause> clauses,
+                                                         UnaryOperator<Expression<?>> mapper) {
+        List<QueryInclusionClause> result = null;
+        for (int i = 0; i < clauses.size(); i++) {
+            var clause = clauses.get(i);
+            var mapped = mapClause(clause, mapper);
+            if (result == null && mapped != clause) {
+                result = new ArrayList<>(clauses.subList(0, i));
+            }
+            if (result != null) {
+                result.add(mapped);
+            }
+        }
+        return result == null ? clauses : result;
+    }
+
+    private static QueryInclusionClause mapClause(QueryInclusionClause clause, UnaryOperator<Expression<?>> mapper) {
+        if (clause instanceof WithClause withClause) {
+            var source = mapSource(withClause.source(), mapper);
+            var expression = mapper.apply(withClause.expression());
+            return source == withClause.source() && expression == withClause.expression()
+                    ? clause
+                    : WithClause.of(source, expression);
+        }
+        throw new IllegalArgumentException("Unsupported query inclusion clause `%s`."
+                .formatted(clause.getClass().getSimpleName()));
+    }
+
     @Override
     public String print(PrintContext printContext) {
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
         var clauses = clauses();
         var context = printContext.increase().resetPrecedence();
-        return clauses.size() == 1
-                ? sourceClause.source().querySource().print(context)
-                : printContext.parenthesizeZero(clauses.stream().map(context::print).collect(joining("\n" + context.getIndent())));
+        if (clauses.size() == 1) {
+            printer.print(sourceClause.source().querySource(), context);
+        } else {
+            printer.openParen(printContext, 0);
+            for (int i = 0; i < clauses.size(); i++) {
+                if (i > 0) {
+                    printer.newline(context);
+                }
+                printer.print(clauses.get(i), context);
+            }
+            printer.closeParen(printContext, 0);
+        }
     }
 
-    @Override
-    public QueryExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new QueryExpression(sourceClause.withIncrementedSuffixes(increments),
-                queryInclusionClauses.stream().map(e -> e.withIncrementedSuffixes(increments)).toList(),
-                whereClause.withIncrementedSuffixes(increments),
-                returnClause == null ? null : returnClause.withIncrementedSuffixes(increments));
+    /**
+     * Returns {@code true} iff this query consists of its source clause only and so just returns its source.
+     */
+    boolean isSourceOnly() {
+        return queryInclusionClauses.isEmpty() && whereClause.expression() == Expression.TRUE && returnClause == null;
     }
 
     private List<Clause> clauses() {
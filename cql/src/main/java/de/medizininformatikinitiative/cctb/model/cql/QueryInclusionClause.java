@@ -1,9 +1,4 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
-import java.util.Map;
-
 public interface QueryInclusionClause extends Clause {
-
-    @Override
-    QueryInclusionClause withIncrementedSuffixes(Map<String, Integer> increments);
 }
@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -26,20 +27,12 @@ public sealed interface RetrieveExpression extends Expression<RetrieveExpression
 
     String resourceType();
 
-    @Override
-    RetrieveExpression withIncrementedSuffixes(Map<String, Integer> increments);
-
     record Unfiltered(String resourceType) implements RetrieveExpression{
 
         public Unfiltered {
             requireNonNull(resourceType);
         }
 
-        @Override
-        public Unfiltered withIncrementedSuffixes(Map<String, Integer> increments) {
-            return this;
-        }
-
         @Override
         public String print(PrintContext printContext) {
             return "[%s]".formatted(resourceType);
@@ -54,13 +47,21 @@ public sealed interface RetrieveExpression extends Expression<RetrieveExpression
         }
 
         @Override
-        public WithPrimaryCodeFilter withIncrementedSuffixes(Map<String, Integer> increments) {
-            return new WithPrimaryCodeFilter(resourceType, terminology.withIncrementedSuffixes(increments));
+        public String print(PrintContext printContext) {
+            return Printer.printToString(this, printContext);
         }
 
         @Override
-        public String print(PrintContext printContext) {
-            return "[%s: %s]".formatted(resourceType, terminology.print(printContext.resetPrecedence()));
+        public void print(PrintContext printContext, Printer printer) {
+            printer.append('[').append(resourceType).append(": ")
+                    .print(terminology, printContext.resetPrecedence())
+                    .append(']');
+        }
+
+        @Override
+        public RetrieveExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+            var mapped = mapper.apply(terminology);
+            return mapped == terminology ? this : new WithPrimaryCodeFilter(resourceType, mapped);
         }
     }
 
@@ -73,13 +74,23 @@ public sealed interface RetrieveExpression extends Expression<RetrieveExpression
         }
 
         @Override
-        public WithSearchCodeFilter withIncrementedSuffixes(Map<String, Integer> increments) {
-            return new WithSearchCodeFilter(resourceType, terminology.withIncrementedSuffixes(increments), searchPath);
+        public String print(PrintContext printContext) {
+            return Printer.printToString(this, printContext);
         }
 
         @Override
-        public String print(PrintContext printContext) {
-            return "[%s: %s ~ %s]".formatted(resourceType, searchPath, terminology.print(printContext.resetPrecedence()));
+        public void print(PrintContext printContext, Printer printer) {
+            // a list of codes matches any of its codes
+            printer.append('[').append(resourceType).append(": ").append(searchPath)
+                    .append(terminology instanceof ListSelector ? " in " : " ~ ")
+                    .print(terminology, printContext.resetPrecedence())
+                    .append(']');
+        }
+
+        @Override
+        public RetrieveExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+            var mapped = mapper.apply(terminology);
+            return mapped == terminology ? this : new WithSearchCodeFilter(resourceType, mapped, searchPath);
         }
     }
 }
@@ -1,8 +1,7 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
-
-import java.util.Map;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -18,12 +17,12 @@ public record ReturnClause(Expression<?> expression) implements Clause {
 
     @Override
     public String print(PrintContext printContext) {
-        assert printContext.precedence() == 0;
-        return "return " + expression.print(printContext.resetPrecedence().increase());
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public ReturnClause withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new ReturnClause(expression.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        assert printContext.precedence() == 0;
+        printer.append("return ").print(expression, printContext.resetPrecedence().increase());
     }
 }
@@ -1,8 +1,7 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
-
-import java.util.Map;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -18,12 +17,12 @@ public record SourceClause(AliasedQuerySource source) implements Clause {
 
     @Override
     public String print(PrintContext printContext) {
-        assert printContext.precedence() == 0;
-        return "from %s".formatted(source.print(printContext.increase()));
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public SourceClause withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new SourceClause(source.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        assert printContext.precedence() == 0;
+        source.print(printContext.increase(), printer.append("from "));
     }
 }
@@ -2,8 +2,6 @@ package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
 
-import java.util.Map;
-
 import static java.util.Objects.requireNonNull;
 
 public record StandardIdentifierExpression(String identifier) implements IdentifierExpression {
@@ -21,11 +19,6 @@ public record StandardIdentifierExpression(String identifier) implements Identif
         return SAFE_CHARS_PATTERN.matcher(identifier).matches() ? identifier : "\"%s\"".formatted(identifier);
     }
 
-    @Override
-    public IdentifierExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return this;
-    }
-
     @Override
     public String unquotedIdentifier() {
         return identifier;
@@ -1,6 +1,7 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
 /**
  * @author Alexander Kiel
@@ -8,4 +9,6 @@ import de.medizininformatikinitiative.cctb.PrintContext;
 public interface Statement {
 
     String print(PrintContext printContext);
+
+    void print(PrintContext printContext, Printer printer);
 }
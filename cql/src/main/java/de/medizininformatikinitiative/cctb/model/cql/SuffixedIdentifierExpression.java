@@ -2,52 +2,56 @@ package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
 
-import java.util.Map;
-
 import static java.util.Objects.requireNonNull;
 
 /**
- * An {@link IdentifierExpression} that consists of a prefix and numerical suffix rather than a simple string.
+ * An {@link IdentifierExpression} that consists of a prefix and a numerical suffix rather than a simple string.
  * <p>
  * Both prefix and the suffix together form the actual name of the identifier. In case the suffix is zero, the name
  * consists only of the prefix. Otherwise both are separated by a space.
  * <p>
- * The idea is to use that identifiers to ensure identifiers are unique in a library. In case to libraries are merged,
- * the numerical suffix will be incremented using {@link #withIncrementedSuffixes(Map)} in one of the libraries if both
- * contain identifiers with identical prefix.
- *
- * @param prefix the prefix of the name
- * @param suffix the numerical suffix of the name
+ * The idea is to use that identifiers to ensure identifiers are unique in a library. Instead of renaming identifiers
+ * every time two libraries are merged, each instance is a distinct symbol, compared by identity, and the suffix is
+ * only resolved once by the {@link Container} that is printed. The suffix is taken from the {@link PrintContext} and is
+ * zero if the {@code PrintContext} doesn't know this identifier.
  */
-public record SuffixedIdentifierExpression(String prefix, int suffix) implements IdentifierExpression {
+public final class SuffixedIdentifierExpression implements IdentifierExpression {
+
+    private final String prefix;
 
-    public SuffixedIdentifierExpression {
-        requireNonNull(prefix);
+    private SuffixedIdentifierExpression(String prefix) {
+        this.prefix = requireNonNull(prefix);
     }
 
-    public static SuffixedIdentifierExpression of(String prefix, int suffix) {
-        return new SuffixedIdentifierExpression(prefix, suffix);
+    /**
+     * Returns a new, distinct identifier with {@code prefix}.
+     *
+     * @param prefix the prefix of the name
+     * @return a new identifier that is only equal to itself
+     */
+    public static SuffixedIdentifierExpression of(String prefix) {
+        return new SuffixedIdentifierExpression(prefix);
+    }
+
+    public String prefix() {
+        return prefix;
     }
 
     @Override
     public String print(PrintContext printContext) {
+        var suffix = printContext.suffix(this);
         return suffix == 0
                 ? SAFE_CHARS_PATTERN.matcher(prefix).matches() ? prefix : "\"%s\"".formatted(prefix)
                 : "\"%s %d\"".formatted(prefix, suffix);
     }
 
     @Override
-    public IdentifierExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new SuffixedIdentifierExpression(prefix, suffix + increments.getOrDefault(prefix, 0));
-    }
-
-    @Override
-    public Map<String, Integer> suffixes() {
-        return Map.of(prefix, suffix);
+    public String unquotedIdentifier() {
+        return prefix;
     }
 
     @Override
-    public String unquotedIdentifier() {
-        return "%s %d".formatted(prefix, suffix);
+    public String toString() {
+        return "SuffixedIdentifierExpression[prefix=%s]".formatted(prefix);
     }
 }
@@ -0,0 +1,110 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Traversals of expression trees that keep their state on an explicit stack instead of the call stack, so trees of any
+ * depth can be visited and rewritten.
+ * <p>
+ * Children are enumerated with {@link Expression#mapChildren(UnaryOperator) mapChildren}, so every expression that
+ * supports rewriting is traversed.
+ */
+final class Traversal {
+
+    private Traversal() {
+    }
+
+    /**
+     * Returns the direct children of {@code expression} in the order {@code mapChildren} visits them.
+     */
+    static List<Expression<?>> children(Expression<?> expression) {
+        var children = new ArrayList<Expression<?>>();
+        expression.mapChildren(child -> {
+            children.add(child);
+            return child;
+        });
+        return children;
+    }
+
+    /**
+     * Visits {@code root} and its descendants in pre-order. The children of an expression are visited only if
+     * {@code visitor} returns {@code true} for it.
+     */
+    static void forEach(Expression<?> root, Predicate<Expression<?>> visitor) {
+        var stack = new ArrayDeque<Expression<?>>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            var expression = stack.pop();
+            if (visitor.test(expression)) {
+                var children = children(expression);
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrites {@code root} bottom-up.
+     * <p>
+     * Each expression is first passed to {@code pre}. If it returns an expression, that expression replaces the
+     * expression and its children aren't visited. Otherwise the children are rewritten and the expression with the
+     * rewritten children is passed to {@code post}, whose result replaces the expression.
+     *
+     * @param root the expression to rewrite
+     * @param pre  returns the replacement of an expression that shouldn't be descended into or {@code null}
+     * @param post rewrites an expression whose children are already rewritten
+     * @return the rewritten expression
+     */
+    static Expression<?> rewrite(Expression<?> root, UnaryOperator<Expression<?>> pre,
+                                 UnaryOperator<Expression<?>> post) {
+        var stack = new ArrayDeque<Frame>();
+        stack.push(new Frame(root));
+        Expression<?> result = null;
+        while (!stack.isEmpty()) {
+            var frame = stack.peek();
+            Expression<?> rewritten = null;
+            if (frame.children == null) {
+                rewritten = pre.apply(frame.expression);
+                if (rewritten == null) {
+                    frame.children = children(frame.expression);
+                    frame.rewrittenChildren = new ArrayList<>(frame.children.size());
+                }
+            }
+            if (rewritten == null) {
+                if (frame.next < frame.children.size()) {
+                    stack.push(new Frame(frame.children.get(frame.next++)));
+                    continue;
+                }
+                var rewrittenChildren = frame.rewrittenChildren.iterator();
+                rewritten = post.apply(frame.expression.mapChildren(child -> rewrittenChildren.next()));
+            }
+            stack.pop();
+            if (stack.isEmpty()) {
+                result = rewritten;
+            } else {
+                stack.peek().rewrittenChildren.add(rewritten);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An expression whose children are being rewritten.
+     */
+    private static final class Frame {
+
+        private final Expression<?> expression;
+        private List<Expression<?>> children;
+        private List<Expression<?>> rewrittenChildren;
+        private int next;
+
+        private Frame(Expression<?> expression) {
+            this.expression = expression;
+        }
+    }
+}
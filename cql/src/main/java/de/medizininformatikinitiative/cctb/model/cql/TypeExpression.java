@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -21,12 +22,20 @@ public record TypeExpression(Expression<?> expression, String typeSpecifier) imp
 
     @Override
     public String print(PrintContext printContext) {
-        return printContext.parenthesize(PRECEDENCE, "%s as %s".formatted(expression.print(printContext
-                .withPrecedence(PRECEDENCE)), typeSpecifier));
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new TypeExpression(expression.withIncrementedSuffixes(increments), typeSpecifier);
+    public void print(PrintContext printContext, Printer printer) {
+        printer.openParen(printContext, PRECEDENCE)
+                .print(expression, printContext.withPrecedence(PRECEDENCE))
+                .append(" as ").append(typeSpecifier)
+                .closeParen(printContext, PRECEDENCE);
+    }
+
+    @Override
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = mapper.apply(expression);
+        return mapped == expression ? this : new TypeExpression(mapped, typeSpecifier);
     }
 }
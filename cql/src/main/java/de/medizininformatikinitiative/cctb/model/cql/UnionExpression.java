@@ -1,13 +1,12 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import java.util.List;
-import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.joining;
-
 /**
  * Expression1 UNION Expression2 UNION Expression ... UNION ExpressionN
  */
@@ -22,21 +21,47 @@ public record UnionExpression(List<DefaultExpression> expressions) implements De
     public static <T extends Expression<T>, U extends Expression<U>> UnionExpression of(Expression<T> e1, Expression<U> e2) {
         if (e1 instanceof UnionExpression) {
             return new UnionExpression(Stream.concat(((UnionExpression) e1).expressions.stream(),
-                    Stream.of(new WrapperExpression(e2))).toList());
+                    Stream.of(WrapperExpression.of(e2))).toList());
         } else {
-            return new UnionExpression(List.of(new WrapperExpression(e1), new WrapperExpression(e2)));
+            return new UnionExpression(List.of(WrapperExpression.of(e1), WrapperExpression.of(e2)));
+        }
+    }
+
+    /**
+     * Returns the union of all {@code expressions} in one pass, the first one if there is only one.
+     */
+    public static DefaultExpression of(List<? extends DefaultExpression> expressions) {
+        if (expressions.isEmpty()) {
+            throw new IllegalArgumentException("expected at least one expression");
+        }
+        if (expressions.size() == 1) {
+            return expressions.get(0);
         }
+        return new UnionExpression(Children.combine(expressions,
+                expression -> expression instanceof UnionExpression union ? union.expressions : null));
     }
 
     @Override
     public String print(PrintContext printContext) {
-        return printContext.parenthesize(PRECEDENCE, expressions.stream()
-                .map(printContext.withPrecedence(PRECEDENCE)::print)
-                .collect(joining(" union\n" + printContext.getIndent())));
+        return Printer.printToString(this, printContext);
+    }
+
+    @Override
+    public void print(PrintContext printContext, Printer printer) {
+        var childPrintContext = printContext.withPrecedence(PRECEDENCE);
+        printer.openParen(printContext, PRECEDENCE);
+        for (int i = 0; i < expressions.size(); i++) {
+            if (i > 0) {
+                printer.append(" union").newline(printContext);
+            }
+            printer.print(expressions.get(i), childPrintContext);
+        }
+        printer.closeParen(printContext, PRECEDENCE);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new UnionExpression(expressions.stream().map(e -> e.withIncrementedSuffixes(increments)).toList());
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = Children.map(expressions, mapper);
+        return mapped == expressions ? this : new UnionExpression(mapped);
     }
 }
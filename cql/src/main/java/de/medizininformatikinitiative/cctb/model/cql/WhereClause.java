@@ -1,8 +1,8 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
 import java.util.function.Function;
 
 import static java.util.Objects.requireNonNull;
@@ -23,12 +23,12 @@ public record WhereClause(DefaultExpression expression) implements Clause {
 
     @Override
     public String print(PrintContext printContext) {
-        assert printContext.precedence() == 0;
-        return "where " + expression.print(printContext.increase());
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public WhereClause withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new WhereClause(expression.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        assert printContext.precedence() == 0;
+        printer.append("where ").print(expression, printContext.increase());
     }
 }
@@ -1,8 +1,7 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
-
-import java.util.Map;
+import de.medizininformatikinitiative.cctb.Printer;
 
 import static java.util.Objects.requireNonNull;
 
@@ -19,15 +18,16 @@ public record WithClause(AliasedQuerySource source, Expression<?> expression) im
 
     @Override
     public String print(PrintContext printContext) {
-        assert printContext.precedence() == 0;
-        var increasedPrintContext = printContext.increase();
-        return "with " + source.print(increasedPrintContext) + "\n" +
-                increasedPrintContext.getIndent() + "such that " + expression.print(increasedPrintContext.increase());
+        return Printer.printToString(this, printContext);
     }
 
     @Override
-    public WithClause withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new WithClause(source.withIncrementedSuffixes(increments),
-                expression.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        assert printContext.precedence() == 0;
+        var increasedPrintContext = printContext.increase();
+        source.print(increasedPrintContext, printer.append("with "));
+        printer.newline(increasedPrintContext)
+                .append("such that ")
+                .print(expression, increasedPrintContext.increase());
     }
 }
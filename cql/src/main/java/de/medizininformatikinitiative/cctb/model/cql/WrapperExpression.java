@@ -1,8 +1,9 @@
 package de.medizininformatikinitiative.cctb.model.cql;
 
 import de.medizininformatikinitiative.cctb.PrintContext;
+import de.medizininformatikinitiative.cctb.Printer;
 
-import java.util.Map;
+import java.util.function.UnaryOperator;
 
 import static java.util.Objects.requireNonNull;
 
@@ -12,18 +13,38 @@ public record WrapperExpression(Expression<?> expression) implements DefaultExpr
         requireNonNull(expression);
     }
 
+    /**
+     * Returns {@code expression} as {@link DefaultExpression}, wrapping it only if it isn't one already.
+     * <p>
+     * Every wrapper is a node of its own, so operands of boolean expressions and unions are wrapped only if necessary.
+     *
+     * @param expression the expression to wrap
+     * @return {@code expression} itself or a wrapper around it
+     */
+    public static DefaultExpression of(Expression<?> expression) {
+        return expression instanceof DefaultExpression defaultExpression
+                ? defaultExpression
+                : new WrapperExpression(expression);
+    }
+
     @Override
     public String print(PrintContext printContext) {
         return expression.print(printContext);
     }
 
     @Override
-    public DefaultExpression withIncrementedSuffixes(Map<String, Integer> increments) {
-        return new WrapperExpression(expression.withIncrementedSuffixes(increments));
+    public void print(PrintContext printContext, Printer printer) {
+        printer.print(expression, printContext);
     }
 
     @Override
     public boolean isIdentifier() {
         return expression.isIdentifier();
     }
+
+    @Override
+    public DefaultExpression mapChildren(UnaryOperator<Expression<?>> mapper) {
+        var mapped = mapper.apply(expression);
+        return mapped == expression ? this : new WrapperExpression(mapped);
+    }
 }
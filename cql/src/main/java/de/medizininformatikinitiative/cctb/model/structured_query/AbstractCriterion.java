@@ -9,12 +9,19 @@ import de.medizininformatikinitiative.cctb.util.FhirModelInfo;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * Abstract criterion holding the concept, every non-static criterion has.
+ * <p>
+ * Criteria implement {@code equals} and {@code hashCode} based on what they select. So the order of the term codes
+ * of the concept and the order of the attribute filters is irrelevant, as are the displays of term codes. The sets
+ * of term codes and attribute filters and the hash code are computed once, because criteria are compared repeatedly
+ * as keys of the {@link de.medizininformatikinitiative.cctb.TranslationCache}.
  */
 abstract class AbstractCriterion<T extends AbstractCriterion<T>> implements Criterion {
 
@@ -24,6 +31,11 @@ abstract class AbstractCriterion<T extends AbstractCriterion<T>> implements Crit
     final List<AttributeFilter> attributeFilters;
     final TimeRestriction timeRestriction;
 
+    // computed on first use, racy writes are harmless because the sets are immutable
+    private Set<TermCode> termCodeSet;
+    private Set<AttributeFilter> attributeFilterSet;
+    private int hash;
+
     AbstractCriterion(ContextualConcept concept, List<AttributeFilter> attributeFilters,
                       TimeRestriction timeRestriction) {
         this.concept = requireNonNull(concept);
@@ -103,7 +115,7 @@ abstract class AbstractCriterion<T extends AbstractCriterion<T>> implements Crit
     public Container<DefaultExpression> toReferencesCql(MappingContext mappingContext) {
         return mappingContext.expandConcept(concept)
                 .map(termCode -> refExpr(mappingContext, termCode))
-                .reduce(Container.empty(), Container.UNION);
+                .collect(Container.collector(UnionExpression::of));
     }
 
     /**
@@ -113,7 +125,7 @@ abstract class AbstractCriterion<T extends AbstractCriterion<T>> implements Crit
     private Container<DefaultExpression> fullExpr(MappingContext mappingContext) {
         return mappingContext.expandConcept(concept)
                 .map(termCode -> expr(mappingContext, termCode))
-                .reduce(Container.empty(), Container.OR);
+                .collect(Container.collector(OrExpression::of));
     }
 
     private Container<DefaultExpression> expr(MappingContext mappingContext, ContextualTermCode termCode) {
@@ -218,6 +230,61 @@ abstract class AbstractCriterion<T extends AbstractCriterion<T>> implements Crit
         return timeRestriction;
     }
 
+    /*
+     * Compares the value criteria of this and {@code that} criterion of the same class.
+     */
+    abstract boolean valueEquals(T that);
+
+    abstract int valueHashCode();
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        var that = (AbstractCriterion<?>) o;
+        return concept.context().equals(that.concept.context()) &&
+                termCodeSet().equals(that.termCodeSet()) &&
+                sameFilters(that);
+    }
+
+    private Set<TermCode> termCodeSet() {
+        var set = termCodeSet;
+        if (set == null) {
+            termCodeSet = set = Set.copyOf(concept.concept().termCodes());
+        }
+        return set;
+    }
+
+    private Set<AttributeFilter> attributeFilterSet() {
+        var set = attributeFilterSet;
+        if (set == null) {
+            attributeFilterSet = set = Set.copyOf(attributeFilters);
+        }
+        return set;
+    }
+
+    /**
+     * Returns {@code true} iff {@code that} criterion is of the same class and has the same value, attribute filters
+     * and time restriction as this criterion, so both only differ in their concepts.
+     */
+    @SuppressWarnings("unchecked")
+    boolean sameFilters(AbstractCriterion<?> that) {
+        return getClass() == that.getClass() &&
+                attributeFilterSet().equals(that.attributeFilterSet()) &&
+                Objects.equals(timeRestriction, that.timeRestriction) &&
+                valueEquals((T) that);
+    }
+
+    @Override
+    public int hashCode() {
+        var h = hash;
+        if (h == 0) {
+            hash = h = Objects.hash(concept.context(), termCodeSet(), attributeFilterSet(), timeRestriction,
+                    valueHashCode());
+        }
+        return h;
+    }
+
     /**
      * Returns a query expression that returns all references of Medication with {@code code}.
      * <p>
@@ -39,7 +39,7 @@ public record CodeEquivalentModifier(String path, Mapping.Cardinality cardinalit
         return concepts.stream()
                 .map(concept -> codeSelector(mappingContext, concept).map(terminology ->
                         comparatorExpression(leftHandSide, terminology)))
-                .reduce(Container.empty(), Container.OR);
+                .collect(Container.collector(OrExpression::of));
     }
 
     private DefaultExpression comparatorExpression(InvocationExpression leftHandSide, CodeSelector terminology) {
@@ -50,6 +50,16 @@ public final class ConceptCriterion extends AbstractCriterion<ConceptCriterion>
         return new ConceptCriterion(concept, attributeFilters, timeRestriction);
     }
 
+    @Override
+    boolean valueEquals(ConceptCriterion that) {
+        return true;
+    }
+
+    @Override
+    int valueHashCode() {
+        return 0;
+    }
+
     @Override
     Container<DefaultExpression> valueExpr(MappingContext mappingContext, Mapping mapping, IdentifierExpression sourceAlias) {
         return Container.empty();
@@ -1,10 +1,22 @@
 package de.medizininformatikinitiative.cctb.model.structured_query;
 
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
+import de.medizininformatikinitiative.cctb.model.common.TermCodes;
 
 public record ContextualTermCode(TermCode context, TermCode termCode) {
 
     public static ContextualTermCode of(TermCode context, TermCode termCode) {
         return new ContextualTermCode(context, termCode);
     }
+
+    /**
+     * Returns this contextual term code with {@link TermCodes#intern(TermCode) interned} context and term code.
+     *
+     * @return the contextual term code with canonical components
+     */
+    public ContextualTermCode intern() {
+        var context = TermCodes.intern(this.context);
+        var termCode = TermCodes.intern(this.termCode);
+        return context == this.context && termCode == this.termCode ? this : of(context, termCode);
+    }
 }
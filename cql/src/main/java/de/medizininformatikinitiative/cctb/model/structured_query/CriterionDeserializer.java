@@ -0,0 +1,263 @@
+package de.medizininformatikinitiative.cctb.model.structured_query;
+
+import de.medizininformatikinitiative.cctb.model.common.Comparator;
+import de.medizininformatikinitiative.cctb.model.common.TermCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationContext;
+import tools.jackson.databind.ValueDeserializer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Deserializes a {@link Criterion} directly from the tokens of the parser.
+ * <p>
+ * The value filter and the attribute filters are read into the {@link Filter} they describe and turned into criteria
+ * and {@link AttributeFilter AttributeFilters} as soon as their object ends, so no intermediate JSON trees are built.
+ * Unknown properties are skipped.
+ * <p>
+ * Errors in the content of a criterion are reported as {@link tools.jackson.databind.DatabindException} whose cause
+ * is the original exception.
+ */
+final class CriterionDeserializer extends ValueDeserializer<Criterion> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CriterionDeserializer.class);
+
+    @Override
+    public Criterion deserialize(JsonParser parser, DeserializationContext context) throws JacksonException {
+        try {
+            return readCriterion(parser);
+        } catch (JacksonException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw context.instantiationException(Criterion.class, e);
+        }
+    }
+
+    private static Criterion readCriterion(JsonParser parser) {
+        TermCode context = null;
+        List<TermCode> termCodes = null;
+        Filter valueFilter = null;
+        TimeRestriction timeRestriction = null;
+        var attributeFilters = new ArrayList<AttributeFilter>();
+        for (var name = firstName(parser); name != null; name = parser.nextName()) {
+            var token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "context" -> context = readTermCode(parser);
+                case "termCodes" -> termCodes = readTermCodes(parser);
+                case "valueFilter" -> valueFilter = readFilter(parser);
+                case "timeRestriction" -> timeRestriction = readTimeRestriction(parser);
+                case "attributeFilters" -> {
+                    expect(parser, JsonToken.START_ARRAY);
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        readFilter(parser).toAttributeFilter().ifPresent(attributeFilters::add);
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+
+        var concept = ContextualConcept.of(requireNonNull(context, "missing JSON property: context"),
+                Concept.of(requireNonNull(termCodes, "missing JSON property: termCodes")));
+        var criterion = valueFilter == null
+                ? ConceptCriterion.of(concept, timeRestriction)
+                : valueFilter.toCriterion(concept, timeRestriction);
+        for (var filter : attributeFilters) {
+            criterion = criterion.appendAttributeFilter(filter);
+        }
+        return criterion;
+    }
+
+    private static Filter readFilter(JsonParser parser) {
+        var filter = new Filter();
+        for (var name = firstName(parser); name != null; name = parser.nextName()) {
+            var token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (name) {
+                case "type" -> filter.type = parser.getValueAsString();
+                case "attributeCode" -> filter.attributeCode = readTermCode(parser);
+                case "comparator" -> filter.comparator = Comparator.fromJson(parser.getValueAsString());
+                case "value" -> filter.value = parser.getDecimalValue();
+                case "minValue" -> filter.minValue = parser.getDecimalValue();
+                case "maxValue" -> filter.maxValue = parser.getDecimalValue();
+                case "unit" -> filter.unit = readUnitCode(parser);
+                case "selectedConcepts" -> filter.selectedConcepts = readTermCodes(parser);
+                case "criteria" -> {
+                    expect(parser, JsonToken.START_ARRAY);
+                    filter.criteria = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        filter.criteria.add(readCriterion(parser));
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return filter;
+    }
+
+    private static TermCode readTermCode(JsonParser parser) {
+        String system = null;
+        String code = null;
+        String display = null;
+        for (var name = firstName(parser); name != null; name = parser.nextName()) {
+            parser.nextToken();
+            switch (name) {
+                case "system" -> system = parser.getValueAsString();
+                case "code" -> code = parser.getValueAsString();
+                case "display" -> display = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return TermCode.of(system, code, display);
+    }
+
+    private static List<TermCode> readTermCodes(JsonParser parser) {
+        expect(parser, JsonToken.START_ARRAY);
+        var termCodes = new ArrayList<TermCode>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            termCodes.add(readTermCode(parser));
+        }
+        return termCodes;
+    }
+
+    private static String readUnitCode(JsonParser parser) {
+        String code = null;
+        for (var name = firstName(parser); name != null; name = parser.nextName()) {
+            parser.nextToken();
+            if ("code".equals(name)) {
+                code = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return code;
+    }
+
+    private static TimeRestriction readTimeRestriction(JsonParser parser) {
+        String afterDate = null;
+        String beforeDate = null;
+        for (var name = firstName(parser); name != null; name = parser.nextName()) {
+            parser.nextToken();
+            switch (name) {
+                case "afterDate" -> afterDate = parser.getValueAsString();
+                case "beforeDate" -> beforeDate = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+        return TimeRestriction.create(afterDate, beforeDate);
+    }
+
+    /**
+     * Returns the name of the first property of the object the parser is positioned at or {@code null} if the object
+     * is empty.
+     */
+    private static String firstName(JsonParser parser) {
+        var token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parser.nextName();
+        }
+        if (token == JsonToken.PROPERTY_NAME) {
+            return parser.currentName();
+        }
+        if (token == JsonToken.END_OBJECT) {
+            return null;
+        }
+        throw new IllegalArgumentException("expected JSON object but was: " + token);
+    }
+
+    private static void expect(JsonParser parser, JsonToken expected) {
+        if (parser.currentToken() != expected) {
+            throw new IllegalArgumentException("expected %s but was: %s".formatted(expected, parser.currentToken()));
+        }
+    }
+
+    /**
+     * The properties of a value or attribute filter, which can appear in any order.
+     */
+    private static final class Filter {
+
+        private String type;
+        private TermCode attributeCode;
+        private Comparator comparator;
+        private BigDecimal value;
+        private BigDecimal minValue;
+        private BigDecimal maxValue;
+        private String unit;
+        private List<TermCode> selectedConcepts;
+        private List<Criterion> criteria;
+
+        private AbstractCriterion<?> toCriterion(ContextualConcept concept, TimeRestriction timeRestriction) {
+            switch (requireNonNull(type, "missing JSON property: type")) {
+                case "quantity-comparator" -> {
+                    return unit == null
+                            ? NumericCriterion.of(concept, comparator, value, timeRestriction)
+                            : NumericCriterion.of(concept, comparator, value, unit, timeRestriction);
+                }
+                case "quantity-range" -> {
+                    return unit == null
+                            ? RangeCriterion.of(concept, minValue, maxValue, timeRestriction)
+                            : RangeCriterion.of(concept, minValue, maxValue, unit, timeRestriction);
+                }
+                case "concept" -> {
+                    if (selectedConcepts == null || selectedConcepts.isEmpty()) {
+                        throw new IllegalArgumentException(
+                                "Missing or empty `selectedConcepts` key in concept criterion.");
+                    }
+                    return ValueSetCriterion.of(concept, selectedConcepts, timeRestriction);
+                }
+                default -> throw new IllegalArgumentException("unknown valueFilter type: " + type);
+            }
+        }
+
+        /**
+         * Returns {@link Optional#empty() nothing} if the filter is of type concept or reference and there are no
+         * concepts or criteria given.
+         */
+        private Optional<AttributeFilter> toAttributeFilter() {
+            requireNonNull(attributeCode, "missing JSON property: attributeCode");
+            switch (requireNonNull(type, "missing JSON property: type")) {
+                case "quantity-comparator" -> {
+                    return Optional.of(unit == null
+                            ? NumericAttributeFilter.of(attributeCode, comparator, value)
+                            : NumericAttributeFilter.of(attributeCode, comparator, value, unit));
+                }
+                case "quantity-range" -> {
+                    return Optional.of(unit == null
+                            ? RangeAttributeFilter.of(attributeCode, minValue, maxValue)
+                            : RangeAttributeFilter.of(attributeCode, minValue, maxValue, unit));
+                }
+                case "concept" -> {
+                    if (selectedConcepts == null || selectedConcepts.isEmpty()) {
+                        logger.warn("Skip attribute filter with code `{}` because of empty selected concepts.",
+                                attributeCode.code());
+                        return Optional.empty();
+                    }
+                    return Optional.of(ValueSetAttributeFilter.of(attributeCode,
+                            selectedConcepts.toArray(TermCode[]::new)));
+                }
+                case "reference" -> {
+                    if (criteria == null || criteria.isEmpty()) {
+                        logger.warn("Skip attribute filter with code `{}` because of empty criteria.",
+                                attributeCode.code());
+                        return Optional.empty();
+                    }
+                    return Optional.of(ReferenceAttributeFilter.of(attributeCode, criteria.toArray(Criterion[]::new)));
+                }
+                default -> throw new IllegalArgumentException("unknown attribute filter type: " + type);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import de.medizininformatikinitiative.cctb.model.common.Comparator;
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
 
@@ -44,6 +45,18 @@ public record NumericAttributeFilter(TermCode attributeCode,
         return new NumericAttributeFilter(attributeCode, comparator, value, requireNonNull(unit));
     }
 
+    // values are compared numerically, so 5 and 5.0 are equal, like in NumericCriterion
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof NumericAttributeFilter that && attributeCode.equals(that.attributeCode) &&
+                comparator == that.comparator && value.compareTo(that.value) == 0 && Objects.equals(unit, that.unit);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(attributeCode, comparator, value.stripTrailingZeros(), unit);
+    }
+
     @Override
     public Modifier toModifier(AttributeMapping attributeMapping) {
         return NumericModifier.of(attributeMapping.path(), comparator, value, unit);
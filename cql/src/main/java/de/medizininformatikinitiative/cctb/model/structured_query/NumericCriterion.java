@@ -8,6 +8,7 @@ import de.medizininformatikinitiative.cctb.model.cql.*;
 import java.math.BigDecimal;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
@@ -112,6 +113,16 @@ public final class NumericCriterion extends AbstractCriterion<NumericCriterion>
         return Optional.ofNullable(unit);
     }
 
+    @Override
+    boolean valueEquals(NumericCriterion that) {
+        return comparator == that.comparator && value.compareTo(that.value) == 0 && Objects.equals(unit, that.unit);
+    }
+
+    @Override
+    int valueHashCode() {
+        return Objects.hash(comparator, value.stripTrailingZeros(), unit);
+    }
+
     @Override
     Container<DefaultExpression> valueExpr(MappingContext mappingContext, Mapping mapping, IdentifierExpression sourceAlias) {
         if (mapping.key().termCode().equals(AgeFunctionMapping.AGE)) {
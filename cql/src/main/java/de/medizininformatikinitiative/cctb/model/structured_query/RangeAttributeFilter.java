@@ -4,6 +4,7 @@ import de.medizininformatikinitiative.cctb.model.AttributeMapping;
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
 
@@ -26,6 +27,19 @@ public record RangeAttributeFilter(TermCode attributeCode,
         return new RangeAttributeFilter(attributeCode, lowerBound, upperBound, requireNonNull(unit));
     }
 
+    // bounds are compared numerically, so 5 and 5.0 are equal, like in RangeCriterion
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof RangeAttributeFilter that && attributeCode.equals(that.attributeCode) &&
+                lowerBound.compareTo(that.lowerBound) == 0 && upperBound.compareTo(that.upperBound) == 0 &&
+                Objects.equals(unit, that.unit);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(attributeCode, lowerBound.stripTrailingZeros(), upperBound.stripTrailingZeros(), unit);
+    }
+
     @Override
     public Modifier toModifier(AttributeMapping attributeMapping) {
         return RangeModifier.of(attributeMapping.path(), lowerBound, upperBound, unit);
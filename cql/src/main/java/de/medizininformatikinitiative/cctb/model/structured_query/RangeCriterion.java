@@ -7,6 +7,7 @@ import de.medizininformatikinitiative.cctb.model.cql.*;
 import java.math.BigDecimal;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 import static java.util.Objects.requireNonNull;
@@ -75,6 +76,17 @@ public final class RangeCriterion extends AbstractCriterion<RangeCriterion> {
         return Optional.ofNullable(unit);
     }
 
+    @Override
+    boolean valueEquals(RangeCriterion that) {
+        return lowerBound.compareTo(that.lowerBound) == 0 && upperBound.compareTo(that.upperBound) == 0 &&
+                Objects.equals(unit, that.unit);
+    }
+
+    @Override
+    int valueHashCode() {
+        return Objects.hash(lowerBound.stripTrailingZeros(), upperBound.stripTrailingZeros(), unit);
+    }
+
     @Override
     Container<DefaultExpression> valueExpr(MappingContext mappingContext, Mapping mapping, IdentifierExpression sourceAlias) {
         if (mapping.key().termCode().equals(AgeFunctionMapping.AGE)) {
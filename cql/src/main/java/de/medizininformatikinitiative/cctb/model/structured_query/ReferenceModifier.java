@@ -37,7 +37,7 @@ public record ReferenceModifier(String path, String targetType, List<Criterion>
     private Container<DefaultExpression> getReferenceExpr(MappingContext mappingContext) {
         return criteria.stream()
                 .map(criterion -> criterion.toReferencesCql(mappingContext))
-                .reduce(Container.empty(), Container.UNION);
+                .collect(Container.collector(UnionExpression::of));
     }
 
     private String referenceExprName() {
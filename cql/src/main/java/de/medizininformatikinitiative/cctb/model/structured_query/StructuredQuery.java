@@ -3,6 +3,7 @@ package de.medizininformatikinitiative.cctb.model.structured_query;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
 
 import java.util.List;
 
@@ -30,4 +31,25 @@ public record StructuredQuery(List<List<Criterion>> inclusionCriteria, List<List
         return new StructuredQuery(inclusionCriteria,
                 exclusionCriteria == null ? List.of(List.of()) : exclusionCriteria);
     }
+
+    /**
+     * Returns this query without criteria that are redundant because of another criterion of the same group.
+     * <p>
+     * Users often select a parent concept together with some of its children, which the expansion of the parent
+     * already contains. A criterion is redundant if it has the same value, attribute filters and time restriction as
+     * another criterion of its group and the expansion of its concept in {@code conceptTree} is a subset of the
+     * expansion of the other one, for inclusion groups, or a superset, for exclusion groups.
+     * <p>
+     * A redundant criterion whose codes have no mapping doesn't fail the translation any more.
+     *
+     * @param conceptTree the concept tree to expand the concepts of the criteria with
+     * @return the normalized query or this query if no criterion is redundant
+     */
+    public StructuredQuery normalize(MappingTreeBase conceptTree) {
+        var inclusion = Subsumption.prune(inclusionCriteria, conceptTree, true);
+        var exclusion = Subsumption.prune(exclusionCriteria, conceptTree, false);
+        return inclusion == inclusionCriteria && exclusion == exclusionCriteria
+                ? this
+                : new StructuredQuery(inclusion, exclusion);
+    }
 }
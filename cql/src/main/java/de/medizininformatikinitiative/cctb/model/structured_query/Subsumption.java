@@ -0,0 +1,119 @@
+package de.medizininformatikinitiative.cctb.model.structured_query;
+
+import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Removes criteria of a group that are redundant because of another criterion of the same group.
+ * <p>
+ * Criteria that only differ in their concepts select the same resources for each code of their expansion. So if the
+ * expansion of one criterion is a subset of the expansion of another, the first criterion implies the second. In a
+ * disjunction, like an inclusion group, the implying criterion is redundant, because {@code A or B} equals {@code B}
+ * if {@code A} implies {@code B}. In a conjunction, like an exclusion group, the implied one is redundant, because
+ * {@code A and B} equals {@code A}. Of criteria with equal expansions the first one is kept.
+ * <p>
+ * Concepts are expanded like {@link de.medizininformatikinitiative.cctb.model.MappingContext#expandConcept
+ * expandConcept} does, but without dropping codes without mapping, which keeps the subset relation.
+ */
+final class Subsumption {
+
+    private Subsumption() {
+    }
+
+    /**
+     * Returns {@code groups} without redundant criteria or {@code groups} itself if no criterion is redundant.
+     *
+     * @param disjunction whether the criteria of a group are combined with {@code or} instead of {@code and}
+     */
+    static List<List<Criterion>> prune(List<List<Criterion>> groups, MappingTreeBase conceptTree,
+                                       boolean disjunction) {
+        List<List<Criterion>> result = null;
+        for (int i = 0; i < groups.size(); i++) {
+            var group = groups.get(i);
+            var pruned = pruneGroup(group, conceptTree, disjunction);
+            if (result == null && pruned != group) {
+                result = new ArrayList<>(groups.subList(0, i));
+            }
+            if (result != null) {
+                result.add(pruned);
+            }
+        }
+        return result == null ? groups : result;
+    }
+
+    private static List<Criterion> pruneGroup(List<Criterion> group, MappingTreeBase conceptTree, boolean disjunction) {
+        var expansions = new Expansions(group, conceptTree);
+        List<Criterion> result = null;
+        for (int i = 0; i < group.size(); i++) {
+            if (isRedundant(group, i, expansions, disjunction)) {
+                if (result == null) {
+                    result = new ArrayList<>(group.subList(0, i));
+                }
+            } else if (result != null) {
+                result.add(group.get(i));
+            }
+        }
+        return result == null ? group : result;
+    }
+
+    /**
+     * Returns {@code true} iff the criterion at {@code i} is redundant because of any other criterion of
+     * {@code group}.
+     * <p>
+     * Redundancy is a strict order of the criteria, because equal expansions are ordered by index. So every chain of
+     * redundant criteria ends at one that is kept.
+     */
+    private static boolean isRedundant(List<Criterion> group, int i, Expansions expansions, boolean disjunction) {
+        if (!(group.get(i) instanceof AbstractCriterion<?> criterion) || expansions.get(i).isEmpty()) {
+            return false;
+        }
+        for (int j = 0; j < group.size(); j++) {
+            if (j == i || !(group.get(j) instanceof AbstractCriterion<?> other) || !criterion.sameFilters(other) ||
+                    expansions.get(j).isEmpty()) {
+                continue;
+            }
+            var subset = disjunction ? expansions.get(i) : expansions.get(j);
+            var superset = disjunction ? expansions.get(j) : expansions.get(i);
+            if (superset.containsAll(subset) && (subset.size() < superset.size() || j < i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The expansions of the concepts of the criteria of a group, computed on first use.
+     */
+    private static final class Expansions {
+
+        private final List<Criterion> group;
+        private final MappingTreeBase conceptTree;
+        private final List<Set<ContextualTermCode>> expansions;
+
+        private Expansions(List<Criterion> group, MappingTreeBase conceptTree) {
+            this.group = group;
+            this.conceptTree = conceptTree;
+            this.expansions = new ArrayList<>(group.size());
+            for (int i = 0; i < group.size(); i++) {
+                expansions.add(null);
+            }
+        }
+
+        private Set<ContextualTermCode> get(int i) {
+            var expansion = expansions.get(i);
+            if (expansion == null) {
+                var codes = group.get(i).getConcept().contextualTermCodes();
+                expansion = codes.stream().flatMap(conceptTree::expand).collect(Collectors.toUnmodifiableSet());
+                if (expansion.isEmpty()) {
+                    expansion = Set.copyOf(codes);
+                }
+                expansions.set(i, expansion);
+            }
+            return expansion;
+        }
+    }
+}
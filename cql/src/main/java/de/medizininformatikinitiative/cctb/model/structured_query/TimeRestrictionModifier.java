@@ -44,12 +44,11 @@ public record TimeRestrictionModifier(Mapping.TimeRestrictionMapping mapping, Lo
     public Container<DefaultExpression> expression(MappingContext mappingContext, IdentifierExpression sourceAlias) {
         var invocationExpr = InvocationExpression.of(sourceAlias, mapping.path());
 
-        //noinspection OptionalGetWithoutIsPresent
-        return Container.of(mapping.types().stream().sorted().map(type -> switch (type) {
+        return Container.of(OrExpression.of(mapping.types().stream().sorted().map(type -> switch (type) {
             case DATE -> dateExpr(invocationExpr, IntervalSelector.of(DateExpression.of(afterDate), DateExpression.of(beforeDate)));
             case DATE_TIME -> dateTimeExpr(invocationExpr, IntervalSelector.of(DateTimeExpression.of(afterDate), DateTimeExpression.of(beforeDate)));
             case INSTANT -> instantExpr(invocationExpr, IntervalSelector.of(DateTimeExpression.of(afterDate), DateTimeExpression.of(beforeDate)));
             case PERIOD -> OverlapsIntervalOperatorPhrase.of(invocationExpr, IntervalSelector.of(DateTimeExpression.of(afterDate), DateTimeExpression.of(beforeDate)));
-        }).reduce(OrExpression::of).get());
+        }).toList()));
     }
 }
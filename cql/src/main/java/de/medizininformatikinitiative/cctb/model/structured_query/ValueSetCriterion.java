@@ -7,6 +7,7 @@ import de.medizininformatikinitiative.cctb.model.cql.*;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@code ValueSetCriterion} will select all patients that have at least one resource represented
@@ -64,6 +65,16 @@ public final class ValueSetCriterion extends AbstractCriterion<ValueSetCriterion
         return selectedConcepts;
     }
 
+    @Override
+    boolean valueEquals(ValueSetCriterion that) {
+        return Set.copyOf(selectedConcepts).equals(Set.copyOf(that.selectedConcepts));
+    }
+
+    @Override
+    int valueHashCode() {
+        return Set.copyOf(selectedConcepts).hashCode();
+    }
+
     @Override
     Container<DefaultExpression> valueExpr(MappingContext mappingContext, Mapping mapping, IdentifierExpression sourceAlias) {
         if (mapping.valueMapping().isEmpty()) {
@@ -78,11 +89,11 @@ public final class ValueSetCriterion extends AbstractCriterion<ValueSetCriterion
                     .map(concept -> Container.of(ComparatorExpression.equal(
                             InvocationExpression.of(sourceAlias, valueMapping.path()),
                             StringLiteralExpression.of(concept.code()))))
-                    .reduce(Container.empty(), Container.OR);
+                    .collect(Container.collector(OrExpression::of));
             case CODING, CODEABLE_CONCEPT -> selectedConcepts.stream()
                     .map(concept -> codeSelector(mappingContext, concept).map(terminology ->
                             ComparatorExpression.equivalent(InvocationExpression.of(sourceAlias, valueMapping.path()), terminology)))
-                    .reduce(Container.empty(), Container.OR);
+                    .collect(Container.collector(OrExpression::of));
             default ->
                     throw new IllegalArgumentException("Unsupported type `%s` in value expression.".formatted(valueMapping.types().get(0).fhirTypeName()));
         };
@@ -5,9 +5,13 @@ import tools.jackson.dataformat.xml.XmlMapper;
 
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class FhirModelInfo {
 
@@ -17,6 +21,10 @@ public class FhirModelInfo {
 
     private final Set<String> retrievableTypes;
     private final Map<String, Set<String>> searchPaths;
+    private final Map<String, String> primaryCodePaths;
+    private final Map<String, String> identifiers;
+    private final Map<String, String> baseTypes;
+    private final Map<String, Map<String, ElementType>> elementTypes;
 
     private FhirModelInfo() {
         JsonNode tree;
@@ -44,6 +52,62 @@ public class FhirModelInfo {
                                             .map(s -> s.get("path").asString()).collect(Collectors.toSet());
                         }
                 ));
+        primaryCodePaths = attributes(typeInfo, "primaryCodePath");
+        identifiers = attributes(typeInfo, "identifier");
+        baseTypes = attributes(typeInfo, "baseType");
+        elementTypes = typeInfo.valueStream()
+                .collect(Collectors.toMap(v -> v.get("name").asString(), FhirModelInfo::elementTypes));
+    }
+
+    private static Map<String, ElementType> elementTypes(JsonNode typeInfo) {
+        var elementTypes = new HashMap<String, ElementType>();
+        values(typeInfo.get("element")).forEach(element -> {
+            var elementType = elementType(element);
+            if (elementType != null) {
+                elementTypes.put(element.get("name").asString(), elementType);
+            }
+        });
+        return elementTypes;
+    }
+
+    /**
+     * Returns the values of {@code node}, which is an array if the XML element occurs more than once.
+     */
+    private static Stream<JsonNode> values(JsonNode node) {
+        if (node == null) {
+            return Stream.empty();
+        }
+        return node.isArray() ? node.valueStream() : Stream.of(node);
+    }
+
+    private static ElementType elementType(JsonNode element) {
+        if (element.has("elementType")) {
+            return new ElementType(List.of(element.get("elementType").asString()), false);
+        }
+        var specifier = element.get("elementTypeSpecifier");
+        if (specifier == null) {
+            return null;
+        }
+        return switch (specifier.path("xsi:type").asString()) {
+            case "ListTypeSpecifier" -> specifier.has("elementType")
+                    ? new ElementType(List.of(specifier.get("elementType").asString()), true)
+                    : null;
+            case "ChoiceTypeSpecifier" -> new ElementType(values(specifier.get("choice"))
+                    .map(FhirModelInfo::typeName)
+                    .toList(), false);
+            case "NamedTypeSpecifier" -> new ElementType(List.of(typeName(specifier)), false);
+            default -> null;
+        };
+    }
+
+    private static String typeName(JsonNode namedTypeSpecifier) {
+        return namedTypeSpecifier.get("namespace").asString() + "." + namedTypeSpecifier.get("name").asString();
+    }
+
+    private static Map<String, String> attributes(JsonNode typeInfo, String attribute) {
+        return typeInfo.valueStream()
+                .filter(v -> v.has(attribute))
+                .collect(Collectors.toMap(v -> v.get("name").asString(), v -> v.get(attribute).asString()));
     }
 
     public static boolean isRetrievableType(String typeIdentifier) {
@@ -54,8 +118,64 @@ public class FhirModelInfo {
         return INSTANCE.searchPaths.getOrDefault(typeIdentifier, Collections.emptySet());
     }
 
+    /**
+     * Returns the path of the code a retrieve of {@code typeIdentifier} filters by if no other path is given.
+     *
+     * @param typeIdentifier the name of the type
+     * @return the primary code path or {@link Optional#empty() nothing} if the type has none
+     */
+    public static Optional<String> primaryCodePath(String typeIdentifier) {
+        return Optional.ofNullable(INSTANCE.primaryCodePaths.get(typeIdentifier));
+    }
+
+    /**
+     * Returns the URL of the structure definition of {@code typeIdentifier}.
+     *
+     * @param typeIdentifier the name of the type
+     * @return the URL of the structure definition or {@link Optional#empty() nothing} if the type has none
+     */
+    public static Optional<String> identifier(String typeIdentifier) {
+        return Optional.ofNullable(INSTANCE.identifiers.get(typeIdentifier));
+    }
+
     public static boolean isRetrievable(String typeIdentifier, String path) {
         return isRetrievableType(typeIdentifier) && searchPaths(typeIdentifier).contains(path);
     }
 
+    /**
+     * Returns the type of the element {@code element} of {@code typeIdentifier} or of one of its base types.
+     *
+     * @param typeIdentifier the name of the type without namespace, like {@code Condition}
+     * @param element        the name of the element
+     * @return the type of the element or {@link Optional#empty() nothing} if the type has no such element
+     */
+    public static Optional<ElementType> elementType(String typeIdentifier, String element) {
+        for (var type = typeIdentifier; type != null; type = INSTANCE.baseType(type)) {
+            var elementType = INSTANCE.elementTypes.getOrDefault(type, Map.of()).get(element);
+            if (elementType != null) {
+                return Optional.of(elementType);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private String baseType(String typeIdentifier) {
+        var baseType = baseTypes.get(typeIdentifier);
+        return baseType != null && baseType.startsWith("FHIR.") ? baseType.substring("FHIR.".length()) : null;
+    }
+
+    /**
+     * The type of an element.
+     *
+     * @param types the qualified names of the types the values can have, like {@code FHIR.CodeableConcept}, more
+     *              than one if the element has a choice type
+     * @param list  whether the element is a list of values
+     */
+    public record ElementType(List<String> types, boolean list) {
+
+        public ElementType {
+            types = List.copyOf(types);
+        }
+    }
+
 }
@@ -1,17 +1,45 @@
 package de.medizininformatikinitiative.cctb;
 
+import de.medizininformatikinitiative.cctb.model.cql.AndExpression;
+import de.medizininformatikinitiative.cctb.model.cql.CodeSelector;
+import de.medizininformatikinitiative.cctb.model.cql.CodeSystemDefinition;
 import de.medizininformatikinitiative.cctb.model.cql.Container;
 import de.medizininformatikinitiative.cctb.model.cql.DefaultExpression;
+import de.medizininformatikinitiative.cctb.model.cql.ExistsExpression;
+import de.medizininformatikinitiative.cctb.model.cql.NotExpression;
+import de.medizininformatikinitiative.cctb.model.cql.OrExpression;
+import de.medizininformatikinitiative.cctb.model.cql.RetrieveExpression;
 import org.junit.jupiter.api.Test;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static de.medizininformatikinitiative.cctb.Assertions.assertThat;
+import static de.medizininformatikinitiative.cctb.model.cql.Expression.FALSE;
 import static de.medizininformatikinitiative.cctb.model.cql.Expression.TRUE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Alexander Kiel
  */
 class ContainerTest {
 
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static DefaultExpression existsCondition(CodeSelector codeSelector) {
+        return ExistsExpression.of(RetrieveExpression.of("Condition", codeSelector));
+    }
+
     @Test
     void flatMap_EmptyContainer() {
         var container = Container.empty().flatMap(Container::of);
@@ -25,4 +53,334 @@ class ContainerTest {
 
         assertEquals(Container.empty(), container);
     }
+
+    @Test
+    void moveToPatientContext_SingleDefinitionHasNoSuffix() {
+        var container = Container.OR.apply(Container.of(TRUE).moveToPatientContext("Criterion"),
+                Container.of(FALSE).moveToPatientContext("Other"));
+
+        assertThat(container).patientContextPrintsTo("""
+                context Patient
+
+                define Criterion:
+                  true
+
+                define Other:
+                  false
+                """);
+    }
+
+    @Test
+    void combiner_NumbersDefinitionsInOrder() {
+        var container = IntStream.range(0, 3)
+                .mapToObj(i -> Container.<DefaultExpression>of(i % 2 == 0 ? TRUE : FALSE).moveToPatientContext("Criterion"))
+                .reduce(Container.empty(), Container.AND)
+                .moveToPatientContext("InInitialPopulation");
+
+        assertThat(container).patientContextPrintsTo("""
+                context Patient
+
+                define "Criterion 1":
+                  true
+
+                define "Criterion 2":
+                  false
+
+                define "Criterion 3":
+                  true
+
+                define InInitialPopulation:
+                  "Criterion 1" and
+                  "Criterion 2" and
+                  "Criterion 3"
+                """);
+    }
+
+    @Test
+    void collector_SameAsReduction() {
+        var containers = IntStream.range(0, 5)
+                .mapToObj(i -> Container.of(existsCondition(CodeSelector.of("code" + i, "http://system" + (i % 2))),
+                        CodeSystemDefinition.of("http://system" + (i % 2))).moveToPatientContext("Criterion"))
+                .toList();
+
+        var collected = containers.stream().collect(Container.collector(OrExpression::of));
+        var reduced = containers.stream().reduce(Container.empty(), Container.OR);
+
+        assertEquals(reduced.print(), collected.print());
+        assertEquals(reduced.getCodeSystemDefinitions(), collected.getCodeSystemDefinitions());
+    }
+
+    @Test
+    void collector_SkipsEmptyContainers() {
+        var container = Container.<DefaultExpression>of(TRUE);
+
+        var collected = Stream.<Container<DefaultExpression>>of(Container.empty(), container, Container.empty())
+                .collect(Container.collector(OrExpression::of));
+
+        assertSame(container, collected);
+    }
+
+    @Test
+    void collector_NoContainers() {
+        var collected = Stream.<Container<DefaultExpression>>empty().collect(Container.collector(OrExpression::of));
+
+        assertTrue(collected.isEmpty());
+    }
+
+    @Test
+    void combiner_NestedContainers() {
+        var a = Container.AND.apply(Container.of(TRUE).moveToPatientContext("Criterion"),
+                Container.of(FALSE).moveToPatientContext("Criterion")).moveToPatientContext("Inclusion");
+        var b = Container.of(TRUE).moveToPatientContext("Criterion").moveToPatientContext("Exclusion");
+
+        var container = Container.AND_NOT.apply(a, b);
+
+        assertThat(container).patientContextPrintsTo("""
+                context Patient
+
+                define "Criterion 1":
+                  true
+
+                define "Criterion 2":
+                  false
+
+                define Inclusion:
+                  "Criterion 1" and
+                  "Criterion 2"
+
+                define "Criterion 3":
+                  true
+
+                define Exclusion:
+                  "Criterion 3"
+                """);
+    }
+
+    @Test
+    void print_ToAppendable() {
+        var container = Container.OR.apply(
+                        Container.of(TRUE, CodeSystemDefinition.of("b", "system-b")).moveToPatientContext("Criterion"),
+                        Container.of(FALSE, CodeSystemDefinition.of("a", "system-a")).moveToPatientContext("Criterion"))
+                .moveToPatientContext("InInitialPopulation");
+        var out = new StringWriter();
+
+        container.print(out);
+
+        assertEquals("""
+                library Retrieve version '1.0.0'
+                using FHIR version '4.0.0'
+                include FHIRHelpers version '4.0.0'
+
+                codesystem a: 'system-a'
+                codesystem b: 'system-b'
+
+                context Patient
+
+                define "Criterion 1":
+                  true
+
+                define "Criterion 2":
+                  false
+
+                define InInitialPopulation:
+                  "Criterion 1" or
+                  "Criterion 2"
+                """, out.toString());
+        assertEquals(container.print(), out.toString());
+    }
+
+    @Test
+    void print_FailingAppendable() {
+        var container = Container.of(TRUE).moveToPatientContext("InInitialPopulation");
+
+        assertThrows(UncheckedIOException.class, () -> container.print(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+    }
+
+    @Test
+    void print_NamesCodeSystemsWithoutAliasInOrderOfTheirUrls() {
+        var container = Container.OR.apply(
+                        Container.of(CodeSelector.of("c1", "http://system-b"), CodeSystemDefinition.of("http://system-b"))
+                                .map(ContainerTest::existsCondition)
+                                .moveToPatientContext("Criterion"),
+                        Container.of(CodeSelector.of("c2", "http://system-a"), CodeSystemDefinition.of("http://system-a"))
+                                .map(ContainerTest::existsCondition)
+                                .moveToPatientContext("Criterion"))
+                .moveToPatientContext("InInitialPopulation");
+
+        assertEquals("""
+                library Retrieve version '1.0.0'
+                using FHIR version '4.0.0'
+                include FHIRHelpers version '4.0.0'
+
+                codesystem codeSystem1: 'http://system-a'
+                codesystem codeSystem2: 'http://system-b'
+
+                context Patient
+
+                define "Criterion 1":
+                  exists [Condition: Code 'c1' from codeSystem2]
+
+                define "Criterion 2":
+                  exists [Condition: Code 'c2' from codeSystem1]
+
+                define InInitialPopulation:
+                  "Criterion 1" or
+                  "Criterion 2"
+                """, container.print());
+    }
+
+    @Test
+    void print_SkipsCodeSystemNamesTakenByAliases() {
+        var container = Container.of(CodeSelector.of("c1", "http://system-b"),
+                        CodeSystemDefinition.of("http://system-b"), CodeSystemDefinition.of("codeSystem1", "http://system-a"))
+                .map(ContainerTest::existsCondition)
+                .moveToPatientContext("InInitialPopulation");
+
+        assertEquals("""
+                library Retrieve version '1.0.0'
+                using FHIR version '4.0.0'
+                include FHIRHelpers version '4.0.0'
+
+                codesystem codeSystem1: 'http://system-a'
+                codesystem codeSystem2: 'http://system-b'
+
+                context Patient
+
+                define InInitialPopulation:
+                  exists [Condition: Code 'c1' from codeSystem2]
+                """, container.print());
+    }
+
+    @Test
+    void deeplyNestedExpression() {
+        DefaultExpression expression = existsCondition(CodeSelector.of("c1", "system"));
+        for (int i = 0; i < 100_000; i++) {
+            expression = NotExpression.of(expression);
+        }
+        var container = Container.of(expression, CodeSystemDefinition.of("system", "system"))
+                .moveToPatientContext("Criterion");
+
+        var cql = container.print();
+
+        assertTrue(cql.contains("not not exists [Condition: Code 'c1' from system]"));
+        assertEquals(cql, container.collapseCodeLists().print());
+        assertEquals(cql, container.shareCommonSubexpressions().print());
+        assertEquals(cql, container.internExpressions().print());
+        assertTrue(container.simplify().print().endsWith("""
+                define Criterion:
+                  exists [Condition: Code 'c1' from system]
+                """));
+        assertEquals(100_000, container.printElm().split("\\{\"type\":\"Not\",\"operand\":", -1).length - 1);
+    }
+
+    @Test
+    void deeplyNestedBooleanExpression() {
+        DefaultExpression expression = existsCondition(CodeSelector.of("c0", "system"));
+        for (int i = 1; i <= 100_000; i++) {
+            var operand = existsCondition(CodeSelector.of("c" + i, "system"));
+            expression = i % 2 == 0
+                    ? AndExpression.of(List.of(expression, operand))
+                    : OrExpression.of(List.of(expression, operand));
+        }
+        var container = Container.of(expression, CodeSystemDefinition.of("system", "system"))
+                .moveToPatientContext("Criterion");
+
+        var cql = container.print();
+
+        assertEquals(cql, container.shareCommonSubexpressions().print());
+        assertEquals(cql, container.internExpressions().print());
+        assertEquals(cql, container.simplify().print());
+        assertTrue(container.printElm().contains("\"code\":\"c100000\""));
+    }
+
+    @Test
+    void printElm_Library() {
+        var container = Container.OR.apply(
+                        Container.of(CodeSelector.of("c1", "http://system-a"), CodeSystemDefinition.of("http://system-a"))
+                                .map(ContainerTest::existsCondition)
+                                .moveToPatientContext("Criterion"),
+                        Container.of(FALSE).moveToPatientContext("Criterion"))
+                .moveToPatientContext("InInitialPopulation");
+
+        assertEquals(JSON.readTree("""
+                {"library": {
+                  "identifier": {"id": "Retrieve", "version": "1.0.0"},
+                  "schemaIdentifier": {"id": "urn:hl7-org:elm", "version": "r1"},
+                  "usings": {"def": [
+                    {"localIdentifier": "System", "uri": "urn:hl7-org:elm-types:r1"},
+                    {"localIdentifier": "FHIR", "uri": "http://hl7.org/fhir", "version": "4.0.0"}]},
+                  "includes": {"def": [{"localIdentifier": "FHIRHelpers", "path": "FHIRHelpers", "version": "4.0.0"}]},
+                  "codeSystems": {"def": [{"name": "codeSystem1", "id": "http://system-a", "accessLevel": "Public"}]},
+                  "contexts": {"def": [{"name": "Patient"}]},
+                  "statements": {"def": [
+                    {"name": "Patient", "context": "Patient", "expression": {"type": "SingletonFrom", "operand": {
+                      "type": "Retrieve", "dataType": "{http://hl7.org/fhir}Patient",
+                      "templateId": "http://hl7.org/fhir/StructureDefinition/Patient"}}},
+                    {"name": "Criterion 1", "context": "Patient", "accessLevel": "Public", "expression": {
+                      "type": "Exists", "operand": {
+                        "type": "Retrieve", "dataType": "{http://hl7.org/fhir}Condition",
+                        "templateId": "http://hl7.org/fhir/StructureDefinition/Condition",
+                        "codeProperty": "code", "codeComparator": "~",
+                        "codes": {"type": "ToList", "operand": {
+                          "type": "Code", "code": "c1", "system": {"name": "codeSystem1"}}}}}},
+                    {"name": "Criterion 2", "context": "Patient", "accessLevel": "Public", "expression": {
+                      "type": "Literal", "valueType": "{urn:hl7-org:elm-types:r1}Boolean", "value": "false"}},
+                    {"name": "InInitialPopulation", "context": "Patient", "accessLevel": "Public", "expression": {
+                      "type": "Or", "operand": [
+                        {"type": "ExpressionRef", "name": "Criterion 1"},
+                        {"type": "ExpressionRef", "name": "Criterion 2"}]}}]}}}
+                """), JSON.readTree(container.printElm()));
+    }
+
+    @Test
+    void printElm_NestsManyOperandsBalanced() {
+        var container = Container.of(OrExpression.of(IntStream.range(0, 100_000)
+                        .mapToObj(i -> existsCondition(CodeSelector.of("c" + i, "system")))
+                        .toList()), CodeSystemDefinition.of("system", "system"))
+                .moveToPatientContext("InInitialPopulation");
+
+        var expression = JSON.readTree(container.printElm()).at("/library/statements/def/1/expression");
+
+        var depth = 0;
+        while (expression.has("operand") && expression.get("type").asString().equals("Or")) {
+            expression = expression.get("operand").get(0);
+            depth++;
+        }
+        assertEquals(16, depth);
+        assertEquals("c0", expression.at("/operand/codes/operand/code").asString());
+    }
+
+    @Test
+    void printElm_FailingWriter() {
+        var container = Container.of(TRUE).moveToPatientContext("InInitialPopulation");
+
+        assertThrows(JacksonException.class, () -> container.printElm(new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void close() {
+            }
+        }));
+    }
 }
@@ -0,0 +1,127 @@
+package de.medizininformatikinitiative.cctb;
+
+import de.medizininformatikinitiative.cctb.model.MappingContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReloadableMappingContextTest {
+
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    void load() throws Exception {
+        var mappingContext = MappingContext.of();
+
+        var reloadable = ReloadableMappingContext.load(() -> mappingContext, DIRECT, TranslationMetrics.NOOP);
+
+        assertThat(reloadable.get()).isSameAs(mappingContext);
+        assertThat(reloadable.generation()).isEqualTo(1);
+    }
+
+    @Test
+    void load_Fails() {
+        var metrics = new SimpleTranslationMetrics();
+
+        assertThatThrownBy(() -> ReloadableMappingContext.load(() -> {
+            throw new IllegalStateException("broken mapping");
+        }, DIRECT, metrics)).hasMessage("broken mapping");
+        assertThat(metrics.counters()).containsEntry(SimpleTranslationMetrics.MAPPING_LOAD_FAILURES, 1L);
+    }
+
+    @Test
+    void reload_SwapsMappingContext() throws Exception {
+        var first = MappingContext.of();
+        var second = MappingContext.of();
+        var contexts = List.of(first, second).iterator();
+        var metrics = new SimpleTranslationMetrics();
+        var reloadable = ReloadableMappingContext.load(contexts::next, DIRECT, metrics);
+        var notified = new ArrayList<MappingContext>();
+        reloadable.addListener(notified::add);
+
+        var reloaded = reloadable.reload().join();
+
+        assertThat(reloaded).isSameAs(second);
+        assertThat(reloadable.get()).isSameAs(second);
+        assertThat(reloadable.generation()).isEqualTo(2);
+        assertThat(notified).containsExactly(second);
+        assertThat(metrics.timers().get(SimpleTranslationMetrics.MAPPING_LOAD).count()).isEqualTo(2);
+    }
+
+    @Test
+    void reload_FailingListenerDoesNotFailReload() throws Exception {
+        var first = MappingContext.of();
+        var second = MappingContext.of();
+        var contexts = List.of(first, second).iterator();
+        var reloadable = ReloadableMappingContext.load(contexts::next, DIRECT, TranslationMetrics.NOOP);
+        var notified = new ArrayList<MappingContext>();
+        reloadable.addListener(mappingContext -> {
+            throw new IllegalStateException("broken listener");
+        });
+        reloadable.addListener(notified::add);
+
+        assertThat(reloadable.reload().join()).isSameAs(second);
+        assertThat(reloadable.get()).isSameAs(second);
+        assertThat(notified).containsExactly(second);
+    }
+
+    @Test
+    void reload_FailureKeepsMappingContext() throws Exception {
+        var mappingContext = MappingContext.of();
+        var calls = new AtomicInteger();
+        var metrics = new SimpleTranslationMetrics();
+        var reloadable = ReloadableMappingContext.load(() -> {
+            if (calls.incrementAndGet() > 1) {
+                throw new IllegalStateException("broken mapping");
+            }
+            return mappingContext;
+        }, DIRECT, metrics);
+
+        assertThatThrownBy(() -> reloadable.reload().join())
+                .isInstanceOf(CompletionException.class)
+                .hasRootCauseMessage("broken mapping");
+        assertThat(reloadable.get()).isSameAs(mappingContext);
+        assertThat(reloadable.generation()).isEqualTo(1);
+        assertThat(metrics.counters()).containsEntry(SimpleTranslationMetrics.MAPPING_LOAD_FAILURES, 1L);
+    }
+
+    @Test
+    void reload_ErrorInListenerCompletesReload() throws Exception {
+        var contexts = List.of(MappingContext.of(), MappingContext.of(), MappingContext.of()).iterator();
+        var reloadable = ReloadableMappingContext.load(contexts::next, DIRECT, TranslationMetrics.NOOP);
+        var calls = new AtomicInteger();
+        reloadable.addListener(mappingContext -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new AssertionError("broken listener");
+            }
+        });
+
+        assertThatThrownBy(() -> reloadable.reload().join())
+                .isInstanceOf(CompletionException.class)
+                .hasRootCauseMessage("broken listener");
+        assertThat(reloadable.reload().join()).isSameAs(reloadable.get());
+        assertThat(reloadable.generation()).isEqualTo(3);
+    }
+
+    @Test
+    void reload_JoinsRunningReload() throws Exception {
+        var pending = new ArrayList<Runnable>();
+        var reloadable = ReloadableMappingContext.load(MappingContext::of, pending::add, TranslationMetrics.NOOP);
+
+        var first = reloadable.reload();
+        var second = reloadable.reload();
+
+        assertThat(second).isSameAs(first);
+        assertThat(pending).hasSize(1);
+        pending.get(0).run();
+        assertThat(first).isCompleted();
+        assertThat(reloadable.generation()).isEqualTo(2);
+    }
+}
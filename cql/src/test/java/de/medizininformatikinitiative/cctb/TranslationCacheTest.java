@@ -0,0 +1,194 @@
+package de.medizininformatikinitiative.cctb;
+
+import de.medizininformatikinitiative.cctb.model.Mapping;
+import de.medizininformatikinitiative.cctb.model.MappingContext;
+import de.medizininformatikinitiative.cctb.model.common.TermCode;
+import de.medizininformatikinitiative.cctb.model.structured_query.*;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.medizininformatikinitiative.cctb.model.Mapping.TimeRestrictionMapping.Type.DATE_TIME;
+import static de.medizininformatikinitiative.cctb.model.Mapping.TimeRestrictionMapping.Type.PERIOD;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TranslationCacheTest {
+
+    static final TermCode CONTEXT = TermCode.of("context", "context", "context");
+    static final String ICD10 = "http://fhir.de/CodeSystem/bfarm/icd-10-gm";
+    static final ContextualTermCode C71_0 = ContextualTermCode.of(CONTEXT, TermCode.of(ICD10, "C71.0", "Frontal lobe"));
+    static final ContextualTermCode C71_1 = ContextualTermCode.of(CONTEXT, TermCode.of(ICD10, "C71.1", "Temporal lobe"));
+    static final ContextualTermCode I10 = ContextualTermCode.of(CONTEXT, TermCode.of(ICD10, "I10", "Hypertension"));
+    static final Translator TRANSLATOR = Translator.of(MappingContext.of(Map.of(
+            C71_0, Mapping.of(C71_0, "Condition", null, List.of(), List.of(),
+                    Mapping.TimeRestrictionMapping.of("onset", DATE_TIME, PERIOD)),
+            C71_1, Mapping.of(C71_1, "Condition"),
+            I10, Mapping.of(I10, "Condition")), null, Map.of()));
+    static final Duration MAXIMUM_AGE = Duration.ofMinutes(10);
+
+    private final AtomicLong now = new AtomicLong();
+
+    private TranslationCache cache(int maximumSize) {
+        return TranslationCache.of(TRANSLATOR, maximumSize, MAXIMUM_AGE, now::get);
+    }
+
+    private static Criterion criterion(ContextualTermCode termCode) {
+        return ConceptCriterion.of(ContextualConcept.of(termCode));
+    }
+
+    @Test
+    void missThenHit() {
+        var cache = cache(10);
+        var query = StructuredQuery.of(List.of(List.of(criterion(C71_0))));
+
+        var first = cache.toCql(query);
+        var second = cache.toCql(query);
+
+        assertThat(second).isSameAs(first).isEqualTo(TRANSLATOR.toCql(query).print());
+        assertThat(cache.stats()).isEqualTo(new TranslationCache.Stats(1, 1, 0, 1));
+    }
+
+    @Test
+    void failedTranslationIsNotCached() {
+        var cache = cache(10);
+        var query = StructuredQuery.of(List.of(List.of(criterion(ContextualTermCode.of(CONTEXT,
+                TermCode.of("foo", "bar", ""))))));
+
+        assertThatThrownBy(() -> cache.toCql(query)).isInstanceOf(TranslationException.class);
+        assertThatThrownBy(() -> cache.toCql(query)).isInstanceOf(TranslationException.class);
+
+        assertThat(cache.stats()).isEqualTo(new TranslationCache.Stats(0, 2, 0, 0));
+    }
+
+    @Test
+    void rejectsNonPositiveMaximumSize() {
+        assertThatThrownBy(() -> TranslationCache.of(TRANSLATOR, 0, MAXIMUM_AGE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Nested
+    class CanonicalForm {
+
+        @Test
+        void orderOfCriteriaInGroupIsIrrelevant() {
+            var cache = cache(10);
+
+            cache.toCql(StructuredQuery.of(List.of(List.of(criterion(C71_0), criterion(C71_1)))));
+            cache.toCql(StructuredQuery.of(List.of(List.of(criterion(C71_1), criterion(C71_0)))));
+
+            assertThat(cache.stats().hits()).isEqualTo(1);
+        }
+
+        @Test
+        void orderOfGroupsIsIrrelevant() {
+            var cache = cache(10);
+
+            cache.toCql(StructuredQuery.of(List.of(List.of(criterion(C71_0)), List.of(criterion(I10)))));
+            cache.toCql(StructuredQuery.of(List.of(List.of(criterion(I10)), List.of(criterion(C71_0)))));
+
+            assertThat(cache.stats().hits()).isEqualTo(1);
+        }
+
+        @Test
+        void orderOfTermCodesAndDisplaysAreIrrelevant() {
+            var cache = cache(10);
+            var c71_0 = TermCode.of(ICD10, "C71.0", "other display");
+
+            cache.toCql(StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(CONTEXT,
+                    Concept.of(C71_0.termCode(), C71_1.termCode())))))));
+            cache.toCql(StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(CONTEXT,
+                    Concept.of(C71_1.termCode(), c71_0)))))));
+
+            assertThat(cache.stats().hits()).isEqualTo(1);
+        }
+
+        @Test
+        void emptyExclusionGroupsAreIrrelevant() {
+            var cache = cache(10);
+            var inclusionCriteria = List.of(List.of(criterion(C71_0)));
+
+            cache.toCql(StructuredQuery.of(inclusionCriteria, List.of()));
+            cache.toCql(StructuredQuery.of(inclusionCriteria, List.of(List.of())));
+
+            assertThat(cache.stats().hits()).isEqualTo(1);
+        }
+
+        @Test
+        void inclusionAndExclusionAreDistinguished() {
+            var cache = cache(10);
+
+            cache.toCql(StructuredQuery.of(List.of(List.of(criterion(C71_0))), List.of(List.of(criterion(I10)))));
+            cache.toCql(StructuredQuery.of(List.of(List.of(criterion(I10))), List.of(List.of(criterion(C71_0)))));
+
+            assertThat(cache.stats().hits()).isZero();
+        }
+
+        @Test
+        void timeRestrictionsAreDistinguished() {
+            var cache = cache(10);
+            var concept = ContextualConcept.of(C71_0);
+
+            cache.toCql(StructuredQuery.of(List.of(List.of(ConceptCriterion.of(concept,
+                    TimeRestriction.of(LocalDate.of(2020, 1, 1), LocalDate.of(2021, 1, 1)))))));
+            cache.toCql(StructuredQuery.of(List.of(List.of(ConceptCriterion.of(concept,
+                    TimeRestriction.of(LocalDate.of(2020, 1, 1), LocalDate.of(2022, 1, 1)))))));
+            cache.toCql(StructuredQuery.of(List.of(List.of(ConceptCriterion.of(concept,
+                    TimeRestriction.create("2020-01-01", "2022-01-01"))))));
+
+            assertThat(cache.stats()).isEqualTo(new TranslationCache.Stats(1, 2, 0, 2));
+        }
+    }
+
+    @Nested
+    class Eviction {
+
+        @Test
+        void leastRecentlyUsedIsEvicted() {
+            var cache = cache(2);
+            var query1 = StructuredQuery.of(List.of(List.of(criterion(C71_0))));
+            var query2 = StructuredQuery.of(List.of(List.of(criterion(C71_1))));
+            var query3 = StructuredQuery.of(List.of(List.of(criterion(I10))));
+
+            cache.toCql(query1);
+            cache.toCql(query2);
+            cache.toCql(query1);
+            cache.toCql(query3);
+            cache.toCql(query1);
+            cache.toCql(query2);
+
+            assertThat(cache.stats()).isEqualTo(new TranslationCache.Stats(2, 4, 2, 2));
+        }
+
+        @Test
+        void expiredEntryIsTranslatedAgain() {
+            var cache = cache(10);
+            var query = StructuredQuery.of(List.of(List.of(criterion(C71_0))));
+
+            cache.toCql(query);
+            now.addAndGet(MAXIMUM_AGE.toNanos());
+            cache.toCql(query);
+            now.addAndGet(1);
+            cache.toCql(query);
+
+            assertThat(cache.stats()).isEqualTo(new TranslationCache.Stats(1, 2, 1, 1));
+        }
+
+        @Test
+        void clear() {
+            var cache = cache(10);
+            var query = StructuredQuery.of(List.of(List.of(criterion(C71_0))));
+            cache.toCql(query);
+
+            cache.clear();
+            cache.toCql(query);
+
+            assertThat(cache.stats()).isEqualTo(new TranslationCache.Stats(0, 2, 0, 1));
+        }
+    }
+}
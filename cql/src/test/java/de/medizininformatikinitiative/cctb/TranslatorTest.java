@@ -4,7 +4,12 @@ import de.medizininformatikinitiative.cctb.model.AttributeMapping;
 import de.medizininformatikinitiative.cctb.model.Mapping;
 import de.medizininformatikinitiative.cctb.model.MappingContext;
 import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
+import de.medizininformatikinitiative.cctb.model.MappingTreeModuleEntry;
+import de.medizininformatikinitiative.cctb.model.MappingTreeModuleRoot;
+import de.medizininformatikinitiative.cctb.model.cql.Container;
+import de.medizininformatikinitiative.cctb.model.cql.DefaultExpression;
 import de.medizininformatikinitiative.cctb.model.structured_query.*;
+import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.ObjectMapper;
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
 import org.junit.jupiter.api.Nested;
@@ -12,17 +17,27 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 import static de.medizininformatikinitiative.cctb.Assertions.assertThat;
 import static de.medizininformatikinitiative.cctb.Util.*;
+import static de.medizininformatikinitiative.cctb.model.common.Comparator.GREATER_THAN;
 import static de.medizininformatikinitiative.cctb.model.common.Comparator.LESS_THAN;
 import static de.medizininformatikinitiative.cctb.model.Mapping.TimeRestrictionMapping.Type.DATE_TIME;
 import static de.medizininformatikinitiative.cctb.model.Mapping.TimeRestrictionMapping.Type.PERIOD;
 import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author Alexander Kiel
@@ -1417,5 +1432,514 @@ class TranslatorTest {
             }
 
         }
+
+        @Nested
+        class ShareCommonSubexpressions {
+
+            @Test
+            void sharesRepeatedRetrievesAndQueries() {
+                var mappings = Map.of(PLATELETS, Mapping.of(PLATELETS, "Observation",
+                        Mapping.PathMapping.of("value", Mapping.PathMapping.Type.QUANTITY)));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(
+                                List.of(NumericCriterion.of(ContextualConcept.of(PLATELETS), LESS_THAN,
+                                        BigDecimal.valueOf(50), "g/dl")),
+                                List.of(NumericCriterion.of(ContextualConcept.of(PLATELETS), GREATER_THAN,
+                                        BigDecimal.valueOf(10), "g/dl"))),
+                        List.of(List.of(NumericCriterion.of(ContextualConcept.of(PLATELETS), LESS_THAN,
+                                BigDecimal.valueOf(50), "g/dl"))));
+
+                var library = Translator.of(mappingContext).toCql(structuredQuery).shareCommonSubexpressions();
+
+                assertThat(library).patientContextPrintsTo("""
+                        context Patient
+
+                        define Retrieve:
+                          [Observation: Code '26515-7' from loinc]
+
+                        define Query:
+                          from Retrieve O
+                            where O.value as Quantity < 50 'g/dl'
+
+                        define "Criterion 1":
+                          exists Query
+
+                        define "Criterion 2":
+                          exists (from Retrieve O
+                            where O.value as Quantity > 10 'g/dl')
+
+                        define Inclusion:
+                          "Criterion 1" and
+                          "Criterion 2"
+
+                        define "Criterion 3":
+                          exists Query
+
+                        define Exclusion:
+                          "Criterion 3"
+
+                        define InInitialPopulation:
+                          Inclusion and
+                          not Exclusion
+                        """);
+            }
+
+            @Test
+            void keepsLibraryWithoutRepetitions() {
+                var mappings = Map.of(PLATELETS, Mapping.of(PLATELETS, "Observation",
+                        Mapping.PathMapping.of("value", Mapping.PathMapping.Type.QUANTITY)));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(NumericCriterion.of(
+                        ContextualConcept.of(PLATELETS), LESS_THAN, BigDecimal.valueOf(50), "g/dl"))));
+                var library = Translator.of(mappingContext).toCql(structuredQuery);
+
+                assertThat(library.shareCommonSubexpressions()).isSameAs(library);
+            }
+        }
+
+        @Nested
+        class CollapseCodeLists {
+
+            @Test
+            void collapsesExpandedCodesWithSameQuery() {
+                var mappings = Map.of(C71_0, Mapping.of(C71_0, "Condition", null, List.of(),
+                                List.of(VERIFICATION_STATUS_ATTR_MAPPING)),
+                        C71_1, Mapping.of(C71_1, "Condition", null, List.of(),
+                                List.of(VERIFICATION_STATUS_ATTR_MAPPING)));
+                var conceptTree = new MappingTreeBase(List.of(createTreeRootWithChildren(C71, C71_0, C71_1)));
+                var mappingContext = MappingContext.of(mappings, conceptTree, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71))
+                        .appendAttributeFilter(ValueSetAttributeFilter.of(VERIFICATION_STATUS, CONFIRMED)))));
+
+                var library = Translator.of(mappingContext).toCql(structuredQuery).collapseCodeLists();
+
+                assertThat(library).patientContextPrintsTo("""
+                        context Patient
+
+                        define Criterion:
+                          exists (from [Condition: { Code 'C71.0' from icd10, Code 'C71.1' from icd10 }] C
+                            where C.verificationStatus ~ Code 'confirmed' from ver_status)
+
+                        define InInitialPopulation:
+                          Criterion
+                        """);
+            }
+
+            @Test
+            void keepsCodesWithDifferentQueries() {
+                var mappings = Map.of(C71_0, Mapping.of(C71_0, "Condition", null, List.of(),
+                                List.of(VERIFICATION_STATUS_ATTR_MAPPING)),
+                        C71_1, Mapping.of(C71_1, "Condition", null,
+                                List.of(CodeEquivalentModifier.of("verificationStatus", CONFIRMED)), List.of()));
+                var conceptTree = new MappingTreeBase(List.of(createTreeRootWithChildren(C71, C71_0, C71_1)));
+                var mappingContext = MappingContext.of(mappings, conceptTree, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71)))));
+
+                var library = Translator.of(mappingContext).toCql(structuredQuery);
+
+                assertEquals(library.print(), library.collapseCodeLists().print());
+            }
+
+            @Test
+            void keepsLibraryWithoutCollapsibleCodes() {
+                var mappings = Map.of(C71_1, Mapping.of(C71_1, "Condition"));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_1)))));
+                var library = Translator.of(mappingContext).toCql(structuredQuery);
+
+                assertThat(library.collapseCodeLists()).isSameAs(library);
+            }
+        }
+
+        @Nested
+        class InternExpressions {
+
+            @Test
+            void keepsLibrary() {
+                var mappings = Map.of(PLATELETS, Mapping.of(PLATELETS, "Observation",
+                        Mapping.PathMapping.of("value", Mapping.PathMapping.Type.QUANTITY)));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(
+                        List.of(NumericCriterion.of(ContextualConcept.of(PLATELETS), LESS_THAN,
+                                BigDecimal.valueOf(50), "g/dl")),
+                        List.of(NumericCriterion.of(ContextualConcept.of(PLATELETS), GREATER_THAN,
+                                BigDecimal.valueOf(10), "g/dl"))));
+                var library = Translator.of(mappingContext).toCql(structuredQuery);
+
+                var interned = library.internExpressions();
+
+                assertEquals(library.print(), interned.print());
+                assertEquals(library.shareCommonSubexpressions().print(),
+                        interned.shareCommonSubexpressions().print());
+            }
+        }
+
+        @Nested
+        class Parallel {
+
+            @Test
+            void sameResultAsSequential() {
+                var structuredQuery = StructuredQuery.of(
+                        List.of(List.of(Criterion.TRUE, Criterion.FALSE), List.of(Criterion.TRUE)),
+                        List.of(List.of(Criterion.FALSE, Criterion.TRUE), List.of(Criterion.FALSE)));
+                var executor = Executors.newFixedThreadPool(4);
+
+                try {
+                    var library = Translator.of(MappingContext.of(), executor).toCql(structuredQuery);
+
+                    assertEquals(Translator.of().toCql(structuredQuery).print(), library.print());
+                } finally {
+                    executor.shutdown();
+                }
+            }
+
+            @Test
+            void translationExceptionIsNotWrapped() {
+                var structuredQuery = StructuredQuery.of(List.of(List.of(Criterion.TRUE),
+                        List.of(ConceptCriterion.of(ContextualConcept.of(C71)))));
+                var translator = Translator.of(MappingContext.of(), ForkJoinPool.commonPool());
+
+                var message = assertThrows(TranslationException.class, () -> translator.toCql(structuredQuery))
+                        .getMessage();
+
+                assertTrue(message.startsWith("Failed to expand the concept"));
+            }
+
+            @Test
+            void remainingTranslationsAreCancelledOnFailure() {
+                var translated = new AtomicInteger();
+                var counting = new Criterion() {
+
+                    @Override
+                    public ContextualConcept getConcept() {
+                        return null;
+                    }
+
+                    @Override
+                    public Container<DefaultExpression> toCql(MappingContext mappingContext) {
+                        translated.incrementAndGet();
+                        return Criterion.TRUE.toCql(mappingContext);
+                    }
+
+                    @Override
+                    public Container<DefaultExpression> toReferencesCql(MappingContext mappingContext) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public List<AttributeFilter> attributeFilters() {
+                        return List.of();
+                    }
+
+                    @Override
+                    public TimeRestriction timeRestriction() {
+                        return null;
+                    }
+                };
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71))),
+                        List.of(counting)));
+                // runs the first, failing translation right away and holds back the others
+                var submitted = new AtomicInteger();
+                var pending = new ArrayList<Runnable>();
+                Executor executor = command -> {
+                    if (submitted.getAndIncrement() == 0) {
+                        command.run();
+                    } else {
+                        pending.add(command);
+                    }
+                };
+
+                assertThrows(TranslationException.class, () -> Translator.of(MappingContext.of(), executor)
+                        .toCql(structuredQuery));
+                assertEquals(1, pending.size());
+                pending.forEach(Runnable::run);
+
+                assertEquals(0, translated.get());
+            }
+        }
+
+        @Nested
+        class Simplify {
+
+            @Test
+            void removesDuplicateCriterion() {
+                var mappings = Map.of(C71_1, Mapping.of(C71_1, "Condition"));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_1)),
+                        ConceptCriterion.of(ContextualConcept.of(C71_1)))));
+
+                var library = Translator.of(mappingContext).toCql(structuredQuery).simplify();
+
+                assertThat(library).patientContextPrintsTo("""
+                        context Patient
+
+                        define Criterion:
+                          exists [Condition: Code 'C71.1' from icd10]
+
+                        define InInitialPopulation:
+                          Criterion
+                        """);
+            }
+
+            @Test
+            void inlinesInclusionAndExclusion() {
+                var mappings = Map.of(C71_0, Mapping.of(C71_0, "Condition"), C71_1, Mapping.of(C71_1, "Condition"));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(
+                        List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_0)))),
+                        List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_1)))));
+
+                var library = Translator.of(mappingContext).toCql(structuredQuery).simplify();
+
+                assertThat(library).patientContextPrintsTo("""
+                        context Patient
+
+                        define "Criterion 1":
+                          exists [Condition: Code 'C71.0' from icd10]
+
+                        define "Criterion 2":
+                          exists [Condition: Code 'C71.1' from icd10]
+
+                        define InInitialPopulation:
+                          "Criterion 1" and
+                          not "Criterion 2"
+                        """);
+            }
+
+            @Test
+            void foldsConstantCriteria() {
+                var mappings = Map.of(C71_1, Mapping.of(C71_1, "Condition"));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(
+                        List.of(Criterion.FALSE, ConceptCriterion.of(ContextualConcept.of(C71_1))),
+                        List.of(Criterion.TRUE)));
+
+                var library = Translator.of(mappingContext).toCql(structuredQuery).simplify();
+
+                assertThat(library).patientContextPrintsTo("""
+                        context Patient
+
+                        define Criterion:
+                          exists [Condition: Code 'C71.1' from icd10]
+
+                        define InInitialPopulation:
+                          Criterion
+                        """);
+            }
+
+            @Test
+            void keepsSimplifiedLibrary() {
+                var mappings = Map.of(C71_1, Mapping.of(C71_1, "Condition"));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_1)))));
+                var library = Translator.of(mappingContext).toCql(structuredQuery).simplify();
+
+                assertSame(library, library.simplify());
+            }
+        }
+
+        @Nested
+        class LargeExpressions {
+
+            @Test
+            void conceptExpandingToManyCodes() {
+                var codes = IntStream.range(0, 100_000).mapToObj("C%05d"::formatted).toList();
+                var entries = new HashMap<String, MappingTreeModuleEntry>();
+                entries.put("C", new MappingTreeModuleEntry("C", codes));
+                var mappings = new HashMap<ContextualTermCode, Mapping>();
+                for (var code : codes) {
+                    entries.put(code, new MappingTreeModuleEntry(code, List.of()));
+                    var key = ContextualTermCode.of(CONTEXT, TermCode.of(C71.termCode().system(), code, code));
+                    mappings.put(key, Mapping.of(key, "Condition"));
+                }
+                var conceptTree = new MappingTreeBase(List.of(new MappingTreeModuleRoot(CONTEXT,
+                        C71.termCode().system(), entries)));
+                var mappingContext = MappingContext.of(mappings, conceptTree, CODE_SYSTEM_ALIASES);
+                var concept = ContextualTermCode.of(CONTEXT, TermCode.of(C71.termCode().system(), "C", "C"));
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(concept)))));
+
+                var library = Translator.of(mappingContext).toCql(structuredQuery);
+
+                var cql = library.print();
+                assertTrue(cql.contains("exists [Condition: Code 'C00000' from icd10] or"));
+                assertTrue(cql.contains("exists [Condition: Code 'C99999' from icd10]"));
+                assertTrue(library.collapseCodeLists().print().contains("Code 'C99999' from icd10 }]"));
+                assertEquals(cql, library.shareCommonSubexpressions().print());
+                assertEquals(cql, library.internExpressions().print());
+                assertEquals(cql, library.simplify().print());
+            }
+        }
+
+        @Nested
+        class Elm {
+
+            private static JsonNode criterion(String elm) {
+                return new ObjectMapper().readTree(elm).at("/library/statements/def/1/expression");
+            }
+
+            @Test
+            void timeRestriction() {
+                var mappings = Map.of(C71_1, Mapping.of(C71_1, "Condition", null, List.of(), List.of(),
+                        Mapping.TimeRestrictionMapping.of("onset", DATE_TIME, PERIOD)));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_1),
+                        TimeRestriction.of(LocalDate.of(2020, 1, 1), LocalDate.of(2020, 1, 2))))));
+
+                var query = criterion(Translator.of(mappingContext).toCql(structuredQuery).printElm()).get("operand");
+
+                assertEquals("Query", query.get("type").asString());
+                assertEquals("C", query.at("/source/0/alias").asString());
+                assertEquals("icd10", query.at("/source/0/expression/codes/operand/system/name").asString());
+                var in = query.at("/where/operand/0");
+                assertEquals("In", in.get("type").asString());
+                assertEquals("ToDate", in.at("/operand/0/type").asString());
+                assertEquals("ToDateTime", in.at("/operand/0/operand/name").asString());
+                assertEquals("{http://hl7.org/fhir}dateTime",
+                        in.at("/operand/0/operand/operand/0/asTypeSpecifier/name").asString());
+                assertEquals("C", in.at("/operand/0/operand/operand/0/operand/scope").asString());
+                assertEquals("2020", in.at("/operand/1/low/year/value").asString());
+                assertEquals("Overlaps", query.at("/where/operand/1/type").asString());
+            }
+
+            @Test
+            void attributeFilter() {
+                var mappings = Map.of(C71_1, Mapping.of(C71_1, "Condition", null, List.of(),
+                        List.of(VERIFICATION_STATUS_ATTR_MAPPING)));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_1))
+                        .appendAttributeFilter(ValueSetAttributeFilter.of(VERIFICATION_STATUS, CONFIRMED)))));
+
+                var where = criterion(Translator.of(mappingContext).toCql(structuredQuery).printElm())
+                        .at("/operand/where");
+
+                // the ELM the CQL compiler emits for `C.verificationStatus ~ Code 'confirmed' from ver_status`
+                // without locators and result types
+                assertEquals(new ObjectMapper().readTree("""
+                        {
+                          "type": "Equivalent",
+                          "operand": [
+                            {
+                              "type": "FunctionRef",
+                              "libraryName": "FHIRHelpers",
+                              "name": "ToConcept",
+                              "operand": [
+                                {
+                                  "type": "Property",
+                                  "path": "verificationStatus",
+                                  "scope": "C"
+                                }
+                              ]
+                            },
+                            {
+                              "type": "ToConcept",
+                              "operand": {
+                                "type": "Code",
+                                "code": "confirmed",
+                                "system": {
+                                  "name": "ver_status"
+                                }
+                              }
+                            }
+                          ]
+                        }
+                        """), where);
+            }
+
+            @Test
+            void valueSetCriterion() {
+                var mappings = Map.of(FRAILTY_SCORE, Mapping.of(FRAILTY_SCORE, "Observation",
+                        Mapping.PathMapping.of("value", Mapping.PathMapping.Type.CODEABLE_CONCEPT)));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(
+                        ValueSetCriterion.of(ContextualConcept.of(FRAILTY_SCORE), VERY_FIT))));
+
+                var where = criterion(Translator.of(mappingContext).toCql(structuredQuery).printElm())
+                        .at("/operand/where");
+
+                assertEquals("Equivalent", where.get("type").asString());
+                assertEquals("ToConcept", where.at("/operand/0/name").asString());
+                assertEquals("As", where.at("/operand/0/operand/0/type").asString());
+                assertEquals("{http://hl7.org/fhir}CodeableConcept",
+                        where.at("/operand/0/operand/0/asTypeSpecifier/name").asString());
+                assertEquals("value", where.at("/operand/0/operand/0/operand/path").asString());
+                assertEquals("ToConcept", where.at("/operand/1/type").asString());
+                assertEquals("1", where.at("/operand/1/operand/code").asString());
+            }
+
+            @Test
+            void numericCriterion() {
+                var mappings = Map.of(PLATELETS, Mapping.of(PLATELETS, "Observation",
+                        Mapping.PathMapping.of("value", Mapping.PathMapping.Type.QUANTITY)));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(NumericCriterion.of(
+                        ContextualConcept.of(PLATELETS), LESS_THAN, BigDecimal.valueOf(50), "g/dl"))));
+
+                var where = criterion(Translator.of(mappingContext).toCql(structuredQuery).printElm())
+                        .at("/operand/where");
+
+                assertEquals("Less", where.get("type").asString());
+                assertEquals("ToQuantity", where.at("/operand/0/name").asString());
+                assertEquals("50", where.at("/operand/1/value").asString());
+                assertEquals("g/dl", where.at("/operand/1/unit").asString());
+            }
+
+            @Test
+            void age() {
+                var mappings = Map.of(AGE, Mapping.of(AGE, "Patient"));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(NumericCriterion.of(
+                        ContextualConcept.of(AGE), GREATER_THAN, BigDecimal.valueOf(5), "a"))));
+
+                var expression = criterion(Translator.of(mappingContext).toCql(structuredQuery).printElm());
+
+                assertEquals("Greater", expression.get("type").asString());
+                assertEquals("CalculateAge", expression.at("/operand/0/type").asString());
+                assertEquals("Year", expression.at("/operand/0/precision").asString());
+                assertEquals("Patient", expression.at("/operand/0/operand/source/source/name").asString());
+                assertEquals("{urn:hl7-org:elm-types:r1}Integer", expression.at("/operand/1/valueType").asString());
+            }
+        }
+
+        @Nested
+        class Metrics {
+
+            @Test
+            void reportsTranslationAndExpansion() {
+                var mappings = Map.of(C71_0, Mapping.of(C71_0, "Condition"));
+                var conceptTree = new MappingTreeBase(List.of(createTreeRootWithChildren(C71, C71_0, C71_1)));
+                var mappingContext = MappingContext.of(mappings, conceptTree, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71))),
+                        List.of(Criterion.TRUE)));
+                var metrics = new SimpleTranslationMetrics();
+
+                Translator.of(mappingContext).withMetrics(metrics).toCql(structuredQuery);
+
+                var timers = metrics.timers();
+                assertEquals(1, timers.get(SimpleTranslationMetrics.TRANSLATION).count());
+                assertEquals(1, timers.get(SimpleTranslationMetrics.EXPANSION).count());
+                assertTrue(timers.get(SimpleTranslationMetrics.COMBINATION).count() > 0);
+                var counters = metrics.counters();
+                assertEquals(1, counters.get(SimpleTranslationMetrics.EXPANDED_CODES));
+                // C71 itself and C71.1 have no mapping
+                assertEquals(2, counters.get(SimpleTranslationMetrics.MAPPING_MISSES));
+            }
+
+            @Test
+            void reportsPrinting() {
+                var mappings = Map.of(C71_0, Mapping.of(C71_0, "Condition"));
+                var mappingContext = MappingContext.of(mappings, null, CODE_SYSTEM_ALIASES);
+                var structuredQuery = StructuredQuery.of(List.of(List.of(ConceptCriterion.of(ContextualConcept.of(C71_0)))));
+                var library = Translator.of(mappingContext).toCql(structuredQuery);
+                var metrics = new SimpleTranslationMetrics();
+                var out = new StringBuilder();
+
+                library.print(out, metrics);
+
+                assertEquals(library.print(), out.toString());
+                assertEquals(1, metrics.timers().get(SimpleTranslationMetrics.PRINT).count());
+                assertEquals(2, metrics.counters().get(SimpleTranslationMetrics.DEFINITIONS));
+                assertEquals(out.length(), metrics.counters().get(SimpleTranslationMetrics.OUTPUT_CHARS));
+            }
+        }
     }
 }
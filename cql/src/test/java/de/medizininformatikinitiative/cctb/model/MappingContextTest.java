@@ -9,7 +9,6 @@ import java.util.List;
 import java.util.Map;
 
 import static de.medizininformatikinitiative.cctb.Util.createTreeWithoutChildren;
-import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 class MappingContextTest {
@@ -19,7 +18,6 @@ class MappingContextTest {
     static final String CODE_SYSTEM_URL = "url-164919";
     static final String ALIAS = "alias-164923";
     static final String MISSING_CODE_SYSTEM_URL = "missing-url-165330";
-    static final String GENERATED_ALIAS_PATTERN = "codeSystem\\d+";
 
     @Test
     void expandConcept_EmptyContext() {
@@ -64,7 +62,19 @@ class MappingContextTest {
 
         var definition = context.getCodeSystemDefinition(MISSING_CODE_SYSTEM_URL);
 
-        assertThat(definition.name()).matches(GENERATED_ALIAS_PATTERN);
+        assertFalse(definition.aliased());
         assertEquals(MISSING_CODE_SYSTEM_URL, definition.system());
     }
+
+    @Test
+    void codeSystemDefinition_MissingAlias_DoesNotDependOnPreviousCalls() {
+        var context = MappingContext.of(Map.of(), null, Map.of());
+        var first = context.getCodeSystemDefinition(MISSING_CODE_SYSTEM_URL);
+
+        context.getCodeSystemDefinition(CODE_SYSTEM_URL);
+
+        assertEquals(first, context.getCodeSystemDefinition(MISSING_CODE_SYSTEM_URL));
+        assertEquals(MappingContext.of(Map.of(), null, Map.of()).getCodeSystemDefinition(MISSING_CODE_SYSTEM_URL),
+                context.getCodeSystemDefinition(MISSING_CODE_SYSTEM_URL));
+    }
 }
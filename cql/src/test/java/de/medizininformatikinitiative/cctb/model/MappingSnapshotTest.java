@@ -0,0 +1,180 @@
+package de.medizininformatikinitiative.cctb.model;
+
+import de.medizininformatikinitiative.cctb.model.common.TermCode;
+import de.medizininformatikinitiative.cctb.model.cql.CodeSystemDefinition;
+import de.medizininformatikinitiative.cctb.model.structured_query.CodeEquivalentModifier;
+import de.medizininformatikinitiative.cctb.model.structured_query.CodeModifier;
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualConcept;
+import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTermCode;
+import de.medizininformatikinitiative.cctb.model.structured_query.ReferenceModifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static de.medizininformatikinitiative.cctb.model.Mapping.Cardinality.MANY;
+import static de.medizininformatikinitiative.cctb.model.Mapping.Cardinality.SINGLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MappingSnapshotTest {
+
+    static final TermCode CONTEXT = TermCode.of("context", "context", "context");
+    static final ContextualTermCode C1 = ContextualTermCode.of(CONTEXT, TermCode.of("sys", "c1", "c1-d"));
+    static final ContextualTermCode C2 = ContextualTermCode.of(CONTEXT, TermCode.of("sys", "c2", "c2-d"));
+    static final TermCode ATTRIBUTE = TermCode.of("attr-sys", "attr", "Attribute");
+
+    @TempDir
+    Path dir;
+
+    private static Mapping fullMapping() {
+        return new Mapping(C1, "Observation",
+                Mapping.PathMapping.of("value", Mapping.PathMapping.Type.QUANTITY),
+                List.of(CodeModifier.of("status", "final", "amended"),
+                        CodeEquivalentModifier.of("category", MANY, TermCode.of("cat-sys", "lab", "Laboratory"))),
+                Map.of(ATTRIBUTE, new AttributeMapping(List.of("Coding"), ATTRIBUTE, "method", null, SINGLE)),
+                Mapping.TimeRestrictionMapping.of("effective", Mapping.TimeRestrictionMapping.Type.DATE_TIME),
+                TermCode.of("primary-sys", "primary", "Primary"),
+                Mapping.PathMapping.of("code", Mapping.PathMapping.Type.CODEABLE_CONCEPT));
+    }
+
+    private static MappingTreeBase conceptTree() {
+        return new MappingTreeBase(List.of(new MappingTreeModuleRoot(CONTEXT, "sys", Map.of(
+                "c1", new MappingTreeModuleEntry("c1", List.of("c2")),
+                "c2", new MappingTreeModuleEntry("c2", List.of())))));
+    }
+
+    @Test
+    void readWrite() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        var mappings = List.of(fullMapping(), Mapping.of(C2, "Condition"));
+
+        MappingSnapshot.write(file, mappings, conceptTree(), Map.of("sys", "alias"));
+        var context = MappingSnapshot.read(file);
+
+        assertThat(context.findMapping(C1)).get().usingRecursiveComparison().isEqualTo(fullMapping());
+        assertThat(context.findMapping(C2)).get().usingRecursiveComparison().isEqualTo(Mapping.of(C2, "Condition"));
+        assertThat(context.expandConcept(ContextualConcept.of(C1))).containsExactly(C1, C2);
+        assertThat(context.getCodeSystemDefinition("sys")).isEqualTo(CodeSystemDefinition.of("alias", "sys"));
+    }
+
+    @Test
+    void readWrite_KeepsDisplays() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        var other = TermCode.of("sys", "c1", "other display");
+        var mapping = new Mapping(C1, "Observation", null,
+                List.of(CodeEquivalentModifier.of("category", other)), Map.of(), null, null, null);
+
+        MappingSnapshot.write(file, List.of(mapping), null, Map.of());
+        var context = MappingSnapshot.read(file);
+
+        var fixedCriterion = (CodeEquivalentModifier) context.findMapping(C1).orElseThrow().fixedCriteria().get(0);
+        assertThat(fixedCriterion.concepts().get(0).display()).isEqualTo("other display");
+        assertThat(context.findMapping(C1).orElseThrow().key().termCode().display()).isEqualTo("c1-d");
+    }
+
+    @Test
+    void open() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        MappingSnapshot.write(file, List.of(fullMapping(), Mapping.of(C2, "Condition")), conceptTree(),
+                Map.of("sys", "alias"));
+
+        var context = MappingSnapshot.open(file, MappingSnapshot.DEFAULT_CACHE_SIZE);
+
+        assertThat(context.findMapping(C1)).get().usingRecursiveComparison().isEqualTo(fullMapping());
+        assertThat(context.findMapping(C2)).get().usingRecursiveComparison().isEqualTo(Mapping.of(C2, "Condition"));
+        assertThat(context.findMapping(ContextualTermCode.of(CONTEXT, TermCode.of("sys", "c3", "c3-d")))).isEmpty();
+        assertThat(context.expandConcept(ContextualConcept.of(C1))).containsExactly(C1, C2);
+        assertThat(context.getCodeSystemDefinition("sys")).isEqualTo(CodeSystemDefinition.of("alias", "sys"));
+    }
+
+    @Test
+    void open_EvictsLeastRecentlyUsedMappings() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        MappingSnapshot.write(file, List.of(Mapping.of(C1, "Observation"), Mapping.of(C2, "Condition")), null,
+                Map.of());
+
+        var context = MappingSnapshot.open(file, 1);
+        var mapping = context.findMapping(C1).orElseThrow();
+
+        assertThat(context.findMapping(C1)).containsSame(mapping);
+        assertThat(context.findMapping(C2)).get().extracting(Mapping::resourceType).isEqualTo("Condition");
+        assertThat(context.findMapping(C1)).get().isNotSameAs(mapping)
+                .extracting(Mapping::resourceType).isEqualTo("Observation");
+    }
+
+    @Test
+    void open_KeepsFirstMappingOfKey() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        MappingSnapshot.write(file, List.of(Mapping.of(C1, "Observation"), Mapping.of(C1, "Condition")), null,
+                Map.of());
+
+        var context = MappingSnapshot.open(file, 1);
+
+        assertThat(context.findMapping(C1)).get().extracting(Mapping::resourceType).isEqualTo("Observation");
+    }
+
+    @Test
+    void write_UnsupportedFixedCriterion() {
+        var file = dir.resolve("mapping.snapshot");
+        var mapping = new Mapping(C1, "Observation", null,
+                List.of(new ReferenceModifier("subject", "Patient", List.of())), Map.of(), null, null, null);
+
+        assertThatThrownBy(() -> MappingSnapshot.write(file, List.of(mapping), null, Map.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void read_NoSnapshot() throws IOException {
+        var file = dir.resolve("mapping.json");
+        Files.writeString(file, "[]");
+
+        assertThatThrownBy(() -> MappingSnapshot.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Not a mapping snapshot.");
+    }
+
+    @Test
+    void read_Truncated() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        MappingSnapshot.write(file, List.of(fullMapping()), conceptTree(), Map.of());
+        var bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertThatThrownBy(() -> MappingSnapshot.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageStartingWith("Truncated or corrupt mapping snapshot");
+    }
+
+    @Test
+    void read_NegativeStringCount() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        MappingSnapshot.write(file, List.of(fullMapping()), conceptTree(), Map.of());
+        var bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(8, -1);
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> MappingSnapshot.read(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageStartingWith("Truncated or corrupt mapping snapshot");
+    }
+
+    @Test
+    void open_BlobBeyondEnd() throws IOException {
+        var file = dir.resolve("mapping.snapshot");
+        MappingSnapshot.write(file, List.of(fullMapping()), conceptTree(), Map.of());
+        var bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(12, Integer.MAX_VALUE);
+        Files.write(file, bytes);
+
+        assertThatThrownBy(() -> MappingSnapshot.open(file, MappingSnapshot.DEFAULT_CACHE_SIZE))
+                .isInstanceOf(IOException.class)
+                .hasMessageStartingWith("Truncated or corrupt mapping snapshot");
+    }
+}
@@ -7,6 +7,7 @@ import de.medizininformatikinitiative.cctb.model.structured_query.ContextualTerm
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -191,6 +192,71 @@ class MappingTreeBaseTest {
                 contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C5));
     }
 
+    @Test
+    void expand_sharedChild_isReturnedOnce() {
+        var base = new MappingTreeBase(List.of(
+                new MappingTreeModuleRoot(CONTEXT_1, SYSTEM_1,
+                        Map.of(C1, new MappingTreeModuleEntry(C1, List.of(C2, C3)),
+                                C2, new MappingTreeModuleEntry(C2, List.of(C4)),
+                                C3, new MappingTreeModuleEntry(C3, List.of(C4)),
+                                C4, new MappingTreeModuleEntry(C4, List.of())))));
+
+        var result = base.expand(contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C1)).toList();
+
+        assertThat(result).containsExactly(
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C1),
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C2),
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C4),
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C3));
+    }
+
+    @Test
+    void expand_twoModules_sameContextAndSystem() {
+        var base = new MappingTreeBase(List.of(
+                new MappingTreeModuleRoot(CONTEXT_1, SYSTEM_1,
+                        Map.of(C1, new MappingTreeModuleEntry(C1, List.of(C2)),
+                                C2, new MappingTreeModuleEntry(C2, List.of()))),
+                new MappingTreeModuleRoot(CONTEXT_1, SYSTEM_1,
+                        Map.of(C1, new MappingTreeModuleEntry(C1, List.of(C3)),
+                                C3, new MappingTreeModuleEntry(C3, List.of())))));
+
+        var result = base.expand(contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C1)).toList();
+
+        assertThat(result).containsExactly(
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C1),
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C2),
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C1),
+                contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C3));
+    }
+
+    @Test
+    void expand_repeatedly() {
+        var base = new MappingTreeBase(List.of(
+                new MappingTreeModuleRoot(CONTEXT_1, SYSTEM_1,
+                        Map.of(C1, new MappingTreeModuleEntry(C1, List.of(C2)),
+                                C2, new MappingTreeModuleEntry(C2, List.of())))));
+        var termCode = contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, C1);
+
+        var first = base.expand(termCode).toList();
+        var second = base.expand(termCode).toList();
+
+        assertThat(second).isEqualTo(first).hasSize(2);
+    }
+
+    @Test
+    void expand_deepTree() {
+        var entries = new HashMap<String, MappingTreeModuleEntry>();
+        for (int i = 0; i < 100_000; i++) {
+            entries.put("c" + i, new MappingTreeModuleEntry("c" + i, i < 99_999 ? List.of("c" + (i + 1)) : List.of()));
+        }
+        var base = new MappingTreeBase(List.of(new MappingTreeModuleRoot(CONTEXT_1, SYSTEM_1, entries)));
+
+        var result = base.expand(contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, "c0")).toList();
+
+        assertThat(result).hasSize(100_000);
+        assertThat(result.get(99_999)).isEqualTo(contextualTermCodeMappingOf(CONTEXT_1, SYSTEM_1, "c99999"));
+    }
+
     @Test
     void fromJson() throws Exception {
         var base = parse("""
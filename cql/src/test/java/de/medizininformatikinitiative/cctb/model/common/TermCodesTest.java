@@ -0,0 +1,33 @@
+package de.medizininformatikinitiative.cctb.model.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TermCodesTest {
+
+    @Test
+    void internReturnsSameInstanceForEqualTermCodes() {
+        var termCode = TermCodes.intern(TermCode.of("system-104512", "code-104517", "display-104521"));
+
+        assertThat(TermCodes.intern(TermCode.of("system-104512", "code-104517", "display-104521")))
+                .isSameAs(termCode);
+    }
+
+    @Test
+    void internKeepsDisplay() {
+        var termCode = TermCodes.intern(TermCode.of("system-104512", "code-104601", "display-104605"));
+
+        var other = TermCodes.intern(TermCode.of("system-104512", "code-104601", "display-104614"));
+
+        assertThat(other).isNotSameAs(termCode).isEqualTo(termCode);
+        assertThat(other.display()).isEqualTo("display-104614");
+    }
+
+    @Test
+    void internSharesStrings() {
+        var termCode = TermCodes.intern(TermCode.of(new String("system-104512"), "code-104702", "display"));
+
+        assertThat(termCode.system()).isSameAs(TermCodes.intern("system-104512"));
+    }
+}
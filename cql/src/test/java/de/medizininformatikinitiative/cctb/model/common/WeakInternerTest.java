@@ -0,0 +1,42 @@
+package de.medizininformatikinitiative.cctb.model.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeakInternerTest {
+
+    private final WeakInterner<String> interner = new WeakInterner<>(String::hashCode, String::equals);
+
+    @Test
+    void keepsReachableInstances() {
+        var canonical = interner.intern(new String("value"), UnaryOperator.identity());
+
+        System.gc();
+
+        assertThat(interner.intern(new String("value"), UnaryOperator.identity())).isSameAs(canonical);
+    }
+
+    @Test
+    void canonicalizesNewInstances() {
+        var canonical = interner.intern("value", String::toUpperCase);
+
+        assertThat(canonical).isEqualTo("VALUE");
+    }
+
+    @Test
+    void dropsCollectedInstances() throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            interner.intern("value-" + i, UnaryOperator.identity());
+        }
+
+        for (int i = 0; i < 100 && interner.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(interner.size()).isZero();
+    }
+}
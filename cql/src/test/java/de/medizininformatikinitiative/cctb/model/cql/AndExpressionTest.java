@@ -3,6 +3,8 @@ package de.medizininformatikinitiative.cctb.model.cql;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.UnaryOperator;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -25,4 +27,38 @@ class AndExpressionTest {
 
         assertThat(result).isEqualTo(expr);
     }
+
+    @Test
+    void mapChildrenKeepsExpressionIfNothingChanges() {
+        var expr = AndExpression.of(ExistsExpression.of(QuantityExpression.of(BigDecimal.ONE)),
+                ExistsExpression.of(QuantityExpression.of(BigDecimal.TEN)));
+
+        assertThat(expr.mapChildren(UnaryOperator.identity())).isSameAs(expr);
+    }
+
+    @Test
+    void mapChildrenCopiesOnlyFromChangedOperand() {
+        var first = ExistsExpression.of(QuantityExpression.of(BigDecimal.ONE));
+        var expr = new AndExpression(List.of(first, ExistsExpression.of(QuantityExpression.of(BigDecimal.TEN))));
+
+        var result = (AndExpression) expr.mapChildren(child -> child == first ? child : Expression.FALSE);
+
+        assertThat(result.expressions()).containsExactly(first, Expression.FALSE);
+    }
+
+    @Test
+    void createFromListSameAsReduction() {
+        var expressions = List.<DefaultExpression>of(ExistsExpression.of(QuantityExpression.of(BigDecimal.ONE)),
+                Expression.TRUE, ExistsExpression.of(QuantityExpression.of(BigDecimal.TEN)),
+                ExistsExpression.of(QuantityExpression.of(BigDecimal.ZERO)));
+
+        var result = AndExpression.of(expressions);
+
+        assertThat(result).isEqualTo(expressions.stream().reduce(AndExpression::of).orElseThrow());
+    }
+
+    @Test
+    void createFromListOfTrue() {
+        assertThat(AndExpression.of(List.of(Expression.TRUE, Expression.TRUE))).isSameAs(Expression.TRUE);
+    }
 }
@@ -0,0 +1,65 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import de.medizininformatikinitiative.cctb.PrintContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BooleanExpressionsTest {
+
+    private static final DefaultExpression A = existsCondition("a");
+    private static final DefaultExpression B = existsCondition("b");
+
+    private static DefaultExpression existsCondition(String code) {
+        return ExistsExpression.of(RetrieveExpression.of("Condition", CodeSelector.of(code, "system")));
+    }
+
+    private static String simplify(DefaultExpression expression) {
+        var definitions = BooleanExpressions.simplify(List.of(ExpressionDefinition.of("D", expression)), Set.of());
+        return definitions.get(0).expression().print(PrintContext.ZERO);
+    }
+
+    @Test
+    void removesDuplicateOperands() {
+        assertThat(simplify(OrExpression.of(List.of(A, B, A)))).isEqualTo(OrExpression.of(A, B).print(PrintContext.ZERO));
+    }
+
+    @Test
+    void removesAbsorbedOperands() {
+        assertThat(simplify(AndExpression.of(A, OrExpression.of(B, A)))).isEqualTo(A.print(PrintContext.ZERO));
+        assertThat(simplify(OrExpression.of(AndExpression.of(A, B), A))).isEqualTo(A.print(PrintContext.ZERO));
+    }
+
+    @Test
+    void foldsConstants() {
+        assertThat(simplify(AndExpression.of(A, Expression.FALSE))).isEqualTo("false");
+        assertThat(simplify(OrExpression.of(Expression.FALSE, A))).isEqualTo(A.print(PrintContext.ZERO));
+        assertThat(simplify(NotExpression.of(OrExpression.of(A, Expression.TRUE)))).isEqualTo("false");
+    }
+
+    @Test
+    void foldsDoubleNegation() {
+        assertThat(simplify(NotExpression.of(NotExpression.of(A)))).isEqualTo(A.print(PrintContext.ZERO));
+    }
+
+    @Test
+    void removesQueryWithoutClauses() {
+        var retrieve = RetrieveExpression.of("Condition", CodeSelector.of("a", "system"));
+        var query = QueryExpression.of(SourceClause.of(AliasedQuerySource.of(retrieve,
+                StandardIdentifierExpression.of("C"))));
+
+        assertThat(simplify(ExistsExpression.of(query))).isEqualTo(A.print(PrintContext.ZERO));
+        assertThat(simplify(ExistsExpression.of(query.updateWhereClauseExpr(where -> Expression.FALSE))))
+                .isEqualTo("false");
+    }
+
+    @Test
+    void keepsDefinitionsWithoutSimplification() {
+        var definitions = List.of(ExpressionDefinition.of("D", OrExpression.of(A, B)));
+
+        assertThat(BooleanExpressions.simplify(definitions, Set.of())).isSameAs(definitions);
+    }
+}
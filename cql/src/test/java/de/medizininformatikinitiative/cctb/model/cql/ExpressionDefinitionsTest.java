@@ -0,0 +1,131 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static de.medizininformatikinitiative.cctb.model.cql.Expression.FALSE;
+import static de.medizininformatikinitiative.cctb.model.cql.Expression.TRUE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpressionDefinitionsTest {
+
+    static final ExpressionDefinition A = ExpressionDefinition.of("a", TRUE);
+    static final ExpressionDefinition A_FALSE = ExpressionDefinition.of("a", FALSE);
+    static final ExpressionDefinition B = ExpressionDefinition.of("b", TRUE);
+    static final ExpressionDefinition C = ExpressionDefinition.of("c", TRUE);
+
+    @Nested
+    class AppendByUniqueName {
+
+        @Test
+        void empty() {
+            var definitions = ExpressionDefinitions.of().appendByUniqueName(A);
+
+            assertThat(definitions.toList()).containsExactly(A);
+            assertThat(definitions.size()).isEqualTo(1);
+        }
+
+        @Test
+        void keepsFirstDefinitionOfName() {
+            var definitions = ExpressionDefinitions.of(List.of(A, B));
+
+            assertThat(definitions.appendByUniqueName(A_FALSE)).isSameAs(definitions);
+        }
+
+        @Test
+        void hashCollision() {
+            // "Aa" and "BB" have the same hash code
+            var aa = ExpressionDefinition.of("Aa", TRUE);
+            var bb = ExpressionDefinition.of("BB", TRUE);
+
+            var definitions = ExpressionDefinitions.of(List.of(aa, bb, aa));
+
+            assertThat(definitions.toList()).containsExactly(aa, bb);
+            assertThat(definitions.containsName(StandardIdentifierExpression.of("Aa"))).isTrue();
+            assertThat(definitions.containsName(StandardIdentifierExpression.of("BB"))).isTrue();
+        }
+
+        @Test
+        void suffixedIdentifiersAreDistinct() {
+            var definitions = ExpressionDefinitions.of(List.of(
+                    ExpressionDefinition.of(SuffixedIdentifierExpression.of("Criterion"), TRUE),
+                    ExpressionDefinition.of(SuffixedIdentifierExpression.of("Criterion"), TRUE)));
+
+            assertThat(definitions.size()).isEqualTo(2);
+        }
+
+        @Test
+        void many() {
+            var definitions = IntStream.range(0, 100_000)
+                    .mapToObj(i -> ExpressionDefinition.of("d" + i, TRUE))
+                    .reduce(ExpressionDefinitions.of(), ExpressionDefinitions::appendByUniqueName, (a, b) -> b);
+
+            assertThat(definitions.size()).isEqualTo(100_000);
+            assertThat(definitions.toList()).hasSize(100_000);
+            assertThat(definitions.toList().get(99_999).name()).isEqualTo(StandardIdentifierExpression.of("d99999"));
+        }
+    }
+
+    @Nested
+    class UnionByName {
+
+        @Test
+        void withEmpty() {
+            var definitions = ExpressionDefinitions.of(List.of(A));
+
+            assertThat(definitions.unionByName(ExpressionDefinitions.of())).isSameAs(definitions);
+            assertThat(ExpressionDefinitions.of().unionByName(definitions)).isSameAs(definitions);
+        }
+
+        @Test
+        void smallerFirst() {
+            var a = ExpressionDefinitions.of(List.of(A));
+            var b = ExpressionDefinitions.of(List.of(B, A_FALSE, C));
+
+            var union = a.unionByName(b);
+
+            assertThat(union.toList()).containsExactly(A, B, C);
+            assertThat(union.size()).isEqualTo(3);
+        }
+
+        @Test
+        void largerFirst() {
+            var a = ExpressionDefinitions.of(List.of(B, A, C));
+            var b = ExpressionDefinitions.of(List.of(A_FALSE));
+
+            var union = a.unionByName(b);
+
+            assertThat(union.toList()).containsExactly(B, A, C);
+            assertThat(union.size()).isEqualTo(3);
+        }
+
+        @Test
+        void appendAfterUnionWithDuplicate() {
+            var union = ExpressionDefinitions.of(List.of(A)).unionByName(ExpressionDefinitions.of(List.of(A_FALSE, B)));
+
+            assertThat(union.appendByUniqueName(C).toList()).containsExactly(A, B, C);
+        }
+
+        @Test
+        void withItselfIsSame() {
+            var definitions = ExpressionDefinitions.of(List.of(A, B));
+
+            assertThat(definitions.unionByName(definitions)).isSameAs(definitions);
+        }
+
+        @Test
+        void repeatedUnionsOfSameDefinitions() {
+            var shared = ExpressionDefinitions.of(List.of(A, B));
+            var union = ExpressionDefinitions.of(List.of(C));
+            for (int i = 0; i < 1000; i++) {
+                union = union.unionByName(shared);
+            }
+
+            assertThat(union.toList()).containsExactly(C, A, B);
+            assertThat(union.size()).isEqualTo(3);
+        }
+    }
+}
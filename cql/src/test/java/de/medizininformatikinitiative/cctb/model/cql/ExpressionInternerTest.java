@@ -0,0 +1,84 @@
+package de.medizininformatikinitiative.cctb.model.cql;
+
+import de.medizininformatikinitiative.cctb.PrintContext;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpressionInternerTest {
+
+    private static DefaultExpression exists(String code) {
+        var retrieve = RetrieveExpression.of("Condition", CodeSelector.of(code, "http://fhir.de/CodeSystem/bfarm/icd-10-gm"));
+        return ExistsExpression.of(QueryExpression.of(SourceClause.of(AliasedQuerySource.of(retrieve,
+                StandardIdentifierExpression.of("C")))));
+    }
+
+    @Test
+    void sharesEqualSubtrees() {
+        var interner = ExpressionInterner.of();
+
+        var a = interner.intern(exists("C71.1"));
+        var b = interner.intern(exists("C71.1"));
+
+        assertThat(b).isSameAs(a);
+    }
+
+    @Test
+    void sharesEqualChildrenOfDifferentExpressions() {
+        var interner = ExpressionInterner.of();
+        var code = CodeSelector.of("C71.1", "http://fhir.de/CodeSystem/bfarm/icd-10-gm");
+
+        var a = interner.intern(InvocationExpression.of(code, "code"));
+        var b = interner.intern(InvocationExpression.of(CodeSelector.of("C71.1",
+                "http://fhir.de/CodeSystem/bfarm/icd-10-gm"), "system"));
+
+        assertThat(b.expression()).isSameAs(a.expression()).isSameAs(code);
+    }
+
+    @Test
+    void keepsDifferentExpressions() {
+        var interner = ExpressionInterner.of();
+
+        var a = interner.intern(exists("C71.1"));
+        var b = interner.intern(exists("C71.2"));
+
+        assertThat(b).isNotEqualTo(a);
+        assertThat(b.print(PrintContext.ZERO)).contains("C71.2");
+    }
+
+    @Test
+    void internsOperandsOfBooleanExpressions() {
+        var interner = ExpressionInterner.of();
+
+        var or = (OrExpression) interner.intern(OrExpression.of(exists("C71.1"), exists("C71.1")));
+
+        assertThat(or.expressions().get(1)).isSameAs(or.expressions().get(0));
+    }
+
+    @Test
+    void countsDistinctExpressions() {
+        var interner = ExpressionInterner.of();
+
+        interner.intern(exists("C71.1"));
+        var size = interner.size();
+        interner.intern(exists("C71.1"));
+
+        // exists, query, retrieve, code selector and the where clause expression true
+        assertThat(size).isEqualTo(5);
+        assertThat(interner.size()).isEqualTo(size);
+    }
+
+    @Test
+    void sharesDeepChains() {
+        var interner = ExpressionInterner.of();
+        DefaultExpression a = exists("C71.1");
+        DefaultExpression b = exists("C71.1");
+        for (int i = 0; i < 100_000; i++) {
+            a = NotExpression.of(a);
+            b = NotExpression.of(b);
+        }
+
+        assertThat(interner.intern(b)).isSameAs(interner.intern(a));
+        assertThat(interner.size()).isEqualTo(100_005);
+    }
+}
@@ -4,7 +4,11 @@ import de.medizininformatikinitiative.cctb.PrintContext;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.function.UnaryOperator;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class QueryExpressionTest {
 
@@ -71,4 +75,37 @@ class QueryExpressionTest {
                       where false)""", s);
         }
     }
+
+    @Nested
+    class MapChildren {
+
+        private final AliasedQuerySource source = AliasedQuerySource.of(RetrieveExpression.of("Observation"),
+                StandardIdentifierExpression.of("O"));
+        private final WithClause withClause = WithClause.of(AliasedQuerySource.of(RetrieveExpression.of("Condition"),
+                StandardIdentifierExpression.of("C")), Expression.TRUE);
+        private final QueryExpression query = QueryExpression.of(SourceClause.of(source),
+                WhereClause.of(Expression.FALSE)).appendQueryInclusionClause(withClause);
+
+        @Test
+        void keepsQueryIfNothingChanges() {
+            assertSame(query, query.mapChildren(UnaryOperator.identity()));
+        }
+
+        @Test
+        void keepsUntouchedClauses() {
+            var mapped = query.mapChildren(child -> child == Expression.FALSE ? Expression.TRUE : child);
+
+            assertSame(query.sourceClause(), mapped.sourceClause());
+            assertSame(query.queryInclusionClauses(), mapped.queryInclusionClauses());
+            assertSame(Expression.TRUE, mapped.whereClause().expression());
+        }
+
+        @Test
+        void copiesChangedWithClause() {
+            var mapped = query.mapChildren(child -> child == Expression.TRUE ? Expression.FALSE : child);
+
+            assertSame(query.whereClause(), mapped.whereClause());
+            assertEquals(List.of(WithClause.of(withClause.source(), Expression.FALSE)), mapped.queryInclusionClauses());
+        }
+    }
 }
@@ -1,10 +1,13 @@
 package de.medizininformatikinitiative.cctb.model.structured_query;
 
+import de.medizininformatikinitiative.cctb.model.common.Comparator;
+import de.medizininformatikinitiative.cctb.model.common.TermCode;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,6 +21,9 @@ class CriterionTest {
     @Nested
     class FromJson {
 
+        static final TermCode CONTEXT = TermCode.of("fdpg.mii.cds", "Laboruntersuchung", "Laboruntersuchung");
+        static final TermCode PLATELETS = TermCode.of("http://loinc.org", "26515-7", "Platelets");
+
         ObjectMapper mapper = new ObjectMapper();
 
         @Test
@@ -139,6 +145,109 @@ class CriterionTest {
                     .isEqualTo(TimeRestriction.of(LocalDate.of(2024, 11, 20), LocalDate.of(2024, 11, 20)));
         }
 
+        @Test
+        void propertiesInAnyOrder() throws JacksonException {
+            assertThat(mapper.readValue("""
+                    {
+                      "valueFilter": {
+                        "unit": {
+                          "display": "g/dl",
+                          "code": "g/dl"
+                        },
+                        "value": 50,
+                        "extension": {
+                          "nested": [1, 2]
+                        },
+                        "comparator": "lt",
+                        "type": "quantity-comparator"
+                      },
+                      "termCodes": [
+                        {
+                          "code": "26515-7",
+                          "system": "http://loinc.org",
+                          "display": "Platelets"
+                        }
+                      ],
+                      "context": {
+                        "code": "Laboruntersuchung",
+                        "system": "fdpg.mii.cds",
+                        "display": "Laboruntersuchung"
+                      }
+                    }
+                    """, Criterion.class)).isEqualTo(NumericCriterion.of(ContextualConcept.of(CONTEXT,
+                    Concept.of(PLATELETS)), Comparator.LESS_THAN, BigDecimal.valueOf(50), "g/dl"));
+        }
+
+        @Test
+        void attributeFilters() throws JacksonException {
+            assertThat(mapper.readValue("""
+                    {
+                      "context": {
+                        "code": "Laboruntersuchung",
+                        "system": "fdpg.mii.cds",
+                        "display": "Laboruntersuchung"
+                      },
+                      "termCodes": [
+                        {
+                          "code": "26515-7",
+                          "system": "http://loinc.org",
+                          "display": "Platelets"
+                        }
+                      ],
+                      "attributeFilters": [
+                        {
+                          "type": "quantity-range",
+                          "attributeCode": {
+                            "code": "value",
+                            "system": "attribute",
+                            "display": "Value"
+                          },
+                          "minValue": 10,
+                          "maxValue": 20
+                        },
+                        {
+                          "type": "concept",
+                          "attributeCode": {
+                            "code": "status",
+                            "system": "attribute",
+                            "display": "Status"
+                          },
+                          "selectedConcepts": []
+                        }
+                      ]
+                    }
+                    """, Criterion.class)).isEqualTo(ConceptCriterion.of(ContextualConcept.of(CONTEXT,
+                            Concept.of(PLATELETS)))
+                    .appendAttributeFilter(RangeAttributeFilter.of(TermCode.of("attribute", "value", "Value"),
+                            BigDecimal.valueOf(10), BigDecimal.valueOf(20))));
+        }
+
+        @Test
+        void unknownAttributeFilterType() {
+            assertThatThrownBy(() -> mapper.readValue("""
+                    {
+                      "context": {
+                        "system": "context",
+                        "code": "context",
+                        "display": "context"
+                      },
+                      "termCodes": [],
+                      "attributeFilters": [
+                        {
+                          "type": "foo",
+                          "attributeCode": {
+                            "system": "attribute",
+                            "code": "foo",
+                            "display": "Foo"
+                          }
+                        }
+                      ]
+                    }
+                    """, Criterion.class))
+                    .isInstanceOf(JacksonException.class)
+                    .hasRootCauseMessage("unknown attribute filter type: foo");
+        }
+
         @Nested
         class WithReferenceAttributeFilter {
 
@@ -259,4 +368,42 @@ class CriterionTest {
             }
         }
     }
+
+    @Nested
+    class Equality {
+
+        static final TermCode CONTEXT = TermCode.of("fdpg.mii.cds", "Laboruntersuchung", "Laboruntersuchung");
+        static final TermCode PLATELETS = TermCode.of("http://loinc.org", "26515-7", "Platelets");
+        static final TermCode STATUS = TermCode.of("http://hl7.org/fhir", "observation-status", "observation-status");
+
+        @Test
+        void scaleOfNumericAttributeFilterValueIsIrrelevant() {
+            var a = ConceptCriterion.of(ContextualConcept.of(CONTEXT, Concept.of(PLATELETS)))
+                    .appendAttributeFilter(NumericAttributeFilter.of(STATUS, Comparator.GREATER_THAN, new BigDecimal("5")));
+            var b = ConceptCriterion.of(ContextualConcept.of(CONTEXT, Concept.of(PLATELETS)))
+                    .appendAttributeFilter(NumericAttributeFilter.of(STATUS, Comparator.GREATER_THAN, new BigDecimal("5.0")));
+
+            assertThat(a).isEqualTo(b).hasSameHashCodeAs(b);
+        }
+
+        @Test
+        void scaleOfRangeAttributeFilterBoundsIsIrrelevant() {
+            var a = ConceptCriterion.of(ContextualConcept.of(CONTEXT, Concept.of(PLATELETS)))
+                    .appendAttributeFilter(RangeAttributeFilter.of(STATUS, new BigDecimal("1"), new BigDecimal("20")));
+            var b = ConceptCriterion.of(ContextualConcept.of(CONTEXT, Concept.of(PLATELETS)))
+                    .appendAttributeFilter(RangeAttributeFilter.of(STATUS, new BigDecimal("1.00"), new BigDecimal("2E+1")));
+
+            assertThat(a).isEqualTo(b).hasSameHashCodeAs(b);
+        }
+
+        @Test
+        void valuesOfAttributeFiltersAreDistinguished() {
+            var a = ConceptCriterion.of(ContextualConcept.of(CONTEXT, Concept.of(PLATELETS)))
+                    .appendAttributeFilter(NumericAttributeFilter.of(STATUS, Comparator.GREATER_THAN, new BigDecimal("5")));
+            var b = ConceptCriterion.of(ContextualConcept.of(CONTEXT, Concept.of(PLATELETS)))
+                    .appendAttributeFilter(NumericAttributeFilter.of(STATUS, Comparator.GREATER_THAN, new BigDecimal("5.1")));
+
+            assertThat(a).isNotEqualTo(b);
+        }
+    }
 }
@@ -1,11 +1,17 @@
 package de.medizininformatikinitiative.cctb.model.structured_query;
 
+import de.medizininformatikinitiative.cctb.model.MappingTreeBase;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.exc.ValueInstantiationException;
 import de.medizininformatikinitiative.cctb.model.common.TermCode;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDate;
+import java.util.List;
+
+import static de.medizininformatikinitiative.cctb.Util.createTreeWithChildren;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
@@ -18,6 +24,10 @@ class StructuredQueryTest {
     static final TermCode TC_2_TC = TermCode.of("tc", "2", "");
     static final ContextualTermCode TC_1 = ContextualTermCode.of(CONTEXT, TC_1_TC);
     static final ContextualTermCode TC_2 = ContextualTermCode.of(CONTEXT, TC_2_TC);
+    static final ContextualTermCode TC_3 = ContextualTermCode.of(CONTEXT, TermCode.of("tc", "3", ""));
+    static final MappingTreeBase CONCEPT_TREE = createTreeWithChildren(TC_1, TC_2, TC_3);
+    static final Criterion CRITERION_1 = ConceptCriterion.of(ContextualConcept.of(TC_1));
+    static final Criterion CRITERION_2 = ConceptCriterion.of(ContextualConcept.of(TC_2));
 
 
     @Test
@@ -175,4 +185,50 @@ class StructuredQueryTest {
         assertEquals(ContextualConcept.of(TC_1), structuredQuery.inclusionCriteria().get(0).get(0).getConcept());
         assertEquals(ContextualConcept.of(TC_2), structuredQuery.exclusionCriteria().get(0).get(0).getConcept());
     }
+
+    @Test
+    void normalize_DropsChildInInclusionGroup() {
+        var structuredQuery = StructuredQuery.of(List.of(List.of(CRITERION_2, CRITERION_1)));
+
+        var normalized = structuredQuery.normalize(CONCEPT_TREE);
+
+        assertEquals(List.of(List.of(CRITERION_1)), normalized.inclusionCriteria());
+    }
+
+    @Test
+    void normalize_DropsParentInExclusionGroup() {
+        var structuredQuery = StructuredQuery.of(List.of(List.of(CRITERION_1)), List.of(List.of(CRITERION_1,
+                CRITERION_2)));
+
+        var normalized = structuredQuery.normalize(CONCEPT_TREE);
+
+        assertEquals(List.of(List.of(CRITERION_1)), normalized.inclusionCriteria());
+        assertEquals(List.of(List.of(CRITERION_2)), normalized.exclusionCriteria());
+    }
+
+    @Test
+    void normalize_KeepsFirstOfEqualCriteria() {
+        var structuredQuery = StructuredQuery.of(List.of(List.of(CRITERION_2,
+                ConceptCriterion.of(ContextualConcept.of(TC_2)))));
+
+        var normalized = structuredQuery.normalize(CONCEPT_TREE);
+
+        assertEquals(1, normalized.inclusionCriteria().get(0).size());
+        assertSame(CRITERION_2, normalized.inclusionCriteria().get(0).get(0));
+    }
+
+    @Test
+    void normalize_KeepsChildWithOtherFilters() {
+        var child = ConceptCriterion.of(ContextualConcept.of(TC_2), TimeRestriction.of(LocalDate.of(2020, 1, 1), LocalDate.of(2021, 1, 1)));
+        var structuredQuery = StructuredQuery.of(List.of(List.of(CRITERION_1, child)));
+
+        assertSame(structuredQuery, structuredQuery.normalize(CONCEPT_TREE));
+    }
+
+    @Test
+    void normalize_KeepsCriteriaOfDifferentGroups() {
+        var structuredQuery = StructuredQuery.of(List.of(List.of(CRITERION_1), List.of(CRITERION_2)));
+
+        assertSame(structuredQuery, structuredQuery.normalize(CONCEPT_TREE));
+    }
 }
@@ -3,6 +3,9 @@ package de.medizininformatikinitiative.cctb.util;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Optional;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FhirModelInfoTest {
@@ -83,4 +86,51 @@ public class FhirModelInfoTest {
 
     }
 
+    @Nested
+    class ElementType {
+
+        @Test
+        void unknownType() {
+            assertTrue(FhirModelInfo.elementType("???", "code").isEmpty());
+        }
+
+        @Test
+        void unknownElement() {
+            assertTrue(FhirModelInfo.elementType("Condition", "???").isEmpty());
+        }
+
+        @Test
+        void singleType() {
+            assertEquals(Optional.of(new FhirModelInfo.ElementType(List.of("FHIR.CodeableConcept"), false)),
+                    FhirModelInfo.elementType("Condition", "verificationStatus"));
+        }
+
+        @Test
+        void list() {
+            assertEquals(Optional.of(new FhirModelInfo.ElementType(List.of("FHIR.CodeableConcept"), true)),
+                    FhirModelInfo.elementType("Condition", "category"));
+        }
+
+        @Test
+        void choice() {
+            var elementType = FhirModelInfo.elementType("Observation", "value").orElseThrow();
+
+            assertFalse(elementType.list());
+            assertTrue(elementType.types().containsAll(List.of("FHIR.Quantity", "FHIR.CodeableConcept")));
+        }
+
+        @Test
+        void inheritedElement() {
+            assertEquals(Optional.of(new FhirModelInfo.ElementType(List.of("FHIR.id"), false)),
+                    FhirModelInfo.elementType("Condition", "id"));
+        }
+
+        @Test
+        void valueOfPrimitiveType() {
+            assertEquals(Optional.of(new FhirModelInfo.ElementType(List.of("System.String"), false)),
+                    FhirModelInfo.elementType("ObservationStatus", "value"));
+        }
+
+    }
+
 }